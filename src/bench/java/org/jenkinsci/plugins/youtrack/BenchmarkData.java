@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic data for the benchmarks, generated from a fixed seed so runs are comparable.
+ */
+public class BenchmarkData {
+    private static final String[] WORDS = {"fix", "refactor", "the", "parser", "for", "build", "when", "null", "update",
+            "tests", "cleanup", "handle", "timeout", "in", "listener", "move", "config", "to", "site", "add"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param count number of projects.
+     * @return projects with short names like <code>PRJ0</code>, <code>PRJ1</code>...
+     */
+    public static List<Project> projects(int count) {
+        List<Project> projects = new ArrayList<Project>(count);
+        for (int i = 0; i < count; i++) {
+            projects.add(new Project("PRJ" + i));
+        }
+        return projects;
+    }
+
+    /**
+     * Generates commit messages. Most mention an issue, some have a command and a comment on the following lines, and
+     * some mention no issue at all.
+     *
+     * @param count        number of messages.
+     * @param projectCount number of projects the issues are spread over.
+     * @return the messages.
+     */
+    public static List<String> commitMessages(int count, int projectCount) {
+        Random random = new Random(42);
+        List<String> messages = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder message = new StringBuilder();
+            String issueId = "PRJ" + random.nextInt(projectCount) + "-" + (1 + random.nextInt(5000));
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                message.append(issueId).append(' ');
+                appendWords(message, random, 4 + random.nextInt(8));
+            } else if (kind < 8) {
+                message.append('#').append(issueId).append(" Fixed\n");
+                appendWords(message, random, 10 + random.nextInt(20));
+            } else {
+                appendWords(message, random, 6 + random.nextInt(10));
+            }
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+
+    private static void appendWords(StringBuilder message, Random random, int words) {
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                message.append(i % 12 == 0 ? '\n' : ' ');
+            }
+            message.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+
+    public static YouTrackSite site() {
+        YouTrackSite youTrackSite = new YouTrackSite("bench", "user", "password", "http://localhost");
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+        youTrackSite.setAnnotationsEnabled(true);
+        return youTrackSite;
+    }
+
+    /**
+     * Change log entry with a fixed message.
+     */
+    public static class Entry extends ChangeLogSet.Entry {
+        private final String msg;
+        private final String commitId;
+
+        public Entry(String msg, String commitId) {
+            this.msg = msg;
+            this.commitId = commitId;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+
+        @Override
+        public String getCommitId() {
+            return commitId;
+        }
+
+        @Override
+        public User getAuthor() {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getAffectedPaths() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Server answering every call immediately with success, so only the plugin side is measured.
+     */
+    public static class NoopYouTrackServer extends YouTrackServer {
+        private final List<Project> projects;
+
+        public NoopYouTrackServer(List<Project> projects) {
+            super("http://localhost");
+            this.projects = projects;
+        }
+
+        @Override
+        public List<Project> getProjects(org.jenkinsci.plugins.youtrack.youtrackapi.User user) {
+            return projects;
+        }
+
+        @Override
+        public Command comment(String siteName, org.jenkinsci.plugins.youtrack.youtrackapi.User user, Issue issue, String comment, String group, boolean silent) {
+            return ok(siteName, issue);
+        }
+
+        @Override
+        public Command applyCommand(String siteName, org.jenkinsci.plugins.youtrack.youtrackapi.User user, Issue issue, String command, String comment, org.jenkinsci.plugins.youtrack.youtrackapi.User runAs, boolean notify) {
+            Command cmd = ok(siteName, issue);
+            cmd.setCommand(command);
+            cmd.setComment(comment);
+            return cmd;
+        }
+
+        @Override
+        public Issue getIssue(org.jenkinsci.plugins.youtrack.youtrackapi.User user, String issueId, String stateField) {
+            return new Issue(issueId);
+        }
+
+        private static Command ok(String siteName, Issue issue) {
+            Command cmd = new Command();
+            cmd.setSiteName(siteName);
+            cmd.setIssueId(issue.getId());
+            cmd.setStatus(Command.Status.OK);
+            return cmd;
+        }
+    }
+}
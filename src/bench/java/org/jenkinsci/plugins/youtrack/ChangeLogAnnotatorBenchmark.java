@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.MarkupText;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.scm.ChangeLogSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Annotating the change log page, done for every entry each time the page is shown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChangeLogAnnotatorBenchmark {
+    @Param({"10", "100", "1000"})
+    public int projectCount;
+
+    private YouTrackChangeLogAnnotator annotator;
+    private AbstractBuild build;
+    private List<ChangeLogSet.Entry> entries;
+
+    @Setup
+    public void setUp() {
+        final YouTrackSite youTrackSite = BenchmarkData.site();
+        annotator = new YouTrackChangeLogAnnotator() {
+            @Override
+            String getRootUrl() {
+                return "http://localhost/";
+            }
+
+            @Override
+            YouTrackSite getSiteForProject(AbstractProject<?, ?> project) {
+                return youTrackSite;
+            }
+        };
+
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(project);
+        when(build.getUrl()).thenReturn("job/bench/1/");
+        when(project.getLastSuccessfulBuild()).thenReturn(build);
+        when(build.getAction(YouTrackSaveProjectShortNamesAction.class)).thenReturn(new YouTrackSaveProjectShortNamesAction(BenchmarkData.projects(projectCount)));
+
+        entries = new ArrayList<ChangeLogSet.Entry>();
+        int i = 0;
+        for (String message : BenchmarkData.commitMessages(100, projectCount)) {
+            entries.add(new BenchmarkData.Entry(message, "commit" + i++));
+        }
+    }
+
+    @Benchmark
+    public int annotate() {
+        int length = 0;
+        for (ChangeLogSet.Entry entry : entries) {
+            MarkupText markupText = new MarkupText(entry.getMsg());
+            annotator.annotate(build, entry, markupText);
+            length += markupText.toString(false).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import hudson.scm.ChangeLogSet;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Issue id extraction and command line parsing over a change log, against a server answering immediately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommitMessageBenchmark {
+    @Param({"10", "100", "1000"})
+    public int projectCount;
+
+    @Param({"200"})
+    public int commitCount;
+
+    private YoutrackIssueUpdater updater;
+    private YouTrackSite commentSite;
+    private YouTrackSite commandSite;
+    private BenchmarkData.NoopYouTrackServer server;
+    private User user;
+    private AbstractBuild build;
+    private BuildListener listener;
+    private List<Project> projects;
+    private List<ChangeLogSet.Entry> entries;
+
+    @Setup
+    public void setUp() {
+        projects = BenchmarkData.projects(projectCount);
+        entries = new ArrayList<ChangeLogSet.Entry>();
+        int i = 0;
+        for (String message : BenchmarkData.commitMessages(commitCount, projectCount)) {
+            entries.add(new BenchmarkData.Entry(message, "commit" + i++));
+        }
+
+        updater = new YoutrackIssueUpdater() {
+            @Override
+            protected String getAbsoluteUrlForBuild(AbstractBuild build) {
+                return "http://localhost/job/bench/1/";
+            }
+        };
+        commentSite = BenchmarkData.site();
+        commentSite.setCommandsEnabled(false);
+        commandSite = BenchmarkData.site();
+        commandSite.setCommentEnabled(false);
+        server = new BenchmarkData.NoopYouTrackServer(projects);
+        user = new User();
+        user.setLoggedIn(true);
+
+        build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(mock(FreeStyleProject.class));
+        listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+    }
+
+    /**
+     * Finding the issues mentioned in each commit and linking them to the build.
+     */
+    @Benchmark
+    public void issueIdExtraction() throws Exception {
+        updater.performActions(build, listener, commentSite, entries.iterator(), server, user);
+    }
+
+    /**
+     * Parsing the command lines of each commit message.
+     */
+    @Benchmark
+    public void executeCommandsIfEnabled(Blackhole blackhole) {
+        List<Issue> fixedIssues = new ArrayList<Issue>();
+        for (ChangeLogSet.Entry entry : entries) {
+            blackhole.consume(updater.executeCommandsIfEnabled(listener, commandSite, server, user, projects, fixedIssues, entry, entry.getMsg()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in the processed revisions store holding millions of commit ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProcessedRevisionsBenchmark {
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000000", "4000000"})
+    public int size;
+
+    private File file;
+    private YoutrackProcessedRevisionsSaver saver;
+    private String[] processedIds;
+    private String[] unprocessedIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = File.createTempFile("youtrack-processed", null);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (int i = 0; i < size; i++) {
+                writer.write(commitId(i));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        saver = new YoutrackProcessedRevisionsSaver(file);
+        saver.awaitLoaded();
+
+        processedIds = new String[LOOKUPS];
+        unprocessedIds = new String[LOOKUPS];
+        int index = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            index = (index + 7919) % size;
+            processedIds[i] = commitId(index);
+            unprocessedIds[i] = commitId(size + index);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        saver.close();
+        new File(file.getPath() + ".bloom").delete();
+        file.delete();
+    }
+
+    private static String commitId(int i) {
+        return String.format("%040x", (long) i * 0x9E3779B97F4A7C15L);
+    }
+
+    @Benchmark
+    public boolean processed() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return saver.isProcessed(processedIds[next]);
+    }
+
+    @Benchmark
+    public boolean notProcessed() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return saver.isProcessed(unprocessedIds[next]);
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the issue and search responses, done the same way as in the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XmlHandlerBenchmark {
+    @Param({"10", "1000"})
+    public int searchResults;
+
+    private byte[] issueXml;
+    private byte[] searchXml;
+    private SAXParserFactory saxParserFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+        issueXml = issue("PRJ1-1").getBytes("UTF-8");
+        StringBuilder search = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><issueCompacts>");
+        for (int i = 0; i < searchResults; i++) {
+            search.append(issue("PRJ1-" + i).substring("<?xml version=\"1.0\" encoding=\"UTF-8\"?>".length()));
+        }
+        search.append("</issueCompacts>");
+        searchXml = search.toString().getBytes("UTF-8");
+        saxParserFactory = SAXParserFactory.newInstance();
+    }
+
+    private static String issue(String id) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><issue id=\"" + id + "\">"
+                + field("projectShortName", "PRJ1")
+                + field("summary", "Parser fails on empty commit message")
+                + field("description", "When a commit has no message the parser throws a NullPointerException and the whole build step fails.")
+                + field("State", "Open")
+                + field("Priority", "Normal")
+                + field("Type", "Bug")
+                + field("created", "1367412345000")
+                + field("updated", "1367419876000")
+                + "</issue>";
+    }
+
+    private static String field(String name, String value) {
+        return "<field name=\"" + name + "\"><value>" + value + "</value></field>";
+    }
+
+    @Benchmark
+    public Issue issueHandler() throws Exception {
+        SAXParser saxParser = saxParserFactory.newSAXParser();
+        Issue.IssueHandler issueHandler = new Issue.IssueHandler("State");
+        saxParser.parse(new InputSource(new ByteArrayInputStream(issueXml)), issueHandler);
+        return issueHandler.getIssue();
+    }
+
+    @Benchmark
+    public int issueSearchHandler() throws Exception {
+        SAXParser saxParser = saxParserFactory.newSAXParser();
+        Issue.IssueSearchHandler issueSearchHandler = new Issue.IssueSearchHandler();
+        saxParser.parse(new InputSource(new ByteArrayInputStream(searchXml)), issueSearchHandler);
+        return issueSearchHandler.getIssueList().size();
+    }
+}
@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.BuildBundle;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The names of the build bundles of each site and the builds in each bundle, fetched once and updated with the builds
+ * added through the plugin, so a build already in its bundle is not added again and bundle names are checked without
+ * asking the server every time. Entries are fetched again when they are older than the time to live, as builds can
+ * also be added and removed in YouTrack. A bundle name that is not found is always checked again on the server, so a
+ * bundle created in YouTrack can be used right away.
+ */
+public class BuildBundleCache {
+    /**
+     * Time in milliseconds after which bundles are fetched again.
+     */
+    static final long TTL = Long.getLong(BuildBundleCache.class.getName() + ".ttl", 10 * 60 * 1000L);
+
+    private static final BuildBundleCache INSTANCE = new BuildBundleCache();
+
+    private static class Entry {
+        private final Set<String> values;
+        private final long fetched;
+
+        private Entry(Set<String> values, long fetched) {
+            this.values = values;
+            this.fetched = fetched;
+        }
+
+        private boolean isExpired(long now) {
+            return now - fetched > TTL;
+        }
+    }
+
+    /**
+     * Bundle names by site url.
+     */
+    private final Map<String, Entry> bundleNames = new HashMap<String, Entry>();
+    /**
+     * Build names by site url and bundle name.
+     */
+    private final Map<String, Entry> builds = new HashMap<String, Entry>();
+
+    public static BuildBundleCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks if a site has a build bundle.
+     *
+     * @param server  the server to fetch the bundle names with.
+     * @param user    the user to fetch the bundle names with.
+     * @param siteUrl the url of the site.
+     * @param bundle  the name of the bundle.
+     * @return true if it has, false if it has other bundles but not this one, null if the bundle names are not known.
+     */
+    public Boolean hasBundle(YouTrackServer server, User user, String siteUrl, String bundle) {
+        Entry entry = get(bundleNames, siteUrl);
+        if (entry != null) {
+            synchronized (this) {
+                if (entry.values.contains(bundle)) {
+                    return true;
+                }
+                // The bundle may have been created since the names were fetched.
+                bundleNames.remove(siteUrl);
+            }
+        }
+        List<BuildBundle> bundles = server.getBuildBundles(user);
+        // An empty list is not trusted, the server then reports why the build could not be added.
+        if (bundles == null || bundles.isEmpty()) {
+            return null;
+        }
+        Set<String> names = new HashSet<String>();
+        for (BuildBundle buildBundle : bundles) {
+            names.add(buildBundle.getName());
+        }
+        entry = put(bundleNames, siteUrl, names);
+        synchronized (this) {
+            return entry.values.contains(bundle);
+        }
+    }
+
+    /**
+     * Checks if a build is in a bundle.
+     *
+     * @param server  the server to fetch the bundle with.
+     * @param user    the user to fetch the bundle with.
+     * @param siteUrl the url of the site.
+     * @param bundle  the name of the bundle.
+     * @param build   the name of the build.
+     * @return true if it is, false if it is not, null if the bundle could not be fetched.
+     */
+    public Boolean hasBuild(YouTrackServer server, User user, String siteUrl, String bundle, String build) {
+        String key = getKey(siteUrl, bundle);
+        Entry entry = get(builds, key);
+        if (entry == null) {
+            BuildBundle buildBundle = server.getBuildBundle(user, bundle);
+            if (buildBundle == null) {
+                return null;
+            }
+            entry = put(builds, key, new HashSet<String>(buildBundle.getBuilds()));
+        }
+        synchronized (this) {
+            return entry.values.contains(build);
+        }
+    }
+
+    /**
+     * Records a build added to a bundle.
+     */
+    public synchronized void buildAdded(String siteUrl, String bundle, String build) {
+        Entry entry = builds.get(getKey(siteUrl, bundle));
+        if (entry != null) {
+            entry.values.add(build);
+        }
+    }
+
+    /**
+     * Forgets a bundle, so it is fetched again the next time it is used.
+     */
+    public synchronized void invalidate(String siteUrl, String bundle) {
+        builds.remove(getKey(siteUrl, bundle));
+        bundleNames.remove(siteUrl);
+    }
+
+    public synchronized void clear() {
+        bundleNames.clear();
+        builds.clear();
+    }
+
+    private synchronized Entry get(Map<String, Entry> entries, String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized Entry put(Map<String, Entry> entries, String key, Set<String> values) {
+        Entry entry = new Entry(values, System.currentTimeMillis());
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private static String getKey(String siteUrl, String bundle) {
+        return siteUrl + "\n" + bundle;
+    }
+}
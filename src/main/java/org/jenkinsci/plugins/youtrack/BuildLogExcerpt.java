@@ -0,0 +1,250 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the part of a build log to attach to a failure issue. The log is read as a stream, or from the end for the
+ * tail modes, so it is never loaded into memory.
+ */
+public class BuildLogExcerpt {
+    public enum Mode {
+        /**
+         * The whole log.
+         */
+        FULL,
+        /**
+         * The last lines of the log.
+         */
+        TAIL_LINES,
+        /**
+         * The last megabytes of the log.
+         */
+        TAIL_MB,
+        /**
+         * The lines around lines with error markers.
+         */
+        ERRORS
+    }
+
+    /**
+     * Lines matching this are error markers.
+     */
+    static final Pattern ERROR_MARKERS = Pattern.compile(System.getProperty(BuildLogExcerpt.class.getName() + ".errorMarkers",
+            "(?i)\\b(error|exception|fatal|fail(ed|ure)?)\\b|^\\s+at "));
+
+    /**
+     * Max size of an excerpt of error sections.
+     */
+    static final long MAX_ERRORS_BYTES = Long.getLong(BuildLogExcerpt.class.getName() + ".maxErrorsBytes", 10 * 1024 * 1024);
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Mode mode;
+    private final int size;
+    private final boolean compress;
+
+    /**
+     * @param mode     the part of the log to write.
+     * @param size     lines for {@link Mode#TAIL_LINES}, megabytes for {@link Mode#TAIL_MB} and lines of context for
+     *                 {@link Mode#ERRORS}.
+     * @param compress true to gzip the excerpt.
+     */
+    public BuildLogExcerpt(Mode mode, int size, boolean compress) {
+        this.mode = mode;
+        this.size = size;
+        this.compress = compress;
+    }
+
+    /**
+     * @param logFileName the name of the log file.
+     * @return the name of the attachment.
+     */
+    public String getFileName(String logFileName) {
+        String name = mode == Mode.FULL ? logFileName : logFileName + "-" + mode.name().toLowerCase().replace('_', '-');
+        return compress ? name + ".gz" : name;
+    }
+
+    /**
+     * Writes the excerpt of a log to a file.
+     *
+     * @param log    the log file.
+     * @param target the file to write to.
+     * @throws IOException if the log could not be read or the file written.
+     */
+    public void write(File log, File target) throws IOException {
+        OutputStream out = new FileOutputStream(target);
+        try {
+            if (compress) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, BLOCK_SIZE);
+                write(log, gzip);
+                gzip.finish();
+            } else {
+                write(log, out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    void write(File log, OutputStream out) throws IOException {
+        switch (mode) {
+            case TAIL_LINES:
+                copyFrom(log, findStartOfLastLines(log, size), out);
+                break;
+            case TAIL_MB:
+                copyFrom(log, findStartOfLastBytes(log, (long) size * 1024 * 1024), out);
+                break;
+            case ERRORS:
+                writeErrorSections(log, size, out);
+                break;
+            default:
+                copyFrom(log, 0, out);
+        }
+    }
+
+    /**
+     * Finds where the last lines start by reading blocks backwards from the end of the log.
+     */
+    static long findStartOfLastLines(File log, int lines) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(log, "r");
+        try {
+            long end = file.length() - 1;
+            long position = file.length();
+            byte[] block = new byte[BLOCK_SIZE];
+            int newlines = 0;
+            while (position > 0) {
+                int length = (int) Math.min(BLOCK_SIZE, position);
+                position -= length;
+                file.seek(position);
+                file.readFully(block, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (block[i] == '\n') {
+                        // A newline ending the log does not start another line.
+                        if (position + i == end) {
+                            continue;
+                        }
+                        newlines++;
+                        if (newlines == lines) {
+                            return position + i + 1;
+                        }
+                    }
+                }
+            }
+            return 0;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Finds the start of the first whole line within the last bytes of the log.
+     */
+    static long findStartOfLastBytes(File log, long bytes) throws IOException {
+        long length = log.length();
+        if (length <= bytes) {
+            return 0;
+        }
+        long start = length - bytes;
+        InputStream in = new FileInputStream(log);
+        try {
+            skipFully(in, start - 1);
+            int b;
+            long position = start - 1;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    return position + 1;
+                }
+                position++;
+            }
+            return start;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                throw new IOException("Could not skip to " + bytes);
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static void copyFrom(File log, long start, OutputStream out) throws IOException {
+        InputStream in = new FileInputStream(log);
+        try {
+            skipFully(in, start);
+            IOUtils.copyLarge(in, out);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the lines matching {@link #ERROR_MARKERS} with the lines around them, keeping only the lines of context
+     * before the current line in memory.
+     */
+    static void writeErrorSections(File log, int context, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(log), "UTF-8"), BLOCK_SIZE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), BLOCK_SIZE);
+        try {
+            LinkedList<String> before = new LinkedList<String>();
+            long lineNumber = 0;
+            long lastWritten = 0;
+            long written = 0;
+            int after = 0;
+            String line;
+            while ((line = reader.readLine()) != null && written < MAX_ERRORS_BYTES) {
+                lineNumber++;
+                if (ERROR_MARKERS.matcher(line).find()) {
+                    if (lastWritten != 0 && lastWritten < lineNumber - before.size() - 1) {
+                        writer.write("...\n");
+                    }
+                    for (String previous : before) {
+                        writer.write(previous);
+                        writer.write('\n');
+                        written += previous.length() + 1;
+                    }
+                    before.clear();
+                    writer.write(line);
+                    writer.write('\n');
+                    written += line.length() + 1;
+                    lastWritten = lineNumber;
+                    after = context;
+                } else if (after > 0) {
+                    writer.write(line);
+                    writer.write('\n');
+                    written += line.length() + 1;
+                    lastWritten = lineNumber;
+                    after--;
+                } else if (context > 0) {
+                    before.addLast(line);
+                    if (before.size() > context) {
+                        before.removeFirst();
+                    }
+                }
+            }
+        } finally {
+            writer.flush();
+            reader.close();
+        }
+    }
+}
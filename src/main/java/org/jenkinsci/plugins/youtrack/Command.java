@@ -8,19 +8,101 @@ import java.util.Date;
 
 /**
  * This class represents a command performed by this plugin.
+ * <p/>
+ * Builds can have many commands, so the strings repeated between commands are interned, the time is kept as a
+ * timestamp and long error responses are truncated.
  */
 @ToString
 public class Command {
     public enum Status {OK, FAILED, NOT_LOGGED_IN}
 
-    @Getter @Setter private String siteName;
+    public enum Type {COMMAND, COMMENT, CREATE_ISSUE, BUNDLE}
+
+    /**
+     * Max length of the error response kept.
+     */
+    static final int MAX_RESPONSE_LENGTH = Integer.getInteger(Command.class.getName() + ".maxResponseLength", 1000);
+
+    @Getter private String siteName;
     @Getter @Setter private String issueId;
-    @Getter @Setter private String username;
+    @Getter private String username;
     @Getter @Setter private String comment;
     @Getter @Setter private String command;
-    @Getter @Setter private String response;
+    @Getter private String response;
     @Getter @Setter private Status status;
-    @Getter @Setter private String group;
-    @Getter @Setter private Date date;
+    @Getter private String group;
+    @Getter @Setter private long timestamp;
     @Getter @Setter private boolean silent;
+    /**
+     * The HTTP status of the request, 0 if there was no response. It is not saved.
+     */
+    @Getter @Setter private transient int responseCode;
+    /**
+     * True if the command was never sent to YouTrack, so it can be sent again safely. It is not saved.
+     */
+    @Getter @Setter private transient boolean unsent;
+    /**
+     * The time of the command in data saved by earlier versions.
+     *
+     * @deprecated replaced by {@link #timestamp}.
+     */
+    @Deprecated
+    private Date date;
+
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    public void setSiteName(String siteName) {
+        this.siteName = intern(siteName);
+    }
+
+    public void setUsername(String username) {
+        this.username = intern(username);
+    }
+
+    public void setGroup(String group) {
+        this.group = intern(group);
+    }
+
+    public void setResponse(String response) {
+        if (response != null && response.length() > MAX_RESPONSE_LENGTH) {
+            response = response.substring(0, MAX_RESPONSE_LENGTH) + "...";
+        }
+        this.response = response;
+    }
+
+    /**
+     * @return what kind of update the command was, derived from the command text.
+     */
+    public Type getType() {
+        if (command == null) {
+            return Type.COMMENT;
+        } else if (command.equals("[Create issue]")) {
+            return Type.CREATE_ISSUE;
+        } else if (command.startsWith("[Add '")) {
+            return Type.BUNDLE;
+        }
+        return Type.COMMAND;
+    }
+
+    public Date getDate() {
+        return timestamp != 0 ? new Date(timestamp) : null;
+    }
+
+    public void setDate(Date date) {
+        this.timestamp = date != null ? date.getTime() : 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    protected Object readResolve() {
+        if (date != null) {
+            timestamp = date.getTime();
+            date = null;
+        }
+        siteName = intern(siteName);
+        username = intern(username);
+        group = intern(group);
+        return this;
+    }
 }
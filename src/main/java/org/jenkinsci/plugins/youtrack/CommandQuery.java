@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.youtrack;
+
+import lombok.Getter;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter and page of the commands shown for a build.
+ */
+public class CommandQuery {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    @Getter private final Command.Status status;
+    @Getter private final String issue;
+    @Getter private final Command.Type type;
+    @Getter private final int offset;
+    @Getter private final int limit;
+
+    public CommandQuery(Command.Status status, String issue, Command.Type type, int offset, int limit) {
+        this.status = status;
+        this.issue = StringUtils.isBlank(issue) ? null : issue.trim();
+        this.type = type;
+        this.offset = Math.max(0, offset);
+        this.limit = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Reads the query from the <code>status</code>, <code>issue</code>, <code>type</code>, <code>offset</code> and
+     * <code>limit</code> request parameters. Invalid values are ignored.
+     *
+     * @param req the request.
+     * @return the query.
+     */
+    public static CommandQuery from(StaplerRequest req) {
+        return new CommandQuery(parseEnum(Command.Status.class, req.getParameter("status")), req.getParameter("issue"),
+                parseEnum(Command.Type.class, req.getParameter("type")), parseInt(req.getParameter("offset"), 0),
+                parseInt(req.getParameter("limit"), DEFAULT_LIMIT));
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean matches(Command command) {
+        if (status != null && status != command.getStatus()) {
+            return false;
+        }
+        if (type != null && type != command.getType()) {
+            return false;
+        }
+        return issue == null || (command.getIssueId() != null && command.getIssueId().toLowerCase().contains(issue.toLowerCase()));
+    }
+
+    /**
+     * Gets the query string for another page with the same filter.
+     *
+     * @param offset the offset of the page.
+     * @return the query string, starting with <code>?</code>.
+     */
+    public String toQueryString(int offset) {
+        StringBuilder query = new StringBuilder("?offset=").append(Math.max(0, offset)).append("&limit=").append(limit);
+        if (status != null) {
+            query.append("&status=").append(status);
+        }
+        if (type != null) {
+            query.append("&type=").append(type);
+        }
+        if (issue != null) {
+            try {
+                query.append("&issue=").append(URLEncoder.encode(issue, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * Collects the page of matching commands while counting all matches.
+     */
+    public static class Page {
+        private final transient CommandQuery query;
+        @Getter private final int offset;
+        @Getter private final int limit;
+        @Getter private int total;
+        @Getter private final List<Command> commands = new ArrayList<Command>();
+
+        Page(CommandQuery query) {
+            this.query = query;
+            this.offset = query.offset;
+            this.limit = query.limit;
+        }
+
+        void offer(Command command) {
+            if (query.matches(command)) {
+                if (total >= offset && commands.size() < limit) {
+                    commands.add(command);
+                }
+                total++;
+            }
+        }
+
+        public boolean isHasPrevious() {
+            return offset > 0;
+        }
+
+        public boolean isHasNext() {
+            return offset + limit < total;
+        }
+
+        public String getPreviousQuery() {
+            return query.toQueryString(offset - limit);
+        }
+
+        public String getNextQuery() {
+            return query.toQueryString(offset + limit);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.jenkinsci.plugins.youtrack;
+
+import lombok.Getter;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses commit messages into the issues they mention and the commands they contain. The result does not depend on
+ * the build, so it can be cached per commit, see {@link CommitParseCache}.
+ */
+public class CommitMessageParser {
+    /**
+     * Compiled patterns for finding issue mentions, per project short name.
+     */
+    private static final ConcurrentMap<String, Pattern> MENTION_PATTERNS = new ConcurrentHashMap<String, Pattern>();
+
+    /**
+     * A command found in a commit message.
+     */
+    public static class ParsedCommand {
+        /**
+         * The first issue the command is for.
+         */
+        @Getter private final String issueId;
+        /**
+         * All issues the command is for, when several are referenced at the start of the line.
+         */
+        @Getter private final List<String> issueIds;
+        @Getter private final String command;
+        @Getter private final String comment;
+        @Getter private final boolean silent;
+        /**
+         * The command of the prefix before the issue reference, null if there is none.
+         */
+        @Getter private final String prefixCommand;
+
+        ParsedCommand(List<String> issueIds, String command, String comment, boolean silent, String prefixCommand) {
+            this.issueId = issueIds.get(0);
+            this.issueIds = Collections.unmodifiableList(issueIds);
+            this.command = command;
+            this.comment = comment;
+            this.silent = silent;
+            this.prefixCommand = prefixCommand;
+        }
+    }
+
+    /**
+     * The parsed outcome of a commit message.
+     */
+    public static class ParsedCommit {
+        @Getter private final String message;
+        /**
+         * Fingerprint of the settings the message was parsed with.
+         */
+        @Getter private final String fingerprint;
+        /**
+         * The issue ids mentioned, in the order found per project. An issue mentioned twice is listed twice.
+         */
+        @Getter private final List<String> mentionedIssueIds;
+        @Getter private final List<ParsedCommand> commands;
+
+        ParsedCommit(String message, String fingerprint, List<String> mentionedIssueIds, List<ParsedCommand> commands) {
+            this.message = message;
+            this.fingerprint = fingerprint;
+            this.mentionedIssueIds = Collections.unmodifiableList(mentionedIssueIds);
+            this.commands = Collections.unmodifiableList(commands);
+        }
+    }
+
+    private final List<Project> projects;
+    private final List<Project> commandProjects;
+    private final Map<String, String> prefixCommands;
+    private final String fingerprint;
+
+    /**
+     * @param projects        the projects to find mentioned issues for.
+     * @param commandProjects the projects commands can be applied to.
+     * @param prefixCommands  map from lower case prefix to command, null if there are no prefix commands.
+     */
+    public CommitMessageParser(List<Project> projects, List<Project> commandProjects, Map<String, String> prefixCommands) {
+        this.projects = projects;
+        this.commandProjects = commandProjects;
+        this.prefixCommands = prefixCommands;
+        this.fingerprint = getShortNames(projects) + "|" + getShortNames(commandProjects) + "|" + prefixCommands;
+    }
+
+    private static String getShortNames(List<Project> projects) {
+        StringBuilder shortNames = new StringBuilder();
+        for (Project project : projects) {
+            shortNames.append(project.getShortName()).append(',');
+        }
+        return shortNames.toString();
+    }
+
+    /**
+     * @return a string that is equal for parsers giving the same results.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public ParsedCommit parse(String msg) {
+        return new ParsedCommit(msg, fingerprint, parseMentions(msg), parseCommands(msg));
+    }
+
+    List<String> parseMentions(String msg) {
+        List<String> issueIds = new ArrayList<String>();
+        for (Project project : projects) {
+            String shortName = project.getShortName();
+            Matcher matcher = getMentionPattern(shortName).matcher(msg);
+            while (matcher.find()) {
+                if (matcher.groupCount() >= 1) {
+                    String id = matcher.group(2);
+                    if (id == null) {
+                        id = matcher.group(4);
+                    }
+                    issueIds.add(shortName + "-" + id);
+                }
+            }
+        }
+        return issueIds;
+    }
+
+    private static Pattern getMentionPattern(String shortName) {
+        Pattern pattern = MENTION_PATTERNS.get(shortName);
+        if (pattern == null) {
+            pattern = Pattern.compile("^(" + shortName + "-" + "(\\d+)" + ")|\\W(" + shortName + "-" + "(\\d+))");
+            MENTION_PATTERNS.put(shortName, pattern);
+        }
+        return pattern;
+    }
+
+    List<ParsedCommand> parseCommands(CharSequence msg) {
+        List<ParsedCommand> commands = new ArrayList<ParsedCommand>();
+        CommitMessageTokenizer tokenizer = new CommitMessageTokenizer(msg);
+        while (tokenizer.next()) {
+            Project p = null;
+            for (Project project : commandProjects) {
+                if (tokenizer.isIssueOf(project.getShortName())) {
+                    p = project;
+                    break;
+                }
+            }
+
+            if (p == null || !tokenizer.findIssue(p.getShortName())) {
+                continue;
+            }
+
+            List<String> issueIds = new ArrayList<String>(1);
+            issueIds.add(tokenizer.getIssueId());
+            // Issues referenced right after the first one get the same command, as in "#A-1 #A-2 Fixed".
+            while (nextIssue(tokenizer)) {
+                String issueId = tokenizer.getIssueId();
+                if (!issueIds.contains(issueId)) {
+                    issueIds.add(issueId);
+                }
+            }
+            commands.add(new ParsedCommand(issueIds, tokenizer.getCommand(), tokenizer.getComment(), tokenizer.isSilent(), getPrefixCommand(tokenizer)));
+        }
+        return commands;
+    }
+
+    private boolean nextIssue(CommitMessageTokenizer tokenizer) {
+        for (Project project : commandProjects) {
+            if (tokenizer.nextIssue(project.getShortName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getPrefixCommand(CommitMessageTokenizer tokenizer) {
+        if (prefixCommands != null && tokenizer.hasPrefix()) {
+            for (Map.Entry<String, String> entry : prefixCommands.entrySet()) {
+                if (tokenizer.prefixEndsWith(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,235 @@
+package org.jenkinsci.plugins.youtrack;
+
+/**
+ * Splits a commit message into command lines in a single pass, without creating substrings. Each call to
+ * {@link #next()} moves to the next line containing a <code>#</code> and exposes its parts as offsets into the message:
+ * the prefix before the <code>#</code>, the silent flag, the issue id, the command after it and the comment, which is
+ * the lines following up to the next line containing a <code>#</code>. Further <code>#</code> issue references at the
+ * start of the command, as in <code>#A-1 #A-2 Fixed</code>, are read with {@link #nextIssue(String)}.
+ */
+class CommitMessageTokenizer {
+    private final CharSequence text;
+    private final int length;
+    private int position;
+
+    private int hash;
+    private int lineEnd;
+    private boolean silent;
+    private boolean hasPrefix;
+    private int prefixStart;
+    private int prefixEnd;
+    private int commentStart;
+    private int commentEnd;
+    private int issueStart;
+    private int issueEnd;
+    private int commandStart;
+    private int commandEnd;
+
+    CommitMessageTokenizer(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Moves to the next command line.
+     *
+     * @return false if there are no more lines containing a <code>#</code>.
+     */
+    boolean next() {
+        while (position < length) {
+            int lineStart = position;
+            int end = indexOf('\n', lineStart, length);
+            int hashPosition = indexOf('#', lineStart, end);
+            position = end + 1;
+            if (hashPosition == end) {
+                continue;
+            }
+
+            hash = hashPosition;
+            lineEnd = end;
+            issueStart = issueEnd = commandStart = commandEnd = -1;
+
+            int rawPrefixEnd = hashPosition;
+            silent = hashPosition > lineStart && text.charAt(hashPosition - 1) == '!';
+            if (silent) {
+                rawPrefixEnd--;
+            }
+            hasPrefix = rawPrefixEnd > lineStart;
+            prefixStart = skipWhitespace(lineStart, rawPrefixEnd);
+            prefixEnd = skipWhitespaceBackwards(prefixStart, rawPrefixEnd);
+
+            // The lines up to the next one containing a # are the comment, that line is read again by the next call.
+            int commentFrom = Math.min(position, length);
+            while (position < length) {
+                int nextEnd = indexOf('\n', position, length);
+                if (indexOf('#', position, nextEnd) != nextEnd) {
+                    break;
+                }
+                position = nextEnd + 1;
+            }
+            int commentTo = Math.min(position, length);
+            commentStart = skipWhitespace(commentFrom, commentTo);
+            commentEnd = skipWhitespaceBackwards(commentStart, commentTo);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the text after the <code>#</code> starts with an issue of the project.
+     */
+    boolean isIssueOf(String shortName) {
+        int start = hash + 1;
+        return regionMatches(start, shortName, lineEnd) && start + shortName.length() < lineEnd
+                && text.charAt(start + shortName.length()) == '-';
+    }
+
+    /**
+     * Finds the first issue id of the project after the <code>#</code>, and the command following it.
+     *
+     * @return false if there is no issue id of the project on the line.
+     */
+    boolean findIssue(String shortName) {
+        for (int start = hash + 1; start < lineEnd; start++) {
+            int end = matchIssueId(start, shortName);
+            if (end != -1) {
+                issueStart = start;
+                issueEnd = end;
+                commandStart = end < lineEnd && text.charAt(end) == ' ' ? end + 1 : end;
+                commandEnd = commandStart;
+                while (commandEnd < lineEnd && !isLineTerminator(text.charAt(commandEnd))) {
+                    commandEnd++;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads another reference to an issue of the project at the start of the command, which then starts after it.
+     *
+     * @return true if the command starts with <code>#</code> and an issue id of the project, followed by a space or the
+     * end of the command.
+     */
+    boolean nextIssue(String shortName) {
+        if (commandStart == -1 || commandStart >= commandEnd || text.charAt(commandStart) != '#') {
+            return false;
+        }
+        int end = matchIssueId(commandStart + 1, shortName);
+        if (end == -1 || end > commandEnd || (end < commandEnd && text.charAt(end) != ' ')) {
+            return false;
+        }
+        issueStart = commandStart + 1;
+        issueEnd = end;
+        commandStart = end < commandEnd ? end + 1 : end;
+        return true;
+    }
+
+    /**
+     * @return the end of the issue id of the project starting at the position, -1 if there is none.
+     */
+    private int matchIssueId(int start, String shortName) {
+        if (!regionMatches(start, shortName, lineEnd)) {
+            return -1;
+        }
+        int dash = start + shortName.length();
+        if (dash >= lineEnd || text.charAt(dash) != '-') {
+            return -1;
+        }
+        int end = dash + 1;
+        while (end < lineEnd && isDigit(text.charAt(end))) {
+            end++;
+        }
+        return end > dash + 1 ? end : -1;
+    }
+
+    /**
+     * @param suffix a lower case suffix.
+     * @return true if the trimmed prefix before the <code>#</code> ends with the suffix, ignoring case.
+     */
+    boolean prefixEndsWith(String suffix) {
+        int start = prefixEnd - suffix.length();
+        if (start < prefixStart) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if there is text before the <code>#</code>, not counting the <code>!</code> marking it silent.
+     */
+    boolean hasPrefix() {
+        return hasPrefix;
+    }
+
+    boolean isSilent() {
+        return silent;
+    }
+
+    String getIssueId() {
+        return issueStart == -1 ? null : text.subSequence(issueStart, issueEnd).toString();
+    }
+
+    String getCommand() {
+        return commandStart == -1 ? null : text.subSequence(commandStart, commandEnd).toString();
+    }
+
+    /**
+     * @return the trimmed comment, null if it is empty.
+     */
+    String getComment() {
+        return commentStart == commentEnd ? null : text.subSequence(commentStart, commentEnd).toString();
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private boolean regionMatches(int start, String s, int to) {
+        if (start + s.length() > to) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipWhitespace(int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int skipWhitespaceBackwards(int from, int to) {
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return true for the characters other than newline that end a line in a regular expression.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
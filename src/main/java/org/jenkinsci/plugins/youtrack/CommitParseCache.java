@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.youtrack;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed commit messages keyed by job and commit id, so rebuilds, replays and overlapping change logs of a job do not
+ * parse the same messages again. An entry is only used if the message and the parser settings are the same as when it
+ * was parsed.
+ */
+public class CommitParseCache {
+    /**
+     * Max number of parsed commits kept.
+     */
+    private static final int CAPACITY = Integer.getInteger(CommitParseCache.class.getName() + ".capacity", 10000);
+
+    private static final CommitParseCache INSTANCE = new CommitParseCache(CAPACITY);
+
+    private final Map<String, CommitMessageParser.ParsedCommit> entries;
+
+    CommitParseCache(final int capacity) {
+        this.entries = new LinkedHashMap<String, CommitMessageParser.ParsedCommit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CommitMessageParser.ParsedCommit> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static CommitParseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the cached parse of a commit message.
+     *
+     * @param job         the full name of the job.
+     * @param commitId    the commit id.
+     * @param msg         the commit message.
+     * @param fingerprint the fingerprint of the parser settings.
+     * @return the parsed commit, null if it is not cached.
+     */
+    public synchronized CommitMessageParser.ParsedCommit get(String job, String commitId, String msg, String fingerprint) {
+        CommitMessageParser.ParsedCommit parsedCommit = entries.get(getKey(job, commitId));
+        if (parsedCommit == null || !parsedCommit.getFingerprint().equals(fingerprint) || !parsedCommit.getMessage().equals(msg)) {
+            return null;
+        }
+        return parsedCommit;
+    }
+
+    public synchronized void put(String job, String commitId, CommitMessageParser.ParsedCommit parsedCommit) {
+        entries.put(getKey(job, commitId), parsedCommit);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String getKey(String job, String commitId) {
+        return job + "\n" + commitId;
+    }
+}
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,13 +54,13 @@ public class ExecuteCommandAction extends Builder {
     }
 
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
         YouTrackSite youTrackSite = getYouTrackSite(build);
         if (youTrackSite != null) {
             if (youTrackSite.isPluginEnabled()) {
 
-                YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
+                final YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
+                final User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
                 if (user != null && user.isLoggedIn()) {
                     EnvVars environment = build.getEnvironment(listener);
 
@@ -72,36 +73,52 @@ public class ExecuteCommandAction extends Builder {
                         LOGGER.error(e);
                     }
 
-                    String searchQuery = environment.expand(search);
-                    String commandToExecute = environment.expand(command);
-                    String expandedIssueInText = environment.expand(issueInText);
-
-                    Set<Issue> issues = new HashSet<Issue>();
-                    if (StringUtils.isNotBlank(searchQuery)) {
-                        issues.addAll(youTrackServer.search(user, searchQuery));
-                    }
-                    if (StringUtils.isNotBlank(expandedIssueInText)) {
-                        issues.addAll(findIssuesInText(build, environment, expandedIssueInText));
-                    }
-                    List<Command> appliedCommands = new ArrayList<Command>();
-                    String expandedComment = environment.expand(comment);
-                    for (Issue issue : issues) {
-                        Command appliedCommand = youTrackServer.applyCommand(youTrackSite.getName(), user, issue, commandToExecute, expandedComment, null, true);
-                        appliedCommands.add(appliedCommand);
-                    }
-                    if (!appliedCommands.isEmpty()) {
-                        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
-                        if (youTrackCommandAction == null) {
-                            youTrackCommandAction = new YouTrackCommandAction(build);
-                            build.addAction(youTrackCommandAction);
-                        }
-                        for (Command appliedCommand : appliedCommands) {
-                            youTrackCommandAction.addCommand(appliedCommand);
+                    final String searchQuery = environment.expand(search);
+                    final String commandToExecute = environment.expand(command);
+                    final String expandedIssueInText = environment.expand(issueInText);
+                    final String siteName = youTrackSite.getName();
+                    final String expandedComment = environment.expand(comment);
+                    final AbstractBuild<?, ?> currentBuild = build;
+                    final EnvVars env = environment;
+
+                    //Configurations of a matrix build running the same command share one execution
+                    String step = "executeCommand:" + searchQuery + "\n" + expandedIssueInText + "\n" + commandToExecute + "\n" + expandedComment;
+                    MatrixCoordinator.runOnce(build, step, new Callable<List<Command>>() {
+                        public List<Command> call() throws Exception {
+                            Set<Issue> issues = new HashSet<Issue>();
+                            if (StringUtils.isNotBlank(searchQuery)) {
+                                issues.addAll(youTrackServer.search(user, searchQuery));
+                            }
+                            if (StringUtils.isNotBlank(expandedIssueInText)) {
+                                issues.addAll(findIssuesInText(currentBuild, env, expandedIssueInText));
+                            }
+                            List<Command> commands = new ArrayList<Command>();
+                            List<Callable<Command>> tasks = new ArrayList<Callable<Command>>(issues.size());
+                            for (final Issue issue : issues) {
+                                tasks.add(new Callable<Command>() {
+                                    public Command call() throws Exception {
+                                        return youTrackServer.applyCommand(siteName, user, issue, commandToExecute, expandedComment, null, true);
+                                    }
+                                });
+                            }
+                            for (Command appliedCommand : IssueFanOut.invokeAll(tasks)) {
+                                if (appliedCommand != null) {
+                                    commands.add(appliedCommand);
+                                }
+                            }
+                            if (issues.isEmpty()) {
+                                listener.getLogger().println("No issues to apply command for");
+                            } else if (!commands.isEmpty()) {
+                                YouTrackCommandAction youTrackCommandAction = MatrixCoordinator.getCommandAction(currentBuild);
+                                for (Command appliedCommand : commands) {
+                                    youTrackCommandAction.addCommand(appliedCommand);
+                                }
+                                youTrackCommandAction.save();
+                            }
+                            return commands;
                         }
-                    }
-                    if (issues.isEmpty()) {
-                        listener.getLogger().println("No issues to apply command for");
-                    }
+                    });
+                    MatrixCoordinator.ranOnParent(build, listener, "Executing YouTrack command");
                 } else {
                     listener.getLogger().println("User not logged in");
                 }
@@ -0,0 +1,206 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.Properties;
+
+/**
+ * Maps failures of a job to the issue created for them, so repeated failures with the same signature update that
+ * issue instead of creating another. The index is kept in <code>youtrack-failure-issues.properties</code> in Jenkins
+ * home. Entries are kept across successful builds, so a flaky job keeps updating the same issue until it is resolved,
+ * and the entries of a job are removed when it is deleted or renamed.
+ */
+public class FailureIssueIndex {
+    private static final Logger LOGGER = Logger.getLogger(FailureIssueIndex.class.getName());
+
+    /**
+     * Number of lines at the end of the log searched for the first error.
+     */
+    private static final int SIGNATURE_LINES = 500;
+
+    private final File file;
+    private Properties entries;
+
+    public FailureIssueIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the issue created for a failure.
+     *
+     * @param job       the full name of the job.
+     * @param signature the failure signature, see {@link #getSignature(String, File)}.
+     * @return the issue id, null if there is none.
+     */
+    public synchronized String get(String job, String signature) {
+        return getEntries().getProperty(getKey(job, signature));
+    }
+
+    public synchronized void put(String job, String signature, String issueId) {
+        getEntries().setProperty(getKey(job, signature), issueId);
+        save();
+    }
+
+    public synchronized void remove(String job, String signature) {
+        if (getEntries().remove(getKey(job, signature)) != null) {
+            save();
+        }
+    }
+
+    /**
+     * Removes all entries of a job, called when it is deleted or renamed.
+     *
+     * @param job the full name of the job.
+     */
+    public synchronized void clear(String job) {
+        String prefix = job + "|";
+        boolean changed = false;
+        for (Iterator<Object> iterator = getEntries().keySet().iterator(); iterator.hasNext(); ) {
+            if (((String) iterator.next()).startsWith(prefix)) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private static String getKey(String job, String signature) {
+        return job + "|" + Util.getDigestOf(signature);
+    }
+
+    private Properties getEntries() {
+        if (entries == null) {
+            entries = new Properties();
+            if (file.exists()) {
+                InputStream in = null;
+                try {
+                    in = new FileInputStream(file);
+                    entries.load(in);
+                } catch (IOException e) {
+                    LOGGER.error("Could not load failure issues from " + file, e);
+                } finally {
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            LOGGER.warn("Could not close " + file, e);
+                        }
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void save() {
+        AtomicFileWriter writer = null;
+        try {
+            writer = new AtomicFileWriter(file, "ISO-8859-1");
+            entries.store(writer, "YouTrack issues created for failures, job|signature digest=issue id");
+            writer.commit();
+            writer = null;
+        } catch (IOException e) {
+            LOGGER.error("Could not save failure issues to " + file, e);
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+    }
+
+    /**
+     * Gets the signature of a failure, the normalized summary of the issue and the first error line near the end of
+     * the log. Numbers are normalized, so build numbers, times and line numbers do not change the signature.
+     *
+     * @param summary the summary of the issue.
+     * @param log     the build log, may be null.
+     * @return the signature.
+     */
+    public static String getSignature(String summary, File log) {
+        String errorLine = null;
+        if (log != null && log.exists()) {
+            try {
+                errorLine = findFirstError(log);
+            } catch (IOException e) {
+                LOGGER.warn("Could not read " + log, e);
+            }
+        }
+        return normalize(summary) + "\n" + normalize(errorLine);
+    }
+
+    private static String findFirstError(File log) throws IOException {
+        long start = BuildLogExcerpt.findStartOfLastLines(log, SIGNATURE_LINES);
+        InputStream in = new FileInputStream(log);
+        try {
+            long skipped = 0;
+            while (skipped < start) {
+                long n = in.skip(start - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (BuildLogExcerpt.ERROR_MARKERS.matcher(line).find()) {
+                    return line;
+                }
+            }
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Replaces hashes and numbers. A hash is a word of at least 7 hex digits with at least one decimal digit, so words
+     * like "defaced" are kept.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase().replaceAll("\\b(?=[0-9a-f]*[0-9])[0-9a-f]{7,}\\b", "#").replaceAll("\\d+", "#").replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Forgets the failures of jobs that are deleted or renamed.
+     */
+    @Extension
+    public static class JobListener extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            clear(item.getFullName());
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            String parentName = item.getParent().getFullName();
+            clear(parentName.length() == 0 ? oldName : parentName + "/" + oldName);
+        }
+
+        private void clear(String job) {
+            Jenkins jenkins = Jenkins.getInstance();
+            YouTrackPlugin plugin = jenkins != null ? jenkins.getPlugin(YouTrackPlugin.class) : null;
+            if (plugin != null) {
+                plugin.getFailureIssues().clear(job);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.apache.log4j.Logger;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent per-issue YouTrack calls concurrently, e.g. setting "Fixed in build" on every fixed issue.
+ * <p/>
+ * On JDK 21+ each call of a fan-out gets its own virtual thread, and the executor only lives for the duration of the
+ * fan-out, so no call outlives the build step that started it. On older JDKs the calls share a bounded pool of
+ * platform threads.
+ * <p/>
+ * The mode can be chosen with the system property <code>org.jenkinsci.plugins.youtrack.IssueFanOut.mode</code>:
+ * <code>auto</code> (default), <code>pool</code> or <code>sequential</code>.
+ */
+public class IssueFanOut {
+    private static final Logger LOGGER = Logger.getLogger(IssueFanOut.class.getName());
+
+    public enum Mode {AUTO, POOL, SEQUENTIAL}
+
+    /**
+     * The selected execution mode.
+     */
+    private static final Mode MODE = getMode();
+
+    /**
+     * Size of the platform thread pool used when virtual threads are not available.
+     */
+    private static final int POOL_SIZE = Integer.getInteger(IssueFanOut.class.getName() + ".poolSize", 8);
+
+    /**
+     * <code>Executors.newVirtualThreadPerTaskExecutor()</code>, null if the JDK does not have it. It is looked up
+     * reflectively as the plugin is compiled for older JDKs.
+     */
+    private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = getVirtualThreadExecutorFactory();
+
+    /**
+     * Lazily created bounded pool.
+     */
+    private static ExecutorService pool;
+
+    private IssueFanOut() {
+    }
+
+    private static Mode getMode() {
+        String mode = System.getProperty(IssueFanOut.class.getName() + ".mode");
+        if (mode != null) {
+            try {
+                return Mode.valueOf(mode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Unknown fan-out mode " + mode + ", using auto");
+            }
+        }
+        return Mode.AUTO;
+    }
+
+    private static Method getVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "YouTrack fan-out #" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            pool = threadPoolExecutor;
+        }
+        return pool;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread per task.
+     *
+     * @return the executor, null if virtual threads are not available.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (VIRTUAL_THREAD_EXECUTOR_FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+        } catch (Exception e) {
+            // JDK 19 and 20 have the method, but only as a preview feature.
+            LOGGER.debug("Virtual threads not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Runs all the tasks and waits for them to finish.
+     *
+     * @param tasks the tasks to run.
+     * @param <T>   result type of the tasks.
+     * @return the results in the same order as the tasks, a task that failed has null as result.
+     * @throws InterruptedException if interrupted while waiting, the tasks not yet done are cancelled.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() <= 1 || MODE == Mode.SEQUENTIAL) {
+            for (Callable<T> task : tasks) {
+                results.add(callQuietly(task));
+            }
+            return results;
+        }
+
+        ExecutorService scope = null;
+        if (MODE == Mode.AUTO) {
+            scope = newVirtualThreadExecutor();
+        }
+        ExecutorService executor = scope != null ? scope : getPool();
+        try {
+            List<Future<T>> futures = executor.invokeAll(tasks);
+            for (Future<T> future : futures) {
+                results.add(getQuietly(future));
+            }
+        } finally {
+            if (scope != null) {
+                scope.shutdownNow();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Applies a command to several issues with as few requests as possible. The issues are retried one by one only if
+     * YouTrack clearly rejected the request for them with a 4xx status, e.g. because the server does not support
+     * applying a command to several issues, if the request was never sent for them, e.g. because they could not be
+     * looked up first, or if there was no result for the issues at all. Other failures, like a
+     * timeout or a 5xx status, may have applied the command already, and are returned as they are.
+     *
+     * @param issues the issues to apply the command to.
+     * @return a command per issue, in the order of the issues. It is null for an issue the retry failed for.
+     * @throws InterruptedException if interrupted while waiting for the retries.
+     * @see YouTrackServer#applyCommandToIssues(String, User, List, String, String, User, boolean)
+     */
+    public static List<Command> applyCommand(final YouTrackServer server, final String siteName, final User user, List<Issue> issues, final String command, final String comment, final User runAs, final boolean notify) throws InterruptedException {
+        List<Command> commands = server.applyCommandToIssues(siteName, user, issues, command, comment, runAs, notify);
+        if (commands == null || commands.size() != issues.size()) {
+            LOGGER.info("No result applying the command to " + issues.size() + " issues at once, applying it to each issue");
+            commands = new ArrayList<Command>(issues.size());
+            for (int i = 0; i < issues.size(); i++) {
+                commands.add(null);
+            }
+        } else {
+            commands = new ArrayList<Command>(commands);
+        }
+        List<Integer> retries = new ArrayList<Integer>();
+        List<Callable<Command>> tasks = new ArrayList<Callable<Command>>();
+        for (int i = 0; i < issues.size(); i++) {
+            Command cmd = commands.get(i);
+            if (cmd == null || isRejected(cmd)) {
+                final Issue issue = issues.get(i);
+                retries.add(i);
+                tasks.add(new Callable<Command>() {
+                    public Command call() throws Exception {
+                        return server.applyCommand(siteName, user, issue, command, comment, runAs, notify);
+                    }
+                });
+            }
+        }
+        if (!tasks.isEmpty()) {
+            List<Command> retried = invokeAll(tasks);
+            for (int i = 0; i < retries.size(); i++) {
+                commands.set(retries.get(i), retried.get(i));
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * @return true if the request was not sent or failed with a 4xx status, so the command was not applied.
+     */
+    private static boolean isRejected(Command cmd) {
+        return cmd.getStatus() == Command.Status.FAILED
+                && (cmd.isUnsent() || (cmd.getResponseCode() >= 400 && cmd.getResponseCode() < 500));
+    }
+
+    private static <T> T callQuietly(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            LOGGER.error("YouTrack call failed", e);
+            return null;
+        }
+    }
+
+    private static <T> T getQuietly(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOGGER.error("YouTrack call failed", e.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs YouTrack updates once per parent build when the same step runs in every configuration of a matrix build. The
+ * first configuration to get to a step runs it, the others wait for it and get the same result. Results are kept until
+ * the parent build completes.
+ */
+public class MatrixCoordinator {
+    private static final ConcurrentMap<String, FutureTask<?>> RESULTS = new ConcurrentHashMap<String, FutureTask<?>>();
+
+    private MatrixCoordinator() {
+    }
+
+    /**
+     * Runs a step once for the parent build of the given build. Builds that are not part of a matrix build always run
+     * the step.
+     *
+     * @param build the build running the step.
+     * @param step  identifies the step and the settings it runs with, steps with the same key give the same result.
+     * @param work  the step.
+     * @param <T>   the type of the result.
+     * @return the result of the step, possibly computed by another configuration.
+     * @throws IOException          if the step failed.
+     * @throws InterruptedException if interrupted while waiting for another configuration.
+     */
+    public static <T> T runOnce(AbstractBuild<?, ?> build, String step, Callable<T> work) throws IOException, InterruptedException {
+        if (!isMatrixChild(build)) {
+            return call(work);
+        }
+        String key = getKeyPrefix(build.getRootBuild()) + step;
+        FutureTask<T> task = new FutureTask<T>(work);
+        @SuppressWarnings("unchecked")
+        FutureTask<T> existing = (FutureTask<T>) RESULTS.putIfAbsent(key, task);
+        if (existing == null) {
+            task.run();
+        } else {
+            task = existing;
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @param build the build.
+     * @return true if the build is a configuration of a matrix build.
+     */
+    public static boolean isMatrixChild(AbstractBuild<?, ?> build) {
+        AbstractBuild<?, ?> rootBuild = build.getRootBuild();
+        return rootBuild != null && rootBuild != build;
+    }
+
+    /**
+     * Gets the action recording the YouTrack commands of a build. Configurations of a matrix build use the action of
+     * the parent build, so commands run once for all configurations are recorded once.
+     *
+     * @param build the build.
+     * @return the action, added to the build or its parent build if it did not have one.
+     */
+    public static YouTrackCommandAction getCommandAction(AbstractBuild<?, ?> build) {
+        return YouTrackCommandAction.get(isMatrixChild(build) ? build.getRootBuild() : build);
+    }
+
+    /**
+     * Logs in a configuration of a matrix build that a step ran on the parent build, and links the configuration to
+     * the commands recorded there. Does nothing for other builds.
+     *
+     * @param build    the build.
+     * @param listener the listener of the build.
+     * @param step     the name of the step shown in the log.
+     */
+    public static void ranOnParent(AbstractBuild<?, ?> build, BuildListener listener, String step) {
+        if (!isMatrixChild(build)) {
+            return;
+        }
+        AbstractBuild<?, ?> rootBuild = build.getRootBuild();
+        listener.getLogger().println(step + " ran once for all configurations on " + rootBuild.getFullDisplayName() + ", see its YouTrack commands");
+        synchronized (build) {
+            if (build.getAction(YouTrackParentCommandsAction.class) == null) {
+                build.addAction(new YouTrackParentCommandsAction(rootBuild));
+            }
+        }
+    }
+
+    private static <T> T call(Callable<T> work) throws IOException, InterruptedException {
+        try {
+            return work.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String getKeyPrefix(AbstractBuild<?, ?> rootBuild) {
+        return rootBuild.getProject().getFullName() + "#" + rootBuild.getNumber() + "#";
+    }
+
+    static void forget(AbstractBuild<?, ?> rootBuild) {
+        String prefix = getKeyPrefix(rootBuild);
+        for (Iterator<String> iterator = RESULTS.keySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    static int size() {
+        return RESULTS.size();
+    }
+
+    /**
+     * Drops the results of a parent build when it completes.
+     */
+    @Extension
+    public static class CleanupListener extends RunListener<AbstractBuild> {
+        public CleanupListener() {
+            super(AbstractBuild.class);
+        }
+
+        @Override
+        public void onCompleted(AbstractBuild build, TaskListener listener) {
+            if (build.getRootBuild() == build && !RESULTS.isEmpty()) {
+                forget(build);
+            }
+        }
+    }
+}
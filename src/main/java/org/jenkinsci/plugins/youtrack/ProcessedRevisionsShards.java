@@ -0,0 +1,199 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The processed revision ids split into shards, one per YouTrack site and repository, so unrelated repositories
+ * neither contend on the same lock nor share a lookup set.
+ * <p/>
+ * Each shard has its own file and lock, and is only loaded the first time it is used. All shards share one background
+ * writer. Shards that have not been used for a while are closed and dropped from memory, and loaded again on next use.
+ * <p/>
+ * Ids in the global <code>youtrack-processed</code> file written by earlier versions are still seen as processed by
+ * all shards.
+ */
+public class ProcessedRevisionsShards {
+    private static final Logger LOGGER = Logger.getLogger(ProcessedRevisionsShards.class.getName());
+
+    /**
+     * Minutes a shard can be unused before it is dropped from memory.
+     */
+    private static final long IDLE_MILLIS = Long.getLong(ProcessedRevisionsShards.class.getName() + ".idleMinutes", 30) * 60 * 1000;
+
+    /**
+     * Max length of the readable part of a shard file name.
+     */
+    private static final int MAX_NAME_LENGTH = 64;
+
+    /**
+     * Directory holding a file per shard.
+     */
+    private final File directory;
+    /**
+     * The global file from before the store was sharded.
+     */
+    private final File legacyFile;
+    private final ConcurrentMap<String, Shard> shards = new ConcurrentHashMap<String, Shard>();
+    private volatile YoutrackProcessedRevisionsSaver legacySaver;
+    private volatile boolean legacyChecked;
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    public ProcessedRevisionsShards(File directory, File legacyFile) {
+        this.directory = directory;
+        this.legacyFile = legacyFile;
+    }
+
+    /**
+     * A shard, the saver is created on first use and closed when idle under the lock of the shard, so a closing saver
+     * and a new one never have the file open at the same time.
+     */
+    private class Shard {
+        private final File file;
+        private YoutrackProcessedRevisionsSaver saver;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Shard(File file) {
+            this.file = file;
+        }
+
+        synchronized YoutrackProcessedRevisionsSaver getSaver() {
+            lastAccess = System.currentTimeMillis();
+            if (saver == null) {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    LOGGER.error("Could not create directory " + directory);
+                }
+                saver = new YoutrackProcessedRevisionsSaver(file);
+            }
+            return saver;
+        }
+
+        synchronized void close() {
+            if (saver != null) {
+                saver.close();
+                saver = null;
+            }
+        }
+
+        /**
+         * Closes the saver if the shard has not been used for a while.
+         */
+        synchronized void closeIfIdle(long now) {
+            if (saver != null && now - lastAccess > IDLE_MILLIS) {
+                close();
+            }
+        }
+    }
+
+    public boolean isProcessed(String shardKey, String revisionId) {
+        if (getShard(shardKey).getSaver().isProcessed(revisionId)) {
+            return true;
+        }
+        YoutrackProcessedRevisionsSaver legacy = getLegacySaver(false);
+        return legacy != null && legacy.isProcessed(revisionId);
+    }
+
+    public void addProcessed(String shardKey, String revisionId) {
+        // A shard can be evicted between looking it up and adding to it, then the id is added to the reloaded shard.
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (getShard(shardKey).getSaver().addProcessed(revisionId)) {
+                return;
+            }
+        }
+        LOGGER.error("Could not record " + revisionId + " as processed for " + shardKey);
+    }
+
+    /**
+     * Gets the saver for the global file from before the store was sharded.
+     *
+     * @param create create the file if it does not exist.
+     * @return the saver, null if there is no global file and it should not be created.
+     */
+    public YoutrackProcessedRevisionsSaver getLegacySaver(boolean create) {
+        if (legacyChecked && (!create || legacySaver != null)) {
+            return legacySaver;
+        }
+        synchronized (this) {
+            if (legacySaver == null && (create || (!legacyChecked && legacyFile.exists()))) {
+                legacySaver = new YoutrackProcessedRevisionsSaver(legacyFile);
+            }
+            legacyChecked = true;
+            return legacySaver;
+        }
+    }
+
+    private Shard getShard(String shardKey) {
+        evictIdleShards();
+        Shard shard = shards.get(shardKey);
+        if (shard == null) {
+            Shard newShard = new Shard(new File(directory, getFileName(shardKey)));
+            shard = shards.putIfAbsent(shardKey, newShard);
+            if (shard == null) {
+                shard = newShard;
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Drops the ids of the shards not used for a while from memory. The shards stay in the map, so the file of a
+     * shard is only opened again by the same shard, once it is closed. Closing a shard waits for its ids to be written,
+     * so it is done on a background thread and not on the build thread looking up a shard.
+     */
+    private void evictIdleShards() {
+        final long now = System.currentTimeMillis();
+        if (now - lastSweep < IDLE_MILLIS) {
+            return;
+        }
+        lastSweep = now;
+        final List<Shard> idle = new ArrayList<Shard>();
+        for (Shard shard : shards.values()) {
+            if (now - shard.lastAccess > IDLE_MILLIS) {
+                idle.add(shard);
+            }
+        }
+        if (idle.isEmpty()) {
+            return;
+        }
+        Thread closer = new Thread(new Runnable() {
+            public void run() {
+                for (Shard shard : idle) {
+                    shard.closeIfIdle(now);
+                }
+            }
+        }, "YouTrack processed revisions eviction");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    /**
+     * Creates a file name for the shard that is readable, but still unique for keys that only differ in characters
+     * that cannot be used in file names.
+     */
+    static String getFileName(String shardKey) {
+        String name = shardKey.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+        return name + "-" + Integer.toHexString(shardKey.hashCode());
+    }
+
+    /**
+     * Writes outstanding ids and closes all shards.
+     */
+    public synchronized void close() {
+        for (Shard shard : shards.values()) {
+            shard.close();
+        }
+        shards.clear();
+        if (legacySaver != null) {
+            legacySaver.close();
+            legacySaver = null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.jenkinsci.plugins.youtrack;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter in front of the processed revision ids. It answers "definitely not processed" for new commits from a
+ * few bytes per id, so the exact store only needs to be consulted for probable hits.
+ * <p/>
+ * The filter never gives false negatives. When more ids than the capacity it was sized for are added, the false
+ * positive rate grows, and the filter is sized again the next time it is loaded.
+ */
+public class RevisionBloomFilter {
+    /**
+     * Marks the start of a persisted filter ("YTBF").
+     */
+    private static final int MAGIC = 0x59544246;
+    private static final int VERSION = 1;
+
+    /**
+     * Bits of the filter.
+     */
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+    /**
+     * Number of ids the filter was sized for.
+     */
+    private final long capacity;
+    /**
+     * Number of ids added, including duplicates.
+     */
+    private final AtomicLong count;
+    /**
+     * Length of the revisions file covered by the filter when it was persisted.
+     */
+    private long coveredLength;
+
+    private RevisionBloomFilter(int numBits, int numHashes, long capacity, long count) {
+        this.bits = new AtomicLongArray((numBits + 63) / 64);
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.capacity = capacity;
+        this.count = new AtomicLong(count);
+    }
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedInsertions the number of ids the filter should be sized for.
+     * @param falsePositiveRate  the wanted false positive rate when the filter holds that many ids.
+     * @return the filter.
+     */
+    public static RevisionBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+        int k = (int) Math.max(1, Math.round((double) m / n * Math.log(2)));
+        return new RevisionBloomFilter((int) m, k, n, 0);
+    }
+
+    public void put(String revisionId) {
+        long hash = hash(revisionId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            setBit(bit);
+        }
+        count.incrementAndGet();
+    }
+
+    public boolean mightContain(String revisionId) {
+        long hash = hash(revisionId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(int bit) {
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(index);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, current, current | mask));
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters followed by a final mix, the two halves are used for double hashing.
+     */
+    private static long hash(String revisionId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < revisionId.length(); i++) {
+            hash ^= revisionId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return true if more ids has been added than the filter was sized for.
+     */
+    public boolean isOverCapacity() {
+        return count.get() > capacity;
+    }
+
+    public long getCoveredLength() {
+        return coveredLength;
+    }
+
+    /**
+     * Persists the filter. It is written to a temporary file first, so a crash never leaves a half written filter.
+     *
+     * @param file          the file to write to.
+     * @param coveredLength length of the revisions file whose ids are all in the filter.
+     * @throws IOException if the filter could not be written.
+     */
+    public void writeTo(File file, long coveredLength) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numBits);
+            out.writeInt(numHashes);
+            out.writeLong(capacity);
+            out.writeLong(count.get());
+            out.writeLong(coveredLength);
+            for (int i = 0; i < bits.length(); i++) {
+                out.writeLong(bits.get(i));
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a persisted filter.
+     *
+     * @param file the file to read.
+     * @return the filter, null if the file does not exist or does not contain a filter.
+     * @throws IOException if the file could not be read.
+     */
+    public static RevisionBloomFilter readFrom(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int numBits = in.readInt();
+            int numHashes = in.readInt();
+            long capacity = in.readLong();
+            long count = in.readLong();
+            RevisionBloomFilter filter = new RevisionBloomFilter(numBits, numHashes, capacity, count);
+            filter.coveredLength = in.readLong();
+            for (int i = 0; i < filter.bits.length(); i++) {
+                filter.bits.set(i, in.readLong());
+            }
+            return filter;
+        } catch (EOFException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+}
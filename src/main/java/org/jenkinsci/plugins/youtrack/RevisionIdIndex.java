@@ -0,0 +1,165 @@
+package org.jenkinsci.plugins.youtrack;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Sorted copy of the processed revision ids, persisted next to the revisions file. While the file is being loaded into
+ * memory, lookups binary search this index on disk instead of waiting for the load.
+ * <p/>
+ * The first line holds the length of the revisions file the index covers, the other lines are the ids in sorted order.
+ * Ids appended to the revisions file after that length are not in the index.
+ */
+class RevisionIdIndex {
+    private static final String CHARSET = "UTF-8";
+    private static final int BLOCK_SIZE = 4096;
+
+    private final File file;
+    private final long coveredLength;
+    /**
+     * Offset of the first id.
+     */
+    private final long dataStart;
+    private final long length;
+
+    private RandomAccessFile in;
+    private boolean closed;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private long blockStart = -1;
+    private int blockLength;
+
+    private RevisionIdIndex(File file, long coveredLength, long dataStart, long length) {
+        this.file = file;
+        this.coveredLength = coveredLength;
+        this.dataStart = dataStart;
+        this.length = length;
+    }
+
+    /**
+     * Writes an index.
+     *
+     * @param file          the file to write.
+     * @param ids           the ids, in any order.
+     * @param coveredLength the length of the revisions file all whose ids are in <code>ids</code>.
+     * @throws IOException if the index could not be written.
+     */
+    static void write(File file, Collection<String> ids, long coveredLength) throws IOException {
+        String[] sorted = ids.toArray(new String[ids.size()]);
+        Arrays.sort(sorted);
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), CHARSET));
+        try {
+            out.write(Long.toString(coveredLength));
+            out.write('\n');
+            for (String id : sorted) {
+                out.write(id);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    /**
+     * Opens a persisted index.
+     *
+     * @param file       the index file.
+     * @param fileLength the current length of the revisions file.
+     * @return the index, null if there is none or it does not match the revisions file.
+     * @throws IOException if the index could not be read.
+     */
+    static RevisionIdIndex open(File file, long fileLength) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+        try {
+            String header = reader.readLine();
+            long coveredLength = Long.parseLong(header);
+            if (coveredLength > fileLength) {
+                return null;
+            }
+            return new RevisionIdIndex(file, coveredLength, header.length() + 1, file.length());
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    long getCoveredLength() {
+        return coveredLength;
+    }
+
+    /**
+     * Binary searches the index for an id. It reads a few blocks of the file, whatever the number of ids.
+     *
+     * @return true if the id is in the index, false if it is not or the index has been closed.
+     * @throws IOException if the index could not be read.
+     */
+    synchronized boolean contains(String revisionId) throws IOException {
+        if (closed) {
+            return false;
+        }
+        if (in == null) {
+            in = new RandomAccessFile(file, "r");
+        }
+        // Searches the lines starting in [low, high), low is always the start of a line.
+        long low = dataStart;
+        long high = length;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            long lineStart = middle;
+            while (lineStart < high && byteAt(lineStart - 1) != '\n') {
+                lineStart++;
+            }
+            if (lineStart >= high) {
+                high = middle;
+                continue;
+            }
+            line.reset();
+            long lineEnd = lineStart;
+            int b;
+            while (lineEnd < length && (b = byteAt(lineEnd)) != '\n') {
+                line.write(b);
+                lineEnd++;
+            }
+            int comparison = line.toString(CHARSET).compareTo(revisionId);
+            if (comparison == 0) {
+                return true;
+            } else if (comparison < 0) {
+                low = lineEnd + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return false;
+    }
+
+    private int byteAt(long position) throws IOException {
+        if (position < blockStart || position >= blockStart + blockLength) {
+            blockStart = position - position % BLOCK_SIZE;
+            in.seek(blockStart);
+            blockLength = Math.max(0, in.read(block));
+            if (position >= blockStart + blockLength) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+        }
+        return block[(int) (position - blockStart)] & 0xff;
+    }
+
+    synchronized void close() throws IOException {
+        closed = true;
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.jenkinsci.plugins.youtrack;
+
+import lombok.Getter;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A batch of YouTrack operations run with one session. Operations on different issues or bundles run concurrently, at
+ * most {@link #CONCURRENCY} at a time, and operations on the same issue or bundle run in the order they were added.
+ * <p/>
+ * Besides {@link YouTrackBatchStep}, this can be used from scripts, e.g.
+ * <pre>
+ * YouTrackBatch batch = new YouTrackBatch();
+ * batch.add(YouTrackBatch.Operation.parse("comment: TP-1 | Deployed"));
+ * List&lt;Command&gt; results = batch.run(site, YouTrackSession.get(site));
+ * </pre>
+ */
+public class YouTrackBatch {
+    /**
+     * Max number of issues or bundles updated at the same time.
+     */
+    static final int CONCURRENCY = Integer.getInteger(YouTrackBatch.class.getName() + ".concurrency", 4);
+
+    public enum Type {
+        /**
+         * Comments on an issue: issue id, comment.
+         */
+        COMMENT(2, 2),
+        /**
+         * Applies a command to an issue: issue id, command and optionally a comment.
+         */
+        COMMAND(2, 3),
+        /**
+         * Adds a build to a build bundle: bundle name, build name.
+         */
+        BUNDLE(2, 2),
+        /**
+         * Creates an issue: project, summary and optionally a description and a command.
+         */
+        CREATE(2, 4);
+
+        private final int minArguments;
+        private final int maxArguments;
+
+        Type(int minArguments, int maxArguments) {
+            this.minArguments = minArguments;
+            this.maxArguments = maxArguments;
+        }
+    }
+
+    /**
+     * An operation of a batch, written as <code>type: argument | argument ...</code>, e.g.
+     * <code>command: TP-1 | Fixed | Fixed by the build</code>.
+     */
+    public static class Operation {
+        @Getter private final Type type;
+        private final String[] arguments;
+
+        public Operation(Type type, String... arguments) {
+            if (arguments.length < type.minArguments || arguments.length > type.maxArguments) {
+                throw new IllegalArgumentException(type.name().toLowerCase() + " takes " + type.minArguments + " to " + type.maxArguments + " arguments");
+            }
+            this.type = type;
+            this.arguments = arguments;
+        }
+
+        /**
+         * Parses an operation.
+         *
+         * @param line the operation.
+         * @return the operation.
+         * @throws IllegalArgumentException if it is not a valid operation.
+         */
+        public static Operation parse(String line) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Missing type in: " + line);
+            }
+            Type type;
+            try {
+                type = Type.valueOf(line.substring(0, colon).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown type in: " + line);
+            }
+            String[] arguments = line.substring(colon + 1).split("\\|");
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = arguments[i].trim().replace("\\n", "\n");
+            }
+            return new Operation(type, arguments);
+        }
+
+        /**
+         * Parses the operations of a text, one per line. Empty lines and lines starting with # are skipped.
+         */
+        public static List<Operation> parseAll(String text) {
+            List<Operation> operations = new ArrayList<Operation>();
+            if (text != null) {
+                for (String line : text.split("\r?\n")) {
+                    if (line.trim().length() > 0 && !line.trim().startsWith("#")) {
+                        operations.add(parse(line));
+                    }
+                }
+            }
+            return operations;
+        }
+
+        public String getArgument(int index) {
+            return index < arguments.length && arguments[index].length() > 0 ? arguments[index] : null;
+        }
+
+        /**
+         * @return the issue or bundle the operation changes, operations with the same target run in order.
+         */
+        String getTarget() {
+            return type == Type.CREATE ? "create\n" + arguments[1] : type == Type.BUNDLE ? "bundle\n" + arguments[0] : arguments[0];
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase() + ": " + Arrays.toString(arguments);
+        }
+    }
+
+    @Getter private final List<Operation> operations = new ArrayList<Operation>();
+
+    public void add(Operation operation) {
+        operations.add(operation);
+    }
+
+    /**
+     * Runs the operations.
+     *
+     * @param youTrackSite the site, for the settings of comments and commands.
+     * @param session      the session to run the operations with.
+     * @return the result of each operation, in the order of the operations.
+     * @throws InterruptedException if interrupted while waiting for the operations.
+     */
+    public List<Command> run(final YouTrackSite youTrackSite, YouTrackSession session) throws InterruptedException {
+        final Command[] results = new Command[operations.size()];
+        final YouTrackServer server = session.getServer();
+        final BatchLogin login = new BatchLogin(session);
+
+        Map<String, List<Integer>> targets = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < operations.size(); i++) {
+            String target = operations.get(i).getTarget();
+            List<Integer> indices = targets.get(target);
+            if (indices == null) {
+                indices = new ArrayList<Integer>();
+                targets.put(target, indices);
+            }
+            indices.add(i);
+        }
+
+        List<List<Integer>> groups = new ArrayList<List<Integer>>(targets.values());
+        for (int start = 0; start < groups.size(); start += CONCURRENCY) {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final List<Integer> group : groups.subList(start, Math.min(groups.size(), start + CONCURRENCY))) {
+                tasks.add(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int index : group) {
+                            results[index] = execute(youTrackSite, server, login, operations.get(index));
+                        }
+                        return null;
+                    }
+                });
+            }
+            IssueFanOut.invokeAll(tasks);
+        }
+
+        User user = login.get();
+        if (user == null || !user.isLoggedIn()) {
+            session.invalidate();
+        }
+        List<Command> result = new ArrayList<Command>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            result.add(results[i] != null ? results[i] : failed(youTrackSite, operations.get(i), "Operation failed"));
+        }
+        return result;
+    }
+
+    /**
+     * Runs an operation, and runs it once more after logging in again if YouTrack rejected the session.
+     */
+    private static Command execute(YouTrackSite youTrackSite, YouTrackServer server, BatchLogin login, Operation operation) {
+        User user = login.get();
+        Command result = execute(youTrackSite, server, user, operation);
+        if (isLoginRejected(result)) {
+            User retryUser = login.rejected(user);
+            if (retryUser != null) {
+                result = execute(youTrackSite, server, retryUser, operation);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLoginRejected(Command result) {
+        return result != null && (result.getStatus() == Command.Status.NOT_LOGGED_IN
+                || result.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED
+                || result.getResponseCode() == HttpURLConnection.HTTP_FORBIDDEN);
+    }
+
+    private static Command execute(YouTrackSite youTrackSite, YouTrackServer server, User user, Operation operation) {
+        if (user == null || !user.isLoggedIn()) {
+            Command command = failed(youTrackSite, operation, null);
+            command.setStatus(Command.Status.NOT_LOGGED_IN);
+            return command;
+        }
+        String siteName = youTrackSite.getName();
+        switch (operation.getType()) {
+            case COMMENT:
+                return server.comment(siteName, user, new Issue(operation.getArgument(0)), operation.getArgument(1), youTrackSite.getLinkVisibility(), youTrackSite.isSilentLinks());
+            case COMMAND:
+                return server.applyCommand(siteName, user, new Issue(operation.getArgument(0)), operation.getArgument(1), operation.getArgument(2), null, !youTrackSite.isSilentCommands());
+            case BUNDLE:
+                String bundle = operation.getArgument(0);
+                String build = operation.getArgument(1);
+                BuildBundleCache bundleCache = BuildBundleCache.getInstance();
+                if (Boolean.TRUE.equals(bundleCache.hasBuild(server, user, youTrackSite.getUrl(), bundle, build))) {
+                    Command command = failed(youTrackSite, operation, "Build already in bundle");
+                    command.setCommand("[Add '" + build + "' to " + " '" + bundle + "']");
+                    command.setStatus(Command.Status.OK);
+                    return command;
+                }
+                Command added = server.addBuildToBundle(siteName, user, bundle, build);
+                if (added.getStatus() == Command.Status.OK) {
+                    bundleCache.buildAdded(youTrackSite.getUrl(), bundle, build);
+                } else {
+                    bundleCache.invalidate(youTrackSite.getUrl(), bundle);
+                }
+                return added;
+            default:
+                return server.createIssue(siteName, user, operation.getArgument(0), operation.getArgument(1), operation.getArgument(2), operation.getArgument(3), null);
+        }
+    }
+
+    /**
+     * The user of a batch. It logs in again once per batch when YouTrack rejects the user, e.g. because the session
+     * expired on the server before {@link YouTrackSession#TTL}.
+     */
+    private static class BatchLogin {
+        private final YouTrackSession session;
+        private User user;
+        private boolean reloggedIn;
+
+        BatchLogin(YouTrackSession session) {
+            this.session = session;
+            this.user = session.getUser();
+        }
+
+        synchronized User get() {
+            return user;
+        }
+
+        /**
+         * @param rejected the user a call was rejected for.
+         * @return the user to retry the call with, null if it should not be retried.
+         */
+        synchronized User rejected(User rejected) {
+            if (user == rejected && !reloggedIn) {
+                reloggedIn = true;
+                user = session.relogin(rejected);
+            }
+            return user != rejected && user != null && user.isLoggedIn() ? user : null;
+        }
+    }
+
+    private static Command failed(YouTrackSite youTrackSite, Operation operation, String response) {
+        Command command = new Command();
+        command.setCommand(operation.toString());
+        command.setSiteName(youTrackSite.getName());
+        command.setDate(new Date());
+        command.setStatus(Command.Status.FAILED);
+        command.setResponse(response);
+        if (operation.getType() == Type.COMMENT || operation.getType() == Type.COMMAND) {
+            command.setIssueId(operation.getArgument(0));
+        }
+        return command;
+    }
+}
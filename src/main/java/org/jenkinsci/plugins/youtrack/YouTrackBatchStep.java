@@ -0,0 +1,109 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.FormValidation;
+import lombok.Getter;
+import lombok.Setter;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs a batch of YouTrack operations, comments, commands, bundle additions and issue creation, with the shared session
+ * of the site. The result of each operation is recorded with the other commands of the build.
+ */
+public class YouTrackBatchStep extends Builder {
+    /**
+     * The operations, one per line, see {@link YouTrackBatch.Operation}.
+     */
+    @Getter @Setter private String operations;
+    @Getter @Setter private boolean failOnError;
+
+    @DataBoundConstructor
+    public YouTrackBatchStep(String operations, boolean failOnError) {
+        this.operations = operations;
+        this.failOnError = failOnError;
+    }
+
+    @Override
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+        YouTrackSite youTrackSite = getYouTrackSite(build);
+        if (youTrackSite == null || !youTrackSite.isPluginEnabled()) {
+            listener.getLogger().println("No YouTrack site configured");
+            return true;
+        }
+
+        EnvVars environment = build.getEnvironment(listener);
+        YouTrackBatch batch = new YouTrackBatch();
+        try {
+            for (YouTrackBatch.Operation operation : YouTrackBatch.Operation.parseAll(environment.expand(operations))) {
+                batch.add(operation);
+            }
+        } catch (IllegalArgumentException e) {
+            listener.error(e.getMessage());
+            return false;
+        }
+
+        List<Command> results = batch.run(youTrackSite, getSession(youTrackSite));
+        YouTrackCommandAction youTrackCommandAction = YouTrackCommandAction.get(build);
+        boolean failed = false;
+        for (int i = 0; i < results.size(); i++) {
+            Command result = results.get(i);
+            YouTrackBatch.Operation operation = batch.getOperations().get(i);
+            if (result.getStatus() == Command.Status.OK) {
+                listener.getLogger().println("Done " + operation + (result.getIssueId() != null ? " on " + result.getIssueId() : ""));
+            } else {
+                listener.getLogger().println("FAILED: " + operation + (result.getResponse() != null ? ": " + result.getResponse() : ""));
+                failed = true;
+            }
+            youTrackCommandAction.addCommand(result);
+        }
+        youTrackCommandAction.save();
+        return !(failOnError && failed);
+    }
+
+    YouTrackSession getSession(YouTrackSite youTrackSite) {
+        return YouTrackSession.get(youTrackSite);
+    }
+
+    YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
+        return YouTrackSite.get(build.getProject());
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+        public boolean isApplicable(Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        public String getDisplayName() {
+            return "Run YouTrack Operations";
+        }
+
+        @Override
+        public Builder newInstance(StaplerRequest req, JSONObject formData) throws FormException {
+            return req.bindJSON(YouTrackBatchStep.class, formData);
+        }
+
+        @SuppressWarnings("UnusedDeclaration")
+        public FormValidation doCheckOperations(@QueryParameter String value) {
+            try {
+                YouTrackBatch.Operation.parseAll(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+    }
+}
@@ -21,7 +21,10 @@ import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Updates build bundle.
@@ -75,7 +78,7 @@ public class YouTrackBuildUpdater extends Recorder {
     }
 
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
 
         YouTrackSite youTrackSite = getYouTrackSite(build);
         if (youTrackSite == null || !youTrackSite.isPluginEnabled()) {
@@ -86,11 +89,8 @@ public class YouTrackBuildUpdater extends Recorder {
 
         YouTrackSaveFixedIssues action = build.getAction(YouTrackSaveFixedIssues.class);
 
-        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
-        if(youTrackCommandAction == null) {
-            youTrackCommandAction = new YouTrackCommandAction(build);
-            build.addAction(youTrackCommandAction);
-        }
+        //Configurations of a matrix build record the commands on the matrix build, where the update runs once
+        final YouTrackCommandAction youTrackCommandAction = MatrixCoordinator.getCommandAction(build);
 
         //Return early if there is no build to be added
         if(onlyAddIfHasFixedIssues) {
@@ -100,57 +100,117 @@ public class YouTrackBuildUpdater extends Recorder {
             }
         }
 
+        long start = System.nanoTime();
+        final YouTrackTimingAction timings = YouTrackTimingAction.get(build);
+        try {
+            EnvVars environment = build.getEnvironment(listener);
+            final String buildName;
+            if(getBuildName() == null || getBuildName().equals("")) {
+                buildName = String.valueOf(build.getNumber());
+            } else {
+
+                buildName = environment.expand(getBuildName());
+
+            }
+            final String inputBundleName =environment.expand(getBundleName());
+
+            final List<String> issueIds = new ArrayList<String>();
+            if(action != null) {
+                boolean stable = build.getResult().isBetterOrEqualTo(Result.SUCCESS);
+                boolean unstable = build.getResult().isBetterOrEqualTo(Result.UNSTABLE);
+
+                if(stable || (isMarkFixedIfUnstable() && unstable)) {
+                    issueIds.addAll(action.getIssueIds());
+                }
+            }
+
+            //Configurations of a matrix build adding the same build and issues share one update
+            final YouTrackSite site = youTrackSite;
+            MatrixCoordinator.runOnce(build, "buildUpdater:" + inputBundleName + ":" + buildName + ":" + issueIds, new Callable<List<Command>>() {
+                public List<Command> call() throws Exception {
+                    List<Command> commands = updateBundle(site, timings, listener, inputBundleName, buildName, issueIds);
+                    for (Command command : commands) {
+                        youTrackCommandAction.addCommand(command);
+                    }
+                    youTrackCommandAction.save();
+                    return commands;
+                }
+            });
+            MatrixCoordinator.ranOnParent(build, listener, "Updating the YouTrack build bundle");
+
+            return true;
+        } finally {
+            timings.recordStage("Build updater", System.nanoTime() - start);
+        }
+    }
+
+    private List<Command> updateBundle(YouTrackSite youTrackSite, YouTrackTimingAction timings, BuildListener listener, String inputBundleName, String buildName, List<String> issueIds) throws InterruptedException {
+        List<Command> result = new ArrayList<Command>();
         YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
+        youTrackServer.setCallListener(timings);
         User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
         if(user == null || !user.isLoggedIn()) {
             listener.getLogger().println("FAILED: to log in to youtrack");
-            return true;
-        }
-        EnvVars environment = build.getEnvironment(listener);
-        String buildName;
-        if(getBuildName() == null || getBuildName().equals("")) {
-            buildName = String.valueOf(build.getNumber());
-        } else {
-
-            buildName = environment.expand(getBuildName());
-
+            return result;
         }
-        String inputBundleName =environment.expand(getBundleName());
 
-        Command addedBuild = youTrackServer.addBuildToBundle(youTrackSite.getName(), user, inputBundleName, buildName);
-        if(addedBuild.getStatus() == Command.Status.OK) {
-            listener.getLogger().println("Added build " + buildName + " to bundle: " + inputBundleName);
+        Command addedBuild;
+        BuildBundleCache bundleCache = BuildBundleCache.getInstance();
+        String siteUrl = youTrackSite.getUrl();
+        if(Boolean.FALSE.equals(bundleCache.hasBundle(youTrackServer, user, siteUrl, inputBundleName))) {
+            addedBuild = createBundleCommand(youTrackSite, user, inputBundleName, buildName, Command.Status.FAILED, "No build bundle named " + inputBundleName);
+            listener.getLogger().println("FAILED: adding build " + buildName + " to bundle: " + inputBundleName + ", there is no such bundle");
+        } else if(Boolean.TRUE.equals(bundleCache.hasBuild(youTrackServer, user, siteUrl, inputBundleName, buildName))) {
+            addedBuild = createBundleCommand(youTrackSite, user, inputBundleName, buildName, Command.Status.OK, "Build already in bundle");
+            listener.getLogger().println("Build " + buildName + " already in bundle: " + inputBundleName);
         } else {
-            listener.getLogger().println("FAILED: adding build " + buildName + " to bundle: " + inputBundleName);
+            addedBuild = youTrackServer.addBuildToBundle(youTrackSite.getName(), user, inputBundleName, buildName);
+            if(addedBuild.getStatus() == Command.Status.OK) {
+                bundleCache.buildAdded(siteUrl, inputBundleName, buildName);
+                listener.getLogger().println("Added build " + buildName + " to bundle: " + inputBundleName);
+            } else {
+                //Fetch the bundle again next time, it may have been changed in YouTrack
+                bundleCache.invalidate(siteUrl, inputBundleName);
+                listener.getLogger().println("FAILED: adding build " + buildName + " to bundle: " + inputBundleName);
+            }
         }
 
-        youTrackCommandAction.addCommand(addedBuild);
-
-        if(action != null) {
-            List<String> issueIds = action.getIssueIds();
-            boolean stable = build.getResult().isBetterOrEqualTo(Result.SUCCESS);
-            boolean unstable = build.getResult().isBetterOrEqualTo(Result.UNSTABLE);
+        result.add(addedBuild);
 
+        if(!issueIds.isEmpty()) {
+            String siteName = youTrackSite.getName();
+            String commandValue = "Fixed in build " + buildName;
+            List<Issue> issues = new ArrayList<Issue>(issueIds.size());
+            for (String issueId : issueIds) {
+                issues.add(new Issue(issueId));
+            }
 
-            if(stable || (isMarkFixedIfUnstable() && unstable)) {
-
-                for (String issueId : issueIds) {
-                Issue issue = new Issue(issueId);
-
-                    String commandValue = "Fixed in build " + buildName;
-                    Command command = youTrackServer.applyCommand(youTrackSite.getName(), user, issue, commandValue, null, null, !runSilently);
-                    if(command.getStatus() == Command.Status.OK) {
-                        listener.getLogger().println("Updated Fixed in build to " + buildName + " for " + issueId);
-                    } else {
-                        listener.getLogger().println("FAILED: updating Fixed in build to " + buildName + " for " + issueId);
-                    }
-                    youTrackCommandAction.addCommand(command);
+            List<Command> commands = IssueFanOut.applyCommand(youTrackServer, siteName, user, issues, commandValue, null, null, !runSilently);
+            for (int i = 0; i < issueIds.size(); i++) {
+                String issueId = issueIds.get(i);
+                Command command = commands.get(i);
+                if(command != null && command.getStatus() == Command.Status.OK) {
+                    listener.getLogger().println("Updated Fixed in build to " + buildName + " for " + issueId);
+                } else {
+                    listener.getLogger().println("FAILED: updating Fixed in build to " + buildName + " for " + issueId);
+                }
+                if(command != null) {
+                    result.add(command);
                 }
             }
-
         }
+        return result;
+    }
 
-        return true;
+    private static Command createBundleCommand(YouTrackSite youTrackSite, User user, String bundleName, String buildName, Command.Status status, String response) {
+        Command command = new Command();
+        command.setCommand("[Add '" + buildName + "' to " + " '" + bundleName + "']");
+        command.setDate(new Date());
+        command.setSiteName(youTrackSite.getName());
+        command.setUsername(user.getUsername());
+        command.setStatus(status);
+        command.setResponse(response);
+        return command;
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
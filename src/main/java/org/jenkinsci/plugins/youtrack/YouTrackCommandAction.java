@@ -1,23 +1,73 @@
 package org.jenkinsci.plugins.youtrack;
 
+import com.google.gson.Gson;
 import hudson.model.AbstractBuild;
-import hudson.model.Action;
+import hudson.model.Run;
+import hudson.model.RunAction;
 
+import hudson.util.AtomicFileWriter;
 import lombok.Getter;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * This action shows the commands that the build tried to execute.
+ * <p/>
+ * The commands are saved in <code>youtrack-commands.xml</code> in the build directory instead of in
+ * <code>build.xml</code> by the steps adding them, and are only loaded when they are used, so loading build records stays cheap. The page
+ * showing them is paginated and can be filtered, and is also available as JSON at <code>youtrackCommands/json</code>.
  */
-public class YouTrackCommandAction implements Action {
-    @Getter private List<Command> commands;
+public class YouTrackCommandAction implements RunAction {
+    private static final Logger LOGGER = Logger.getLogger(YouTrackCommandAction.class.getName());
+    static final String FILE_NAME = "youtrack-commands.xml";
+
+    /**
+     * The commands in data saved by earlier versions, null otherwise.
+     */
+    private List<Command> commands;
     @Getter private AbstractBuild build;
+    private int numCommands;
+    /**
+     * Commands not saved yet, null when all commands are saved.
+     */
+    private transient List<Command> unsaved;
+    private transient SoftReference<List<Command>> loaded;
 
     public YouTrackCommandAction(AbstractBuild build) {
         this.build = build;
-        commands = new ArrayList<Command>();
+    }
+
+    /**
+     * Gets the command action of a build, adding it if the build does not have one yet. All steps share this action,
+     * as they share the file the commands are saved in.
+     *
+     * @param build the build.
+     * @return the action.
+     */
+    public static YouTrackCommandAction get(AbstractBuild<?, ?> build) {
+        synchronized (build) {
+            YouTrackCommandAction action = build.getAction(YouTrackCommandAction.class);
+            if (action == null) {
+                action = new YouTrackCommandAction(build);
+                build.addAction(action);
+            }
+            return action;
+        }
     }
 
     @SuppressWarnings("UnusedDeclaration")
@@ -26,12 +76,175 @@ public class YouTrackCommandAction implements Action {
         return youTrackSite.getUrl() + "/issue/";
     }
 
-    public boolean addCommand(Command command) {
-        return commands.add(command);
+    public synchronized boolean addCommand(Command command) {
+        if (unsaved == null) {
+            unsaved = new ArrayList<Command>(getCommands());
+        }
+        numCommands = unsaved.size() + 1;
+        return unsaved.add(command);
+    }
+
+    /**
+     * Gets the commands, loading them from the build directory if needed.
+     *
+     * @return the commands.
+     */
+    public synchronized List<Command> getCommands() {
+        if (unsaved != null) {
+            return unsaved;
+        }
+        if (commands != null) {
+            return commands;
+        }
+        List<Command> result = loaded != null ? loaded.get() : null;
+        if (result == null) {
+            result = load();
+            loaded = new SoftReference<List<Command>>(result);
+        }
+        return result;
     }
 
     public int getNumCommands() {
-        return commands.size();
+        return numCommands;
+    }
+
+    private List<Command> load() {
+        final List<Command> result = new ArrayList<Command>();
+        read(new CommandCallback() {
+            public void command(Command command) {
+                result.add(command);
+            }
+        });
+        return Collections.unmodifiableList(result);
+    }
+
+    private interface CommandCallback {
+        void command(Command command);
+    }
+
+    /**
+     * Reads the saved commands one at a time, so they do not all have to be in memory.
+     */
+    private void read(CommandCallback callback) {
+        File file = getFile();
+        if (file == null || !file.exists()) {
+            return;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = Run.XSTREAM.createObjectInputStream(new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")));
+            while (true) {
+                callback.command((Command) in.readObject());
+            }
+        } catch (EOFException e) {
+            // All commands read.
+        } catch (IOException e) {
+            LOGGER.error("Could not load YouTrack commands from " + file, e);
+        } catch (ClassNotFoundException e) {
+            LOGGER.error("Could not load YouTrack commands from " + file, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private File getFile() {
+        File rootDir = build != null ? build.getRootDir() : null;
+        if (rootDir == null) {
+            return null;
+        }
+        return new File(rootDir, FILE_NAME);
+    }
+
+    /**
+     * Gets a page of the commands matching a query. Commands that are not in memory are streamed from the build
+     * directory, only keeping the ones on the page.
+     *
+     * @param query the query.
+     * @return the page.
+     */
+    public CommandQuery.Page getPage(CommandQuery query) {
+        final CommandQuery.Page page = new CommandQuery.Page(query);
+        List<Command> inMemory;
+        synchronized (this) {
+            inMemory = unsaved != null ? new ArrayList<Command>(unsaved) : commands;
+            if (inMemory == null && loaded != null) {
+                inMemory = loaded.get();
+            }
+        }
+        if (inMemory != null) {
+            for (Command command : inMemory) {
+                page.offer(command);
+            }
+        } else {
+            read(new CommandCallback() {
+                public void command(Command command) {
+                    page.offer(command);
+                }
+            });
+        }
+        return page;
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public CommandQuery.Page getPage(StaplerRequest req) {
+        return getPage(CommandQuery.from(req));
+    }
+
+    /**
+     * Writes a page of the commands as JSON, the query is read from the request parameters, see
+     * {@link CommandQuery#from(StaplerRequest)}.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        CommandQuery.Page page = getPage(req);
+        rsp.setContentType("application/json;charset=UTF-8");
+        new Gson().toJson(page, rsp.getWriter());
+    }
+
+    /**
+     * Saves the commands added since the last save to the build directory.
+     */
+    public synchronized void save() {
+        if (unsaved == null) {
+            return;
+        }
+        File file = getFile();
+        if (file == null) {
+            return;
+        }
+        AtomicFileWriter writer = null;
+        try {
+            writer = new AtomicFileWriter(file, "UTF-8");
+            ObjectOutputStream out = Run.XSTREAM.createObjectOutputStream(writer, "commands");
+            for (Command command : unsaved) {
+                out.writeObject(command);
+            }
+            out.close();
+            writer.commit();
+            writer = null;
+            commands = null;
+            loaded = new SoftReference<List<Command>>(Collections.unmodifiableList(unsaved));
+            unsaved = null;
+        } catch (IOException e) {
+            LOGGER.error("Could not save YouTrack commands to " + file, e);
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+    }
+
+    public void onLoad() {
+        if (commands != null) {
+            numCommands = commands.size();
+        }
+    }
+
+    public void onAttached(Run r) {
+    }
+
+    public void onBuildComplete() {
+        save();
     }
 
     public String getIconFileName() {
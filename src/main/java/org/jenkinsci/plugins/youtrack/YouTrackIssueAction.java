@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.IssueCache;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
 import org.jsoup.Jsoup;
@@ -105,7 +106,11 @@ public class YouTrackIssueAction implements Action {
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
+        if (youTrackSite.isIssueCache()) {
+            youTrackServer.setIssueCache(IssueCache.get(youTrackSite.getUrl()));
+        }
+        return youTrackServer;
     }
 
     YouTrackSite getYouTrackSite() {
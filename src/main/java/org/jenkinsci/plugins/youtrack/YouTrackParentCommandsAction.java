@@ -0,0 +1,48 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import jenkins.model.Jenkins;
+
+/**
+ * Links a configuration of a matrix build to the YouTrack commands of the parent build, where the commands run once
+ * for all configurations are recorded.
+ */
+public class YouTrackParentCommandsAction implements Action {
+    private final String projectName;
+    private final int buildNumber;
+
+    public YouTrackParentCommandsAction(AbstractBuild<?, ?> parentBuild) {
+        this.projectName = parentBuild.getProject().getFullName();
+        this.buildNumber = parentBuild.getNumber();
+    }
+
+    /**
+     * @return the parent build, null if it has been deleted.
+     */
+    public AbstractBuild<?, ?> getParentBuild() {
+        Jenkins instance = Jenkins.getInstance();
+        AbstractProject<?, ?> project = instance != null ? instance.getItemByFullName(projectName, AbstractProject.class) : null;
+        return project != null ? project.getBuildByNumber(buildNumber) : null;
+    }
+
+    public int getNumCommands() {
+        AbstractBuild<?, ?> parentBuild = getParentBuild();
+        YouTrackCommandAction commandAction = parentBuild != null ? parentBuild.getAction(YouTrackCommandAction.class) : null;
+        return commandAction != null ? commandAction.getNumCommands() : 0;
+    }
+
+    public String getIconFileName() {
+        return getParentBuild() != null ? "plugin.png" : null;
+    }
+
+    public String getDisplayName() {
+        return "YouTrack Commands (parent build, " + getNumCommands() + ")";
+    }
+
+    public String getUrlName() {
+        AbstractBuild<?, ?> parentBuild = getParentBuild();
+        return parentBuild != null ? "/" + parentBuild.getUrl() + "youtrackCommands" : null;
+    }
+}
@@ -1,6 +1,10 @@
 package org.jenkinsci.plugins.youtrack;
 
 import hudson.Plugin;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
+
+import java.io.File;
 
 /**
  * Listens to SCM changes.
@@ -8,9 +12,13 @@ import hudson.Plugin;
 public class YouTrackPlugin extends Plugin {
     private transient YouTrackSCMListener scmListener;
     /**
-     * For saving which ids has been processed.
+     * For saving which ids has been processed, sharded per site and repository.
+     */
+    private transient ProcessedRevisionsShards processedRevisions;
+    /**
+     * Issues created for failing jobs.
      */
-    private YoutrackProcessedRevisionsSaver revisionsSaver;
+    private transient FailureIssueIndex failureIssues;
 
 
     @Override
@@ -19,18 +27,42 @@ public class YouTrackPlugin extends Plugin {
 
         scmListener = new YouTrackSCMListener();
         scmListener.register();
+        YouTrackMetrics.getInstance().registerMBeans();
     }
 
     @Override
     public void stop() throws Exception {
         scmListener.unregister();
+        YouTrackMetrics.getInstance().unregisterMBeans();
+        synchronized (this) {
+            if (processedRevisions != null) {
+                processedRevisions.close();
+            }
+        }
         super.stop();
     }
 
-    public synchronized YoutrackProcessedRevisionsSaver getRevisionsSaver() {
-        if (revisionsSaver == null) {
-            revisionsSaver = new YoutrackProcessedRevisionsSaver();
+    public synchronized ProcessedRevisionsShards getProcessedRevisions() {
+        if (processedRevisions == null) {
+            File rootDir = Jenkins.getInstance().getRootDir();
+            processedRevisions = new ProcessedRevisionsShards(new File(rootDir, "youtrack-processed.d"), new File(rootDir, "youtrack-processed"));
         }
-        return revisionsSaver;
+        return processedRevisions;
+    }
+
+    public synchronized FailureIssueIndex getFailureIssues() {
+        if (failureIssues == null) {
+            failureIssues = new FailureIssueIndex(new File(Jenkins.getInstance().getRootDir(), "youtrack-failure-issues.properties"));
+        }
+        return failureIssues;
+    }
+
+    /**
+     * @return the saver for the global file used before the processed ids were sharded.
+     * @deprecated use {@link #getProcessedRevisions()}.
+     */
+    @Deprecated
+    public YoutrackProcessedRevisionsSaver getRevisionsSaver() {
+        return getProcessedRevisions().getLegacySaver(true);
     }
 }
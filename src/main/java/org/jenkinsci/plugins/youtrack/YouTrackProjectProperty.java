@@ -81,6 +81,14 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
      * Tracks the processed commits.
      */
     @Getter @Setter private boolean trackCommits;
+    /**
+     * Skips the commits already handled by earlier builds of the job.
+     */
+    @Getter @Setter private boolean incrementalChangelog;
+    /**
+     * Caches the issues read from YouTrack.
+     */
+    @Getter @Setter private boolean issueCache;
     /**
      * This is the default project for the integration, used for creating issues.
      */
@@ -94,7 +102,7 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
 
     @DataBoundConstructor
-    public YouTrackProjectProperty(String siteName, boolean pluginEnabled, boolean commentsEnabled, boolean commandsEnabled, boolean runAsEnabled, boolean annotationsEnabled, String linkVisibility, String stateFieldName, String fixedValues, boolean silentCommands, boolean silentLinks, String executeProjectLimits, boolean trackCommits, String project, String prefixes, String prefixCommand) {
+    public YouTrackProjectProperty(String siteName, boolean pluginEnabled, boolean commentsEnabled, boolean commandsEnabled, boolean runAsEnabled, boolean annotationsEnabled, String linkVisibility, String stateFieldName, String fixedValues, boolean silentCommands, boolean silentLinks, String executeProjectLimits, boolean trackCommits, boolean incrementalChangelog, boolean issueCache, String project, String prefixes, String prefixCommand) {
         this.siteName = siteName;
         this.pluginEnabled = pluginEnabled;
         this.commentsEnabled = commentsEnabled;
@@ -108,6 +116,8 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
         this.silentLinks = silentLinks;
         this.executeProjectLimits = executeProjectLimits;
         this.trackCommits = trackCommits;
+        this.incrementalChangelog = incrementalChangelog;
+        this.issueCache = issueCache;
         this.project = project;
         this.prefixCommandPairs = new ArrayList<PrefixCommandPair>();
     }
@@ -336,6 +346,8 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
             result.setSilentLinks(silentLinks);
             result.setExecuteProjectLimits(executeProjectLimits);
             result.setTrackCommits(trackCommits);
+            result.setIncrementalChangelog(incrementalChangelog);
+            result.setIssueCache(issueCache);
             result.setProject(project);
             result.setPrefixCommandPairs(prefixCommandPairs);
         }
@@ -8,6 +8,7 @@ import hudson.scm.ChangeLogSet;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.DescribableList;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
 
 import java.util.List;
 
@@ -15,21 +16,26 @@ public class YouTrackSCMListener extends SCMListener {
 
     @Override
     public void onChangeLogParsed(AbstractBuild<?, ?> build, BuildListener listener, ChangeLogSet<?> changeLogSet) throws Exception {
-        if (build.getRootBuild().equals(build)) {
-            DescribableList<Publisher, Descriptor<Publisher>> publishersList = build.getProject().getPublishersList();
-            boolean hasRecorder = false;
-            if (publishersList != null) {
-                for (Publisher publisher : publishersList) {
-                    if (publisher instanceof YoutrackUpdateIssuesRecorder) {
-                        hasRecorder = true;
-                        break;
+        YouTrackMetrics.Call call = YouTrackMetrics.getInstance().beginStage("onChangeLogParsed");
+        try {
+            if (build.getRootBuild().equals(build)) {
+                DescribableList<Publisher, Descriptor<Publisher>> publishersList = build.getProject().getPublishersList();
+                boolean hasRecorder = false;
+                if (publishersList != null) {
+                    for (Publisher publisher : publishersList) {
+                        if (publisher instanceof YoutrackUpdateIssuesRecorder) {
+                            hasRecorder = true;
+                            break;
+                        }
                     }
                 }
+                if (!hasRecorder) {
+                    YoutrackIssueUpdater youtrackIssueUpdater = getYoutrackIssueUpdater();
+                    youtrackIssueUpdater.update(build, listener, changeLogSet);
+                }
             }
-            if (!hasRecorder) {
-                YoutrackIssueUpdater youtrackIssueUpdater = getYoutrackIssueUpdater();
-                youtrackIssueUpdater.update(build, listener, changeLogSet);
-            }
+        } finally {
+            call.end();
         }
     }
 
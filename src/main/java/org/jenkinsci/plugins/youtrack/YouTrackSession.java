@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A logged in session with a YouTrack site shared by the builds using it, so each step does not log in again. The
+ * session logs in again when it is older than {@link #TTL} milliseconds or has been invalidated.
+ */
+public class YouTrackSession {
+    /**
+     * Time in milliseconds after which a session logs in again.
+     */
+    static final long TTL = Long.getLong(YouTrackSession.class.getName() + ".ttl", 10 * 60 * 1000L);
+
+    private static final ConcurrentMap<String, YouTrackSession> SESSIONS = new ConcurrentHashMap<String, YouTrackSession>();
+
+    private final YouTrackServer server;
+    private final String username;
+    private final String password;
+    private User user;
+    private long loggedIn;
+
+    YouTrackSession(YouTrackServer server, String username, String password) {
+        this.server = server;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Gets the session of a site.
+     *
+     * @param youTrackSite the site.
+     * @return the session, shared with the other users of the site with the same user.
+     */
+    public static YouTrackSession get(YouTrackSite youTrackSite) {
+        String key = youTrackSite.getUrl() + "\n" + youTrackSite.getUsername();
+        YouTrackSession session = SESSIONS.get(key);
+        if (session == null || !equal(session.password, youTrackSite.getPassword())) {
+            session = new YouTrackSession(new YouTrackServer(youTrackSite.getUrl()), youTrackSite.getUsername(), youTrackSite.getPassword());
+            SESSIONS.put(key, session);
+        }
+        return session;
+    }
+
+    public YouTrackServer getServer() {
+        return server;
+    }
+
+    /**
+     * Gets the logged in user, logging in if needed.
+     *
+     * @return the user, null or not logged in if the login failed.
+     */
+    public synchronized User getUser() {
+        long now = System.currentTimeMillis();
+        if (user == null || !user.isLoggedIn() || now - loggedIn > TTL) {
+            user = server.login(username, password);
+            loggedIn = now;
+        }
+        return user;
+    }
+
+    /**
+     * Logs in again after a call made with a user was rejected as not logged in, unless the session has already
+     * logged in again since it gave out that user.
+     *
+     * @param rejected the user the call was made with.
+     * @return the user to retry the call with, null or not logged in if the login failed.
+     */
+    public synchronized User relogin(User rejected) {
+        if (user == null || user == rejected) {
+            user = server.login(username, password);
+            loggedIn = System.currentTimeMillis();
+        }
+        return user;
+    }
+
+    /**
+     * Makes the next {@link #getUser()} log in again, e.g. when a call was rejected as not logged in.
+     */
+    public synchronized void invalidate() {
+        user = null;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
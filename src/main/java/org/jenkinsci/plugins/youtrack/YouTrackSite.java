@@ -26,6 +26,8 @@ public class YouTrackSite {
     @Getter @Setter private transient String executeProjectLimits;
     @Getter @Setter private transient List<PrefixCommandPair> prefixCommandPairs;
     @Getter @Setter private boolean trackCommits;
+    @Getter @Setter private transient boolean incrementalChangelog;
+    @Getter @Setter private transient boolean issueCache;
 
     @DataBoundConstructor
     public YouTrackSite(String name, String username, String password, String url) {
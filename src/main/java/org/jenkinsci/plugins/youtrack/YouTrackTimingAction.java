@@ -0,0 +1,289 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import lombok.Getter;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This action shows where a build spent its time talking to YouTrack: the wall time of each plugin stage, the time
+ * spent per kind of call, cache hit rates and the slowest calls.
+ */
+public class YouTrackTimingAction implements Action, YouTrackMetrics.CallListener {
+    /**
+     * Number of slowest calls kept.
+     */
+    private static final int SLOWEST_CALLS = 10;
+
+    public enum Category {
+        LOGIN("Login"),
+        METADATA("Metadata fetch"),
+        COMMENTS("Comments"),
+        COMMANDS("Commands"),
+        STATE_CHECKS("State checks"),
+        BUNDLES("Bundle updates"),
+        OTHER("Other");
+
+        @Getter private final String displayName;
+
+        Category(String displayName) {
+            this.displayName = displayName;
+        }
+
+        static Category forEndpoint(String endpoint) {
+            if (endpoint.equals("login")) {
+                return LOGIN;
+            } else if (endpoint.equals("comment")) {
+                return COMMENTS;
+            } else if (endpoint.equals("applyCommand") || endpoint.equals("applyCommandToIssues") || endpoint.equals("createIssue")) {
+                return COMMANDS;
+            } else if (endpoint.equals("getIssue")) {
+                return STATE_CHECKS;
+            } else if (endpoint.equals("addBuildToBundle") || endpoint.equals("getBuildBundle")) {
+                return BUNDLES;
+            } else if (endpoint.startsWith("get") || endpoint.startsWith("search")) {
+                return METADATA;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Count and time of a group of calls.
+     */
+    public static class Timing {
+        @Getter private int count;
+        @Getter private int errors;
+        private long nanos;
+
+        void add(long nanos, boolean failed) {
+            this.count++;
+            this.nanos += nanos;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        public long getMillis() {
+            return nanos / 1000000;
+        }
+    }
+
+    public static class CacheStats {
+        @Getter private long hits;
+        @Getter private long misses;
+
+        public int getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (int) (hits * 100 / lookups);
+        }
+    }
+
+    public static class SlowCall {
+        @Getter private final String endpoint;
+        @Getter private final String detail;
+        private final long nanos;
+
+        SlowCall(String endpoint, String detail, long nanos) {
+            this.endpoint = endpoint;
+            this.detail = detail;
+            this.nanos = nanos;
+        }
+
+        public long getMillis() {
+            return nanos / 1000000;
+        }
+    }
+
+    /**
+     * A line in the summary, a category or an endpoint within it.
+     */
+    public static class Row {
+        @Getter private final int depth;
+        @Getter private final String name;
+        @Getter private final Timing timing;
+        @Getter private final int percent;
+
+        Row(int depth, String name, Timing timing, int percent) {
+            this.depth = depth;
+            this.name = name;
+            this.timing = timing;
+            this.percent = percent;
+        }
+    }
+
+    @Getter private AbstractBuild build;
+    private final Map<String, Timing> stages = new LinkedHashMap<String, Timing>();
+    private final Map<Category, Map<String, Timing>> calls = new TreeMap<Category, Map<String, Timing>>();
+    private final Map<String, CacheStats> caches = new TreeMap<String, CacheStats>();
+    private final List<SlowCall> slowestCalls = new ArrayList<SlowCall>();
+
+    public YouTrackTimingAction(AbstractBuild build) {
+        this.build = build;
+    }
+
+    /**
+     * Gets the timing action of a build, adding it if the build does not have one yet.
+     *
+     * @param build the build.
+     * @return the action.
+     */
+    public static YouTrackTimingAction get(AbstractBuild<?, ?> build) {
+        synchronized (build) {
+            YouTrackTimingAction action = build.getAction(YouTrackTimingAction.class);
+            if (action == null) {
+                action = new YouTrackTimingAction(build);
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public synchronized void callEnded(String endpoint, String detail, long nanos, boolean failed) {
+        Category category = Category.forEndpoint(endpoint);
+        Map<String, Timing> endpoints = calls.get(category);
+        if (endpoints == null) {
+            endpoints = new TreeMap<String, Timing>();
+            calls.put(category, endpoints);
+        }
+        Timing timing = endpoints.get(endpoint);
+        if (timing == null) {
+            timing = new Timing();
+            endpoints.put(endpoint, timing);
+        }
+        timing.add(nanos, failed);
+
+        if (slowestCalls.size() < SLOWEST_CALLS || slowestCalls.get(slowestCalls.size() - 1).nanos < nanos) {
+            slowestCalls.add(new SlowCall(endpoint, detail, nanos));
+            Collections.sort(slowestCalls, new Comparator<SlowCall>() {
+                public int compare(SlowCall o1, SlowCall o2) {
+                    return o1.nanos < o2.nanos ? 1 : (o1.nanos == o2.nanos ? 0 : -1);
+                }
+            });
+            if (slowestCalls.size() > SLOWEST_CALLS) {
+                slowestCalls.remove(SLOWEST_CALLS);
+            }
+        }
+    }
+
+    /**
+     * Records the wall time of a plugin stage, like handling the change log.
+     *
+     * @param stage the name of the stage.
+     * @param nanos the time spent.
+     */
+    public synchronized void recordStage(String stage, long nanos) {
+        Timing timing = stages.get(stage);
+        if (timing == null) {
+            timing = new Timing();
+            stages.put(stage, timing);
+        }
+        timing.add(nanos, false);
+    }
+
+    /**
+     * Records a lookup in one of the caches used to avoid calls to YouTrack.
+     *
+     * @param cache the name of the cache.
+     * @param hit   true if the value was found in the cache.
+     */
+    public synchronized void recordCacheLookup(String cache, boolean hit) {
+        CacheStats cacheStats = caches.get(cache);
+        if (cacheStats == null) {
+            cacheStats = new CacheStats();
+            caches.put(cache, cacheStats);
+        }
+        if (hit) {
+            cacheStats.hits++;
+        } else {
+            cacheStats.misses++;
+        }
+    }
+
+    public synchronized Map<String, Timing> getStages() {
+        return new LinkedHashMap<String, Timing>(stages);
+    }
+
+    public synchronized Map<String, CacheStats> getCaches() {
+        return new TreeMap<String, CacheStats>(caches);
+    }
+
+    public synchronized List<SlowCall> getSlowestCalls() {
+        return new ArrayList<SlowCall>(slowestCalls);
+    }
+
+    public synchronized long getStageMillis() {
+        long millis = 0;
+        for (Timing timing : stages.values()) {
+            millis += timing.getMillis();
+        }
+        return millis;
+    }
+
+    /**
+     * @return the time of all calls, this can be more than the stage time as some calls are made concurrently.
+     */
+    public synchronized long getCallMillis() {
+        long nanos = 0;
+        for (Map<String, Timing> endpoints : calls.values()) {
+            for (Timing timing : endpoints.values()) {
+                nanos += timing.nanos;
+            }
+        }
+        return nanos / 1000000;
+    }
+
+    public synchronized int getCallCount() {
+        int count = 0;
+        for (Map<String, Timing> endpoints : calls.values()) {
+            for (Timing timing : endpoints.values()) {
+                count += timing.count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the summary shown as bars, each category followed by its endpoints. The bars are relative to the stage
+     * time, or to the call time if that is longer.
+     *
+     * @return the rows.
+     */
+    public synchronized List<Row> getRows() {
+        long scale = Math.max(1, Math.max(getStageMillis(), getCallMillis()));
+        List<Row> rows = new ArrayList<Row>();
+        for (Map.Entry<Category, Map<String, Timing>> entry : calls.entrySet()) {
+            Timing categoryTiming = new Timing();
+            for (Timing timing : entry.getValue().values()) {
+                categoryTiming.count += timing.count;
+                categoryTiming.errors += timing.errors;
+                categoryTiming.nanos += timing.nanos;
+            }
+            rows.add(new Row(0, entry.getKey().getDisplayName(), categoryTiming, (int) (categoryTiming.getMillis() * 100 / scale)));
+            for (Map.Entry<String, Timing> endpoint : entry.getValue().entrySet()) {
+                rows.add(new Row(1, endpoint.getKey(), endpoint.getValue(), (int) (endpoint.getValue().getMillis() * 100 / scale)));
+            }
+        }
+        return rows;
+    }
+
+    public String getIconFileName() {
+        return "plugin.png";
+    }
+
+    public String getDisplayName() {
+        return "YouTrack Timing";
+    }
+
+    public String getUrlName() {
+        return "youtrackTiming";
+    }
+}
@@ -9,9 +9,12 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import lombok.Getter;
 import lombok.Setter;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
+import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.youtrack.youtrackapi.*;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
@@ -35,13 +38,30 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
     @Getter @Setter private String visibility;
     @Getter @Setter private String command;
     @Getter @Setter private boolean attachBuildLog;
+    /**
+     * Name of the {@link BuildLogExcerpt.Mode} of the log attachment, null for the whole log.
+     */
+    @Getter @Setter private String attachmentMode;
+    /**
+     * Lines or megabytes to attach, or lines of context around errors, depending on the mode.
+     */
+    @Getter @Setter private int attachmentSize;
+    @Getter @Setter private boolean compressBuildLog;
+    /**
+     * Comments on the issue created for an earlier build failing the same way, instead of creating another issue.
+     */
+    @Getter @Setter private boolean updateExistingIssue;
 
     public static final String FAILURE = "failure";
 
     public static final String FAILUREORUNSTABL = "failureOrUnstable";
 
-    @DataBoundConstructor
     public YoutrackCreateIssueOnBuildFailure(String project, String summary, String description, String threshold, String visibility, String command, boolean attachBuildLog) {
+        this(project, summary, description, threshold, visibility, command, attachBuildLog, null, 0, false, false);
+    }
+
+    @DataBoundConstructor
+    public YoutrackCreateIssueOnBuildFailure(String project, String summary, String description, String threshold, String visibility, String command, boolean attachBuildLog, String attachmentMode, int attachmentSize, boolean compressBuildLog, boolean updateExistingIssue) {
         this.project = project;
         this.summary = summary;
         this.description = description;
@@ -49,6 +69,10 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
         this.visibility = visibility;
         this.command = command;
         this.attachBuildLog = attachBuildLog;
+        this.attachmentMode = attachmentMode;
+        this.attachmentSize = attachmentSize;
+        this.compressBuildLog = compressBuildLog;
+        this.updateExistingIssue = updateExistingIssue;
     }
 
     @Override
@@ -64,49 +88,129 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
             return true;
         }
 
+        FailureIssueIndex failureIssues = updateExistingIssue ? getFailureIssues() : null;
+        String job = build.getProject() != null ? build.getProject().getFullName() : null;
         if (shouldCreateIssue(build)) {
-            YouTrackServer server = getYouTrackServer(youTrackSite);
-            User user = server.login(youTrackSite.getUsername(), youTrackSite.getPassword());
-            if (user == null) {
-                listener.getLogger().println("Could not login user to YouTrack");
-                return true;
-            }
+            long start = System.nanoTime();
+            YouTrackTimingAction timings = YouTrackTimingAction.get(build);
+            try {
+                YouTrackServer server = getYouTrackServer(youTrackSite);
+                server.setCallListener(timings);
+                User user = server.login(youTrackSite.getUsername(), youTrackSite.getPassword());
+                if (user == null) {
+                    listener.getLogger().println("Could not login user to YouTrack");
+                    return true;
+                }
 
-            EnvVars environment = build.getEnvironment(listener);
-            String title = environment.expand(this.summary);
-            String description = environment.expand(this.description);
-            String command = environment.expand(this.command);
+                EnvVars environment = build.getEnvironment(listener);
+                String title = environment.expand(this.summary);
+                String description = environment.expand(this.description);
+                String command = environment.expand(this.command);
 
-            if (title == null || "".equals(title)) {
-                title = "Build failure in build " + build.getNumber();
-            } else {
-                title = environment.expand(title);
-            }
-            if (description == null || "".equals(description)) {
-                description = getAbsoluteUrl(build);
-            } else {
-                description = environment.expand(description);
-            }
+                if (title == null || "".equals(title)) {
+                    title = "Build failure in build " + build.getNumber();
+                } else {
+                    title = environment.expand(title);
+                }
+                if (description == null || "".equals(description)) {
+                    description = getAbsoluteUrl(build);
+                } else {
+                    description = environment.expand(description);
+                }
 
-            File buildLog = null;
-            if (attachBuildLog) {
-                buildLog = build.getLogFile();
-            }
-            Command issue = server.createIssue(youTrackSite.getName(), user, project, title, description, command, buildLog);
-            YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
-            if (youTrackCommandAction == null) {
-                youTrackCommandAction = new YouTrackCommandAction(build);
-                build.addAction(youTrackCommandAction);
-            }
-            youTrackCommandAction.addCommand(issue);
+                String signature = null;
+                if (failureIssues != null && job != null) {
+                    signature = FailureIssueIndex.getSignature(title, build.getLogFile());
+                    String existingIssueId = failureIssues.get(job, signature);
+                    if (existingIssueId != null) {
+                        Issue existingIssue = server.getIssue(user, existingIssueId, youTrackSite.getStateFieldName());
+                        if (existingIssue != null && StringUtils.isNotBlank(existingIssue.getResolved())) {
+                            // The failure came back after the issue was resolved, it gets a new issue.
+                            listener.getLogger().println("YouTrack issue " + existingIssueId + " for this failure is resolved");
+                        } else {
+                            Command comment = server.comment(youTrackSite.getName(), user, new Issue(existingIssueId), "Failed again in build: " + getAbsoluteUrl(build), visibility, false);
+                            if (comment != null && comment.getStatus() == Command.Status.OK) {
+                                addCommand(build, comment);
+                                listener.getLogger().println("Commented on existing YouTrack issue " + existingIssueId);
+                                return true;
+                            }
+                        }
+                        // The issue is resolved or may have been deleted, create a new one.
+                        failureIssues.remove(job, signature);
+                    }
+                }
+
+                Command issue;
+                BuildLogExcerpt excerpt = getBuildLogExcerpt();
+                if (attachBuildLog && excerpt != null) {
+                    File buildLog = build.getLogFile();
+                    File attachment = File.createTempFile("youtrack-log", ".tmp");
+                    try {
+                        excerpt.write(buildLog, attachment);
+                        issue = server.createIssue(youTrackSite.getName(), user, project, title, description, command, attachment, excerpt.getFileName(buildLog.getName()));
+                    } finally {
+                        if (!attachment.delete()) {
+                            attachment.deleteOnExit();
+                        }
+                    }
+                } else {
+                    File buildLog = null;
+                    if (attachBuildLog) {
+                        buildLog = build.getLogFile();
+                    }
+                    issue = server.createIssue(youTrackSite.getName(), user, project, title, description, command, buildLog);
+                }
+                addCommand(build, issue);
+                if (signature != null && issue.getStatus() == Command.Status.OK && issue.getIssueId() != null) {
+                    failureIssues.put(job, signature, issue.getIssueId());
+                }
 
-            listener.getLogger().println("Created new YouTrack issue " + issue.getIssueId());
+                listener.getLogger().println("Created new YouTrack issue " + issue.getIssueId());
+            } finally {
+                timings.recordStage("Create issue on failure", System.nanoTime() - start);
+            }
         }
 
         return true;
 
     }
 
+    private static void addCommand(AbstractBuild<?, ?> build, Command command) {
+        YouTrackCommandAction youTrackCommandAction = YouTrackCommandAction.get(build);
+        youTrackCommandAction.addCommand(command);
+        youTrackCommandAction.save();
+    }
+
+    FailureIssueIndex getFailureIssues() {
+        Jenkins jenkins = Jenkins.getInstance();
+        YouTrackPlugin plugin = jenkins != null ? jenkins.getPlugin(YouTrackPlugin.class) : null;
+        return plugin != null ? plugin.getFailureIssues() : null;
+    }
+
+    /**
+     * Gets the excerpt of the build log to attach.
+     *
+     * @return the excerpt, null if the whole log is attached as it is.
+     */
+    BuildLogExcerpt getBuildLogExcerpt() {
+        BuildLogExcerpt.Mode mode = BuildLogExcerpt.Mode.FULL;
+        if (attachmentMode != null && !attachmentMode.equals("")) {
+            try {
+                mode = BuildLogExcerpt.Mode.valueOf(attachmentMode);
+            } catch (IllegalArgumentException e) {
+                mode = BuildLogExcerpt.Mode.FULL;
+            }
+        }
+        if (mode == BuildLogExcerpt.Mode.FULL && !compressBuildLog) {
+            return null;
+        }
+        int size = attachmentSize;
+        if (size <= 0) {
+            size = mode == BuildLogExcerpt.Mode.TAIL_LINES ? 1000 : mode == BuildLogExcerpt.Mode.TAIL_MB ? 5 : 10;
+        }
+        return new BuildLogExcerpt(mode, size, compressBuildLog);
+    }
+
     public String getAbsoluteUrl(AbstractBuild<?, ?> build) {
         return build.getAbsoluteUrl();
     }
@@ -154,6 +258,16 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
         }
 
 
+        @SuppressWarnings("UnusedDeclaration")
+        public ListBoxModel doFillAttachmentModeItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Whole log", BuildLogExcerpt.Mode.FULL.name());
+            items.add("Last lines", BuildLogExcerpt.Mode.TAIL_LINES.name());
+            items.add("Last megabytes", BuildLogExcerpt.Mode.TAIL_MB.name());
+            items.add("Lines around errors", BuildLogExcerpt.Mode.ERRORS.name());
+            return items;
+        }
+
         public FormValidation doCheckProject(@QueryParameter String value) {
             return FormValidation.validateRequired(value);
         }
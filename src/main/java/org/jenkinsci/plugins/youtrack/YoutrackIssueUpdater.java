@@ -1,31 +1,28 @@
 package org.jenkinsci.plugins.youtrack;
 
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.scm.ChangeLogSet;
+import hudson.scm.SCM;
 import hudson.tasks.Mailer;
 import jenkins.model.Jenkins;
-import lombok.Data;
+import org.jenkinsci.plugins.youtrack.youtrackapi.AsyncYouTrackServer;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.IssueCache;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Future;
 
 
 public class YoutrackIssueUpdater {
 
-    @Data
-    private static class Pair<T, U> {
-        private final T first;
-        private final U second;
-    }
-
     /**
      * Converts list of commands to map.
      * @param youTrackSite site to convert for.
@@ -70,18 +67,29 @@ public class YoutrackIssueUpdater {
             return;
         }
 
-        Iterator<? extends ChangeLogSet.Entry> changeLogIterator = changeLogSet.iterator();
+        YouTrackMetrics.Call call = YouTrackMetrics.getInstance().beginStage("updateIssues");
+        YouTrackTimingAction timings = YouTrackTimingAction.get(build);
+        try {
+            Iterator<? extends ChangeLogSet.Entry> changeLogIterator = changeLogSet.iterator();
 
-        YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-        User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
-        if (user == null || !user.isLoggedIn()) {
-            listener.getLogger().append("FAILED: log in with set YouTrack user");
+            YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
+            youTrackServer.setCallListener(timings);
+            User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
+            if (user == null || !user.isLoggedIn()) {
+                listener.getLogger().append("FAILED: log in with set YouTrack user");
+            }
+            performActions(build, listener, youTrackSite, changeLogIterator, youTrackServer, user);
+        } finally {
+            timings.recordStage("SCM changes", call.end());
         }
-        performActions(build, listener, youTrackSite, changeLogIterator, youTrackServer, user);
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
+        if (youTrackSite.isIssueCache()) {
+            youTrackServer.setIssueCache(IssueCache.get(youTrackSite.getUrl()));
+        }
+        return youTrackServer;
     }
 
     YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
@@ -114,62 +122,79 @@ public class YoutrackIssueUpdater {
         }
 
 
-        YouTrackCommandAction commandAction = new YouTrackCommandAction(build);
+        List<Command> addedCommands = new ArrayList<Command>();
 
         List<Issue> fixedIssues = new ArrayList<Issue>();
+        String revisionsShardKey = youTrackSite.isTrackCommits() ? getRevisionsShardKey(build, youTrackSite) : null;
         //This is the set of issue ids for which the related build command has already been added
         Set<String> commentedIssueIds = new HashSet<String>();
 
+        List<Project> youtrackProjects = new ArrayList<Project>(projects.size());
+        Set<String> includedProjects = getIncludedProjects(projects, youTrackSite);
+        for (Project project : projects) {
+            if (includedProjects.contains(project.getShortName())) {
+                youtrackProjects.add(project);
+            }
+        }
+        CommitMessageParser parser = new CommitMessageParser(projects, youtrackProjects, getPrefixCommands(youTrackSite));
+        String jobName = getJobName(build);
+
+        ProcessedRevisionsShards processedRevisions = getProcessedRevisions();
+        String jobShardKey = youTrackSite.isIncrementalChangelog() && processedRevisions != null ? getJobShardKey(jobName, youTrackSite) : null;
+
         while (changeLogIterator.hasNext()) {
             ChangeLogSet.Entry next = changeLogIterator.next();
 
             String msg;
             msg = getMessage(next);
+            String commitId = next.getCommitId();
 
-            List<Command> commands = addCommentIfEnabled(build, youTrackSite, youTrackServer, user, projects, msg, next.getCommitId(), listener, commentedIssueIds);
-            for (Command command : commands) {
-                commandAction.addCommand(command);
+            if (jobShardKey != null && commitId != null) {
+                boolean handled = processedRevisions.isProcessed(jobShardKey, commitId);
+                YouTrackTimingAction.get(build).recordCacheLookup("Commits handled by job", handled);
+                if (handled) {
+                    continue;
+                }
             }
 
+            CommitMessageParser.ParsedCommit parsedCommit = parseCommit(build, parser, jobName, commitId, msg);
+            boolean failed = false;
 
-            if (projects != null) {
-                List<Project> youtrackProjects = new ArrayList<Project>(projects.size());
-                Set<String> includedProjects = getIncludedProjects(projects, youTrackSite);
-
-                for (Project project : projects) {
-                    if (includedProjects.contains(project.getShortName())) {
-                        youtrackProjects.add(project);
-                    }
-                }
+            List<Command> commands = addCommentIfEnabled(build, youTrackSite, youTrackServer, user, parsedCommit.getMentionedIssueIds(), commitId, listener, commentedIssueIds);
+            for (Command command : commands) {
+                addedCommands.add(command);
+                failed |= command.getStatus() != Command.Status.OK;
+            }
 
-                Jenkins instance = Jenkins.getInstance();
-                YouTrackPlugin plugin = null;
-                if (instance != null) {
-                    plugin = instance.getPlugin(YouTrackPlugin.class);
-                }
-                YoutrackProcessedRevisionsSaver revisionsSaver = null;
-                if (plugin != null) {
-                    revisionsSaver = plugin.getRevisionsSaver();
+            boolean processed = false;
+            if (youTrackSite.isTrackCommits() && processedRevisions != null) {
+                processed = processedRevisions.isProcessed(revisionsShardKey, commitId);
+                YouTrackTimingAction.get(build).recordCacheLookup("Processed commits", processed);
+            }
+            if ((youTrackSite.isTrackCommits() && (processedRevisions != null && !processed)) || !youTrackSite.isTrackCommits()) {
+                List<Command> commandList = applyCommandsIfEnabled(listener, youTrackSite, youTrackServer, user, fixedIssues, next, parsedCommit.getCommands());
+                for (Command command : commandList) {
+                    addedCommands.add(command);
+                    failed |= command.getStatus() != Command.Status.OK;
                 }
-                if ((youTrackSite.isTrackCommits() && (revisionsSaver != null && !revisionsSaver.isProcessed(next.getCommitId()))) || !youTrackSite.isTrackCommits()) {
-                    List<Command> commandList = executeCommandsIfEnabled(listener, youTrackSite, youTrackServer, user, youtrackProjects, fixedIssues, next, msg);
-                    for (Command command : commandList) {
-                        commandAction.addCommand(command);
-                    }
-                    if (youTrackSite.isTrackCommits() && !commandList.isEmpty()) {
-                        if (revisionsSaver != null) {
-                            revisionsSaver.addProcessed(next.getCommitId());
-                        }
+                if (youTrackSite.isTrackCommits() && !commandList.isEmpty()) {
+                    if (processedRevisions != null) {
+                        processedRevisions.addProcessed(revisionsShardKey, commitId);
                     }
                 }
             }
 
+            if (jobShardKey != null && commitId != null && !failed) {
+                processedRevisions.addProcessed(jobShardKey, commitId);
+            }
         }
 
-        int numCommands = commandAction.getNumCommands();
-
-        if (numCommands > 0) {
-            build.addAction(commandAction);
+        if (!addedCommands.isEmpty()) {
+            YouTrackCommandAction commandAction = YouTrackCommandAction.get(build);
+            for (Command command : addedCommands) {
+                commandAction.addCommand(command);
+            }
+            commandAction.save();
         }
 
         build.addAction(new YouTrackSaveFixedIssues(fixedIssues));
@@ -195,6 +220,151 @@ public class YoutrackIssueUpdater {
     }
 
 
+    private static ProcessedRevisionsShards getProcessedRevisions() {
+        Jenkins instance = Jenkins.getInstance();
+        YouTrackPlugin plugin = null;
+        if (instance != null) {
+            plugin = instance.getPlugin(YouTrackPlugin.class);
+        }
+        return plugin != null ? plugin.getProcessedRevisions() : null;
+    }
+
+    /**
+     * Gets the name of the job the parse cache and incremental processing are keyed by. Matrix configurations use the
+     * name of the matrix job, as they all build the same change log.
+     *
+     * @param build the build.
+     * @return the full name of the job.
+     */
+    static String getJobName(AbstractBuild<?, ?> build) {
+        AbstractProject<?, ?> project = build.getProject();
+        if (project == null) {
+            return null;
+        }
+        AbstractProject<?, ?> rootProject = project.getRootProject();
+        return rootProject != null ? rootProject.getFullName() : project.getFullName();
+    }
+
+    /**
+     * Gets the key of the processed revisions shard holding the commits a job has handled.
+     *
+     * @param jobName      the full name of the job.
+     * @param youTrackSite the site.
+     * @return the key.
+     */
+    static String getJobShardKey(String jobName, YouTrackSite youTrackSite) {
+        return youTrackSite.getName() + "@job:" + jobName;
+    }
+
+    private CommitMessageParser.ParsedCommit parseCommit(AbstractBuild<?, ?> build, CommitMessageParser parser, String jobName, String commitId, String msg) {
+        if (commitId == null) {
+            return parser.parse(msg);
+        }
+        CommitParseCache cache = CommitParseCache.getInstance();
+        CommitMessageParser.ParsedCommit parsedCommit = cache.get(jobName, commitId, msg, parser.getFingerprint());
+        YouTrackTimingAction.get(build).recordCacheLookup("Parsed commits", parsedCommit != null);
+        if (parsedCommit == null) {
+            parsedCommit = parser.parse(msg);
+            cache.put(jobName, commitId, parsedCommit);
+        }
+        return parsedCommit;
+    }
+
+    /**
+     * Getter chains reading the repository urls of the common SCMs, each getter may return a collection or array:
+     * Git, Subversion, Mercurial and CVS.
+     */
+    private static final String[][] REPOSITORY_URL_GETTERS = {
+            {"getUserRemoteConfigs", "getUrl"},
+            {"getLocations", "getURL"},
+            {"getSource"},
+            {"getCvsRoot"},
+            {"getRepositories", "getCvsRoot"}
+    };
+
+    /**
+     * Gets the key of the processed revisions shard for the build, the site name and the repository.
+     * <p/>
+     * The repository is identified by the remote urls of the SCM, read reflectively as the SCM plugins are optional.
+     * For an SCM without known urls it falls back to the type of SCM. It must not depend on the job, as the same commit
+     * is usually built by several jobs.
+     *
+     * @param build        the build.
+     * @param youTrackSite the site.
+     * @return the key.
+     */
+    static String getRevisionsShardKey(AbstractBuild<?, ?> build, YouTrackSite youTrackSite) {
+        String key = String.valueOf(youTrackSite.getName());
+        SCM scm = build.getProject().getScm();
+        if (scm == null) {
+            return key;
+        }
+        Set<String> urls = new TreeSet<String>();
+        addRepositoryUrls(scm, urls);
+        if (!urls.isEmpty()) {
+            StringBuilder repositories = new StringBuilder();
+            for (String url : urls) {
+                if (repositories.length() > 0) {
+                    repositories.append(',');
+                }
+                repositories.append(url);
+            }
+            return key + "@" + repositories;
+        }
+        return key + "@" + scm.getClass().getName();
+    }
+
+    static void addRepositoryUrls(Object scm, Set<String> urls) {
+        // Multiple SCMs plugin.
+        Object configured = invokeGetter(scm, "getConfiguredSCMs");
+        if (configured instanceof Iterable) {
+            for (Object child : (Iterable<?>) configured) {
+                addRepositoryUrls(child, urls);
+            }
+            return;
+        }
+        for (String[] getters : REPOSITORY_URL_GETTERS) {
+            addValues(scm, getters, 0, urls);
+            if (!urls.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private static void addValues(Object target, String[] getters, int index, Set<String> values) {
+        if (target == null) {
+            return;
+        }
+        if (target instanceof Iterable) {
+            for (Object element : (Iterable<?>) target) {
+                addValues(element, getters, index, values);
+            }
+        } else if (target instanceof Object[]) {
+            for (Object element : (Object[]) target) {
+                addValues(element, getters, index, values);
+            }
+        } else if (index == getters.length) {
+            if (target instanceof String && ((String) target).trim().length() > 0) {
+                values.add(((String) target).trim());
+            }
+        } else {
+            addValues(invokeGetter(target, getters[index]), getters, index + 1, values);
+        }
+    }
+
+    private static Object invokeGetter(Object target, String name) {
+        try {
+            Method getter = target.getClass().getMethod(name);
+            return getter.invoke(target);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            return null;
+        }
+    }
+
     private Set<String> getIncludedProjects(List<Project> projects, YouTrackSite youTrackSite) {
         String executeProjectLimits = youTrackSite.getExecuteProjectLimits();
         if (executeProjectLimits == null || executeProjectLimits.trim().equals("")) {
@@ -229,105 +399,48 @@ public class YoutrackIssueUpdater {
      * @return the list of commands tried to be executed.
      */
     List<Command> executeCommandsIfEnabled(BuildListener listener, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Project> projects, List<Issue> fixedIssues, ChangeLogSet.Entry changeLogEntry, String msg) {
+        if (!youTrackSite.isCommandsEnabled()) {
+            return new ArrayList<Command>();
+        }
+        CommitMessageParser parser = new CommitMessageParser(projects, projects, getPrefixCommands(youTrackSite));
+        return applyCommandsIfEnabled(listener, youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, parser.parseCommands(msg));
+    }
+
+    private List<Command> applyCommandsIfEnabled(BuildListener listener, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Issue> fixedIssues, ChangeLogSet.Entry changeLogEntry, List<CommitMessageParser.ParsedCommand> parsedCommands) {
         List<Command> commands = new ArrayList<Command>();
         if (youTrackSite.isCommandsEnabled()) {
-            Map<String, String> prefixCommands = getPrefixCommands(youTrackSite);
-
-            String[] lines = msg.split("\n");
-
-            for (int i = 0; i < lines.length; i++) {
-                String line = lines[i];
-                if (line.contains("#")) {
-                    String comment = null;
-                    String issueStart = line.substring(line.indexOf("#") + 1);
-                    boolean isSilent = false;
-                    String extraPrefixCommand = null;
-                    int hashPosition = line.indexOf("#");
-                    if (hashPosition != 0) {
-                        int prefixLength = hashPosition;
-                        char charBefore = line.charAt(hashPosition - 1);
-                        if (charBefore == '!') {
-                            isSilent = true;
-                            --prefixLength;
-                        }
-
-                        if (prefixCommands != null && prefixLength != 0) {
-                            String prefix = line.substring(0, prefixLength).trim().toLowerCase();
-                            for (String prefixKey : prefixCommands.keySet()) {
-                                if (prefix.endsWith(prefixKey)) {
-                                    extraPrefixCommand = prefixCommands.get(prefixKey);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-
-                    if (i + 1 < lines.length) {
-                        // Consider all lines following the action one to be a comment,
-                        // until we see another "#"
-                        // We can keep moving i at this point since any lines we process
-                        // shouldn't be considered for commands.
-                        for (++i, comment = ""; i < lines.length; ++i) {
-                            String nextLine = lines[i];
-                            if (nextLine.contains("#")) {
-                                // Reset so we process this line again in the next iteration.
-                                --i;
-                                break;
-                            }
-                            comment += nextLine + "\n";
-                        }
-
-                        comment = comment.trim();
-                        if (comment.isEmpty()) {
-                            comment = null;
-                        }
-                    }
-
-                    Project p = null;
-                    for (Project project : projects) {
-                        if (issueStart.startsWith(project.getShortName() + "-")) {
-                            p = project;
-                            break;
-                        }
-                    }
-
-                    if (p == null) {
-                        continue;
-                    }
-
-                    Pair<String, String> issueAndCommand = getIssueAndCommand(p, issueStart);
-                    if (issueAndCommand == null) {
-                        continue;
-                    }
-
-                    if (extraPrefixCommand != null) {
-                        applyCommandToIssue(youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, issueAndCommand.getFirst(), extraPrefixCommand, null, listener, commands, isSilent);
-                    }
-                    applyCommandToIssue(youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, issueAndCommand.getFirst(), issueAndCommand.getSecond(), comment, listener, commands, isSilent);
+            for (CommitMessageParser.ParsedCommand parsedCommand : parsedCommands) {
+                if (parsedCommand.getPrefixCommand() != null) {
+                    applyCommandToIssues(youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, parsedCommand.getIssueIds(), parsedCommand.getPrefixCommand(), null, listener, commands, parsedCommand.isSilent());
                 }
+                applyCommandToIssues(youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, parsedCommand.getIssueIds(), parsedCommand.getCommand(), parsedCommand.getComment(), listener, commands, parsedCommand.isSilent());
             }
         }
         return commands;
     }
 
-    private static Pair<String, String> getIssueAndCommand(Project p, String issueStart) {
-        Pattern projectPattern = Pattern.compile("(" + p.getShortName() + "-" + "(\\d+)" + ")( )?(.*)");
-
-        Matcher matcher = projectPattern.matcher(issueStart);
-        // TODO: Should this support invoking commands on multiple issues when they're on the same line?
-        // And even including the second mention as part of the command to the first?
-        // while (matcher.find())
-        if (!matcher.find() || matcher.groupCount() < 1) {
-            return null;
+    /**
+     * Applies a command to the issues of a commit line. A command for several issues is sent as one batched command,
+     * with a command record per issue.
+     */
+    private void applyCommandToIssues(YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Issue> fixedIssues, ChangeLogSet.Entry next, List<String> issueIds, String command, String comment, BuildListener listener, List<Command> commands, boolean silent) {
+        String stateFieldName = "State";
+        if (youTrackSite.getStateFieldName() != null && !youTrackSite.getStateFieldName().equals("")) {
+            stateFieldName = youTrackSite.getStateFieldName();
         }
 
-        String issueId = p.getShortName() + "-" + matcher.group(2);
-        String command = matcher.group(4);
-
-        return new Pair<String, String>(issueId, command);
-    }
+        //Get the issue state, then apply command, and get the issue state again.
+        //to know whether the command has been marked as fixed, instead of trying to
+        //interpret the command. This means however that there is a possibility for
+        //the user to change state between the before and the after call, so the after
+        //state can be affected by something else than the command.
+        //The before states are fetched in the background while the run as user is looked up.
+        AsyncYouTrackServer asyncYouTrackServer = new AsyncYouTrackServer(youTrackServer);
+        List<Future<Issue>> beforeFutures = new ArrayList<Future<Issue>>(issueIds.size());
+        for (String issueId : issueIds) {
+            beforeFutures.add(asyncYouTrackServer.getIssue(user, issueId, stateFieldName));
+        }
 
-    private void applyCommandToIssue(YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Issue> fixedIssues, ChangeLogSet.Entry next, String issueId, String command, String comment, BuildListener listener, List<Command> commands, boolean silent) {
         User userByEmail = null;
         if (youTrackSite.isRunAsEnabled()) {
             String address = next.getAuthor().getProperty(Mailer.UserProperty.class).getAddress();
@@ -337,64 +450,67 @@ public class YoutrackIssueUpdater {
             }
         }
 
-        String stateFieldName = "State";
-        if (youTrackSite.getStateFieldName() != null && !youTrackSite.getStateFieldName().equals("")) {
-            stateFieldName = youTrackSite.getStateFieldName();
+        List<Issue> befores = new ArrayList<Issue>(issueIds.size());
+        for (Future<Issue> beforeFuture : beforeFutures) {
+            befores.add(AsyncYouTrackServer.await(beforeFuture));
         }
-
-        //Get the issue state, then apply command, and get the issue state again.
-        //to know whether the command has been marked as fixed, instead of trying to
-        //interpret the command. This means however that there is a possibility for
-        //the user to change state between the before and the after call, so the after
-        //state can be affected by something else than the command.
-        Issue before = youTrackServer.getIssue(user, issueId, stateFieldName);
         boolean isSilent = youTrackSite.isSilentCommands() || silent;
-        Command cmd = youTrackServer.applyCommand(youTrackSite.getName(), user, new Issue(issueId), command, comment, userByEmail, !isSilent);
-        if (cmd.getStatus() == Command.Status.OK) {
-            listener.getLogger().println("Applied command: " + command + " to issue: " + issueId);
+        List<Command> issueCommands;
+        if (issueIds.size() == 1) {
+            issueCommands = Collections.singletonList(youTrackServer.applyCommand(youTrackSite.getName(), user, new Issue(issueIds.get(0)), command, comment, userByEmail, !isSilent));
         } else {
-            listener.getLogger().println("FAILED: Applying command: " + command + " to issue: " + issueId);
+            List<Issue> issues = new ArrayList<Issue>(issueIds.size());
+            for (String issueId : issueIds) {
+                issues.add(new Issue(issueId));
+            }
+            try {
+                issueCommands = IssueFanOut.applyCommand(youTrackServer, youTrackSite.getName(), user, issues, command, comment, userByEmail, !isSilent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                listener.getLogger().println("FAILED: Applying command: " + command + " to issues: " + issueIds + ", interrupted");
+                return;
+            }
         }
-        commands.add(cmd);
-        Issue after = youTrackServer.getIssue(user, issueId, stateFieldName);
 
         Set<String> fixedValues = getFixedValues(youTrackSite);
+        for (int i = 0; i < issueIds.size(); i++) {
+            String issueId = issueIds.get(i);
+            Command cmd = issueCommands.get(i);
+            if (cmd != null && cmd.getStatus() == Command.Status.OK) {
+                listener.getLogger().println("Applied command: " + command + " to issue: " + issueId);
+            } else {
+                listener.getLogger().println("FAILED: Applying command: " + command + " to issue: " + issueId);
+            }
+            if (cmd != null) {
+                commands.add(cmd);
+            }
+            Issue before = befores.get(i);
+            Issue after = youTrackServer.getIssue(user, issueId, stateFieldName);
 
-        if (before != null && after != null && !fixedValues.contains(before.getState()) && fixedValues.contains(after.getState())) {
-            fixedIssues.add(after);
+            if (before != null && after != null && !fixedValues.contains(before.getState()) && fixedValues.contains(after.getState())) {
+                fixedIssues.add(after);
+            }
         }
     }
 
-    private List<Command> addCommentIfEnabled(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Project> projects, String msg, String commitId, BuildListener listener, Set<String> commentedIssueIds) {
+    private List<Command> addCommentIfEnabled(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<String> mentionedIssueIds, String commitId, BuildListener listener, Set<String> commentedIssueIds) {
         List<Command> commands = new ArrayList<Command>();
         if (youTrackSite.isCommentEnabled()) {
-            for (Project project1 : projects) {
-                String shortName = project1.getShortName();
-                Pattern projectPattern = Pattern.compile("^(" + shortName + "-" + "(\\d+)" + ")|\\W(" + shortName + "-" + "(\\d+))");
-                Matcher matcher = projectPattern.matcher(msg);
-                while (matcher.find()) {
-                    if (matcher.groupCount() >= 1) {
-                        String id = matcher.group(2);
-                        if (id == null) {
-                            id = matcher.group(4);
-                        }
-                        String issueId = shortName + "-" + id;
-                        String commentText = "Related build: " + getAbsoluteUrlForBuild(build) + "\nSHA: " + commitId;
-                        Command comment = null;
+            for (String issueId : mentionedIssueIds) {
+                String commentText = "Related build: " + getAbsoluteUrlForBuild(build) + "\nSHA: " + commitId;
+                Command comment = null;
+                if (!commentedIssueIds.contains(issueId)) {
+                    comment = youTrackServer.comment(youTrackSite.getName(), user, new Issue(issueId), commentText, youTrackSite.getLinkVisibility(), youTrackSite.isSilentLinks());
+                }
+                if (comment != null) {
+                    commands.add(comment);
+                    if (comment.getStatus() == Command.Status.OK) {
                         if (!commentedIssueIds.contains(issueId)) {
-                            comment = youTrackServer.comment(youTrackSite.getName(), user, new Issue(issueId), commentText, youTrackSite.getLinkVisibility(), youTrackSite.isSilentLinks());
-                        }
-                        if (comment != null) {
-                            commands.add(comment);
-                            if (comment.getStatus() == Command.Status.OK) {
-                                if (!commentedIssueIds.contains(issueId)) {
-                                    commentedIssueIds.add(issueId);
-                                    listener.getLogger().println("Commented on " + issueId);
-                                }
-                            } else {
-                                listener.getLogger().println("FAILED: Commented on " + issueId);
-                            }
+                            commentedIssueIds.add(issueId);
+                            listener.getLogger().println("Commented on " + issueId);
                         }
+                    } else {
+                        listener.getLogger().println("FAILED: Commented on " + issueId);
                     }
                 }
             }
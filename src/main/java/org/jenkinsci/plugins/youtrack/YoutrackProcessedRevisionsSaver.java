@@ -4,28 +4,150 @@ import jenkins.model.Jenkins;
 import org.apache.log4j.Logger;
 
 import java.io.*;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This is a class to persist the commit ids processed by the YouTrack plugin for Jenkins
+ * <p/>
+ * Lookups are served from a concurrent set and never wait for I/O. New ids are put in a bounded in-memory queue and
+ * appended to the file in batches through one long-lived {@link FileChannel}, by a background writer thread shared
+ * by all savers.
+ * <p/>
+ * A {@link RevisionBloomFilter}, persisted next to the file, answers most lookups for new commits before the exact
+ * set is consulted.
+ * <p/>
+ * The saver opens right away and loads the file into memory in the background. Lookups made before the load has
+ * finished, and that the bloom filter cannot answer, are answered from disk: from a sorted {@link RevisionIdIndex} of
+ * the file written after each load, and by scanning the part of the file written after that.
  */
 public class YoutrackProcessedRevisionsSaver {
     private static final Logger LOGGER = Logger.getLogger(YoutrackProcessedRevisionsSaver.class.getName());
 
+    /**
+     * Capacity of the queue of ids waiting to be written. Writers block when it is full.
+     */
+    private static final int QUEUE_CAPACITY = Integer.getInteger(YoutrackProcessedRevisionsSaver.class.getName() + ".queueCapacity", 4096);
+    /**
+     * Max number of ids written in one batch.
+     */
+    private static final int MAX_BATCH = Integer.getInteger(YoutrackProcessedRevisionsSaver.class.getName() + ".maxBatch", 512);
+    /**
+     * If each batch should be forced to disk before the writer continues.
+     */
+    private static final boolean FSYNC = Boolean.getBoolean(YoutrackProcessedRevisionsSaver.class.getName() + ".fsync");
+    /**
+     * Milliseconds the writer waits for more ids to arrive before writing a batch, 0 writes right away.
+     */
+    private static final long GROUP_COMMIT_MILLIS = Long.getLong(YoutrackProcessedRevisionsSaver.class.getName() + ".groupCommitMillis", 0);
+
+    /**
+     * Milliseconds between saves of the bloom filter while ids are being added.
+     */
+    private static final long BLOOM_SAVE_INTERVAL = Long.getLong(YoutrackProcessedRevisionsSaver.class.getName() + ".bloomSaveInterval", 60000);
+    /**
+     * Wanted false positive rate of the bloom filter.
+     */
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    /**
+     * Minimum number of ids the bloom filter is sized for.
+     */
+    private static final long BLOOM_MIN_CAPACITY = 100000;
+    /**
+     * Estimated bytes per line in the file, a SHA-1 and a newline.
+     */
+    private static final int ESTIMATED_LINE_LENGTH = 41;
+    /**
+     * Bytes of the file not covered by the sorted index after which the loader writes it again.
+     */
+    private static final long INDEX_REWRITE_BYTES = Long.getLong(YoutrackProcessedRevisionsSaver.class.getName() + ".indexRewriteBytes", 1024 * 1024);
+
+    private static final String CHARSET = "UTF-8";
 
     public Set<String> processedIds;
     private final File file;
+    private final File bloomFile;
+    private final File indexFile;
+    /**
+     * Sorted index used for lookups until the file is loaded, null if there is none.
+     */
+    private volatile RevisionIdIndex index;
+    private volatile RevisionBloomFilter bloomFilter;
+    /**
+     * True when all ids of the file are in the bloom filter, so it can be used to rule out ids. It stays false if the
+     * load failed, then the filter is neither used nor saved.
+     */
+    private volatile boolean bloomFilterComplete;
+    /**
+     * True when all ids of the file are in {@link #processedIds}.
+     */
+    private volatile boolean loaded;
+    /**
+     * Length of the file when opened. Only this part is loaded, ids written later are already in memory.
+     */
+    private long loadLength;
+    private final Object loadLock = new Object();
+    /**
+     * Time of the last save of the bloom filter. Guarded by {@link #channelLock}.
+     */
+    private long lastBloomSave;
+    /**
+     * Length of the file, as far as this saver has read and written it. Guarded by {@link #channelLock}.
+     */
+    private long fileLength;
+
+    /**
+     * Ids added but not yet written.
+     */
+    private final BlockingQueue<String> pending = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+    /**
+     * Number of ids queued, and number of those that has been written. Guarded by {@link #writeLock}.
+     */
+    private long queued;
+    private long written;
+    /**
+     * Monitor used for waiting on the writer in {@link #flush()}.
+     */
+    private final Object writeLock = new Object();
+    /**
+     * True while the saver waits for the shared writer.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * Lock held while writing to the file, closing it and saving the bloom filter.
+     */
+    private final Object channelLock = new Object();
+    private FileChannel channel;
+    private boolean channelClosed;
+    private volatile boolean closed;
 
     public YoutrackProcessedRevisionsSaver() {
-        file = new File(Jenkins.getInstance().getRootDir(), "youtrack-processed");
-        load();
+        this(new File(Jenkins.getInstance().getRootDir(), "youtrack-processed"));
+    }
 
+    YoutrackProcessedRevisionsSaver(File file) {
+        this.file = file;
+        this.bloomFile = new File(file.getPath() + ".bloom");
+        this.indexFile = new File(file.getPath() + ".index");
+        open();
+        fileLength = file.length();
     }
 
-    private void load() {
-        processedIds = new HashSet<String>();
+    private void open() {
+        processedIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         if (!file.exists()) {
+            bloomFilter = RevisionBloomFilter.create(BLOOM_MIN_CAPACITY, BLOOM_FALSE_POSITIVE_RATE);
+            bloomFilterComplete = true;
+            loaded = true;
             try {
                 boolean newFile = file.createNewFile();
                 if (!newFile) {
@@ -34,37 +156,438 @@ public class YoutrackProcessedRevisionsSaver {
             } catch (IOException e) {
                 LOGGER.error("Could not create youtrack processed file", e);
             }
+            return;
+        }
+
+        loadLength = file.length();
+        RevisionBloomFilter filter = loadBloomFilter();
+        // Ids before this offset are already in the persisted bloom filter.
+        final long coveredLength;
+        if (filter != null) {
+            coveredLength = filter.getCoveredLength();
+            bloomFilterComplete = coveredLength == loadLength;
         } else {
+            coveredLength = 0;
+            filter = RevisionBloomFilter.create(Math.max(BLOOM_MIN_CAPACITY, 2 * loadLength / ESTIMATED_LINE_LENGTH), BLOOM_FALSE_POSITIVE_RATE);
+        }
+        bloomFilter = filter;
+        index = openIndex();
+
+        Thread loaderThread = new Thread(new Runnable() {
+            public void run() {
+                load(coveredLength);
+            }
+        }, "YouTrack processed revisions loader");
+        loaderThread.setDaemon(true);
+        loaderThread.start();
+    }
+
+    private void load(final long coveredLength) {
+        final RevisionBloomFilter filter = bloomFilter;
+        boolean complete = false;
+        try {
+            complete = readLines(new LineCallback() {
+                public void line(String revisionId, long lineStart) {
+                    addLoaded(filter, revisionId, lineStart >= coveredLength);
+                }
+            }) >= loadLength;
+            if (!complete) {
+                LOGGER.error("Could only load part of youtrack processed file " + file);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not load youtrack processed file", e);
+        } finally {
+            bloomFilterComplete = complete;
+            synchronized (loadLock) {
+                loaded = true;
+                loadLock.notifyAll();
+            }
+        }
+        RevisionIdIndex loadedIndex = index;
+        index = null;
+        closeIndex(loadedIndex);
+        if (complete && loadLength - (loadedIndex != null ? loadedIndex.getCoveredLength() : 0) > INDEX_REWRITE_BYTES) {
             try {
+                RevisionIdIndex.write(indexFile, processedIds, loadLength);
+            } catch (IOException e) {
+                LOGGER.error("Could not write youtrack processed index", e);
+            }
+        }
+    }
+
+    private RevisionIdIndex openIndex() {
+        try {
+            return RevisionIdIndex.open(indexFile, loadLength);
+        } catch (IOException e) {
+            LOGGER.error("Could not open youtrack processed index", e);
+            return null;
+        }
+    }
+
+    private static void closeIndex(RevisionIdIndex index) {
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close youtrack processed index", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the background load of the file to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void awaitLoaded() throws InterruptedException {
+        synchronized (loadLock) {
+            while (!loaded) {
+                loadLock.wait();
+            }
+        }
+    }
+
+    private interface LineCallback {
+        void line(String revisionId, long lineStart);
+    }
 
-                FileInputStream fileInputStream = new FileInputStream(file);
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(fileInputStream));
-                String l;
-                while ((l = bufferedReader.readLine()) != null) {
-                    processedIds.add(l);
+    /**
+     * Looks up an id not loaded yet on disk, in the sorted index and in the part of the file after it.
+     *
+     * @return true if the id is in the file.
+     */
+    private boolean isProcessedOnDisk(String revisionId) {
+        RevisionIdIndex currentIndex = index;
+        long scanFrom = 0;
+        if (currentIndex != null) {
+            try {
+                if (currentIndex.contains(revisionId)) {
+                    return true;
                 }
-                fileInputStream.close();
-            } catch (FileNotFoundException e) {
-                LOGGER.error("Could not load youtrack processed file", e);
+                scanFrom = currentIndex.getCoveredLength();
             } catch (IOException e) {
-                LOGGER.error("Could not load youtrack processed file", e);
+                LOGGER.error("Could not read youtrack processed index", e);
             }
         }
+        try {
+            return scan(scanFrom, revisionId);
+        } catch (IOException e) {
+            LOGGER.error("Could not read youtrack processed file", e);
+            return false;
+        }
+    }
 
+    /**
+     * Scans the file loaded from an offset for a line equal to the id, comparing bytes without creating strings.
+     */
+    private boolean scan(long from, String revisionId) throws IOException {
+        byte[] target = revisionId.getBytes(CHARSET);
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            long offset = 0;
+            while (offset < from) {
+                long skipped = inputStream.skip(from - offset);
+                if (skipped <= 0) {
+                    return false;
+                }
+                offset += skipped;
+            }
+            // Number of bytes of the line matching the id so far, -1 once the line differs.
+            int matched = 0;
+            int b;
+            while (offset < loadLength && (b = inputStream.read()) != -1) {
+                offset++;
+                if (b == '\n') {
+                    if (matched == target.length) {
+                        return true;
+                    }
+                    matched = 0;
+                } else if (b != '\r' && matched != -1) {
+                    matched = matched < target.length && target[matched] == (byte) b ? matched + 1 : -1;
+                }
+            }
+            return matched == target.length;
+        } finally {
+            inputStream.close();
+        }
     }
 
-    public synchronized boolean isProcessed(String revisionId) {
-        return processedIds.contains(revisionId);
+    /**
+     * Reads the lines of the file that was there when the saver was opened.
+     *
+     * @return the offset reached, less than the length loaded if the file was truncated meanwhile.
+     */
+    private long readLines(LineCallback callback) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(ESTIMATED_LINE_LENGTH);
+            long offset = 0;
+            long lineStart = 0;
+            int b;
+            while (offset < loadLength && (b = inputStream.read()) != -1) {
+                offset++;
+                if (b == '\n') {
+                    callback.line(line.toString(CHARSET), lineStart);
+                    line.reset();
+                    lineStart = offset;
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            if (line.size() > 0) {
+                callback.line(line.toString(CHARSET), lineStart);
+            }
+            return offset;
+        } finally {
+            inputStream.close();
+        }
     }
 
-    public synchronized void addProcessed(String revisionId) {
+    private void addLoaded(RevisionBloomFilter filter, String revisionId, boolean addToFilter) {
         processedIds.add(revisionId);
+        if (addToFilter) {
+            filter.put(revisionId);
+        }
+    }
+
+    /**
+     * Loads the persisted bloom filter if it still matches the file and is not too small for it.
+     *
+     * @return the filter, null if it has to be built again.
+     */
+    private RevisionBloomFilter loadBloomFilter() {
         try {
-            FileWriter fileWriter = new FileWriter(file, true);
-            fileWriter.append(revisionId).append("\n");
-            fileWriter.close();
+            RevisionBloomFilter filter = RevisionBloomFilter.readFrom(bloomFile);
+            if (filter != null && filter.getCoveredLength() <= file.length() && !filter.isOverCapacity()) {
+                return filter;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not load youtrack processed bloom filter", e);
+        }
+        return null;
+    }
+
+    public boolean isProcessed(String revisionId) {
+        if (bloomFilterComplete && !bloomFilter.mightContain(revisionId)) {
+            return false;
+        }
+        if (processedIds.contains(revisionId)) {
+            return true;
+        }
+        if (!loaded) {
+            return isProcessedOnDisk(revisionId) || processedIds.contains(revisionId);
+        }
+        return false;
+    }
+
+    /**
+     * Marks the id as processed and queues it for writing.
+     *
+     * @param revisionId the id.
+     * @return false if the saver has been closed and the id could not be recorded.
+     */
+    public boolean addProcessed(String revisionId) {
+        if (closed) {
+            return false;
+        }
+        if (processedIds.contains(revisionId)) {
+            return true;
+        }
+        // Added to the filter first, so a lookup never sees the id in the set but not in the filter.
+        bloomFilter.put(revisionId);
+        if (!processedIds.add(revisionId)) {
+            return true;
+        }
+        synchronized (writeLock) {
+            if (closed) {
+                processedIds.remove(revisionId);
+                return false;
+            }
+            queued++;
+        }
+        try {
+            pending.put(revisionId);
+            if (scheduled.compareAndSet(false, true)) {
+                SharedWriter.INSTANCE.schedule(this);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (writeLock) {
+                queued--;
+                writeLock.notifyAll();
+            }
+            LOGGER.error("Interrupted while queueing " + revisionId + " for youtrack processed file");
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all ids added before this call have been written by the background writer.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (writeLock) {
+            long target = queued;
+            while (written < target) {
+                writeLock.wait(100);
+            }
+        }
+    }
+
+    /**
+     * Writes the outstanding ids, saves the bloom filter and closes the file. When it returns, the file can be opened
+     * again right away.
+     */
+    public void close() {
+        synchronized (writeLock) {
+            closed = true;
+        }
+        // Every id accepted before that is counted in queued, even if it is not in the queue yet. Wait for all of
+        // them, writing them here instead of relying on the shared writer, and even if interrupted.
+        boolean interrupted = false;
+        while (true) {
+            writePending();
+            synchronized (writeLock) {
+                if (written >= queued) {
+                    break;
+                }
+                try {
+                    writeLock.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        synchronized (channelLock) {
+            saveBloomFilter();
+            closeChannel();
+            channelClosed = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the queued ids, called on the shared writer thread and when closing.
+     */
+    private void writePending() {
+        // Cleared before draining, so ids queued from now on schedule the saver again.
+        scheduled.set(false);
+        if (GROUP_COMMIT_MILLIS > 0) {
+            try {
+                Thread.sleep(GROUP_COMMIT_MILLIS);
+            } catch (InterruptedException e) {
+                // Nothing stops the shared writer, write right away.
+            }
+        }
+        List<String> batch = new ArrayList<String>(MAX_BATCH);
+        while (pending.drainTo(batch, MAX_BATCH) > 0) {
+            try {
+                synchronized (channelLock) {
+                    if (channelClosed) {
+                        LOGGER.error("Could not write " + batch.size() + " ids to closed youtrack processed file " + file);
+                    } else {
+                        write(batch);
+                    }
+                }
+            } finally {
+                synchronized (writeLock) {
+                    written += batch.size();
+                    writeLock.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+        synchronized (channelLock) {
+            if (!channelClosed && System.currentTimeMillis() - lastBloomSave > BLOOM_SAVE_INTERVAL) {
+                saveBloomFilter();
+            }
+        }
+    }
+
+    /**
+     * Thread writing the queued ids of all savers, so a saver does not need a thread of its own.
+     */
+    private static class SharedWriter implements Runnable {
+        static final SharedWriter INSTANCE = new SharedWriter();
+
+        private final BlockingQueue<YoutrackProcessedRevisionsSaver> scheduled = new LinkedBlockingQueue<YoutrackProcessedRevisionsSaver>();
+        private Thread thread;
+
+        synchronized void schedule(YoutrackProcessedRevisionsSaver saver) {
+            scheduled.add(saver);
+            if (thread == null || !thread.isAlive()) {
+                thread = new Thread(this, "YouTrack processed revisions writer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        public void run() {
+            while (true) {
+                YoutrackProcessedRevisionsSaver saver;
+                try {
+                    saver = scheduled.take();
+                } catch (InterruptedException e) {
+                    // Nothing stops the shared writer, savers are still waiting for it.
+                    continue;
+                }
+                try {
+                    saver.writePending();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Could not write youtrack processed file " + saver.file, e);
+                }
+            }
+        }
+    }
+
+    private void saveBloomFilter() {
+        lastBloomSave = System.currentTimeMillis();
+        if (!bloomFilterComplete) {
+            // Still being built by the loader, or the load failed.
+            return;
+        }
+        try {
+            // All ids written so far has been added to the filter before they were queued. Only the part of the file
+            // this saver knows about is covered, in case another one has appended to it.
+            bloomFilter.writeTo(bloomFile, fileLength);
+        } catch (IOException e) {
+            LOGGER.error("Could not save youtrack processed bloom filter", e);
+        }
+    }
+
+    private void write(List<String> batch) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String revisionId : batch) {
+            stringBuilder.append(revisionId).append("\n");
+        }
+        try {
+            if (channel == null) {
+                channel = new FileOutputStream(file, true).getChannel();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(stringBuilder.toString().getBytes(CHARSET));
+            while (buffer.hasRemaining()) {
+                fileLength += channel.write(buffer);
+            }
+            if (FSYNC) {
+                channel.force(false);
+            }
         } catch (IOException e) {
             LOGGER.error("Could not write to youtrack processed file", e);
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close youtrack processed file", e);
+            }
+            channel = null;
         }
     }
 }
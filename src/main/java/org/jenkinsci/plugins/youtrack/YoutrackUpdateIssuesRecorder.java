@@ -14,10 +14,27 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
 
 public class YoutrackUpdateIssuesRecorder extends Recorder {
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
+        if (MatrixCoordinator.isMatrixChild(build)) {
+            // The change log is the same for all configurations, so the issues are updated once for the matrix build.
+            final AbstractBuild<?, ?> rootBuild = build.getRootBuild();
+            MatrixCoordinator.runOnce(build, "updateIssues", new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    return update(rootBuild, listener);
+                }
+            });
+            shareResults(rootBuild, build);
+            MatrixCoordinator.ranOnParent(build, listener, "Updating YouTrack issues");
+            return true;
+        }
+        return update(build, listener);
+    }
+
+    private boolean update(AbstractBuild<?, ?> build, BuildListener listener) {
         try {
             YoutrackIssueUpdater updater = new YoutrackIssueUpdater();
             updater.update(build, listener, build.getChangeSet());
@@ -29,6 +46,21 @@ public class YoutrackUpdateIssuesRecorder extends Recorder {
         return true;
     }
 
+    /**
+     * Gives a configuration the fixed issues and project short names of the matrix build, so the later steps of the
+     * configuration see them. The commands stay on the matrix build.
+     */
+    private static void shareResults(AbstractBuild<?, ?> rootBuild, AbstractBuild<?, ?> build) {
+        YouTrackSaveFixedIssues fixedIssues = rootBuild.getAction(YouTrackSaveFixedIssues.class);
+        if (fixedIssues != null && build.getAction(YouTrackSaveFixedIssues.class) == null) {
+            build.addAction(fixedIssues);
+        }
+        YouTrackSaveProjectShortNamesAction shortNames = rootBuild.getAction(YouTrackSaveProjectShortNamesAction.class);
+        if (shortNames != null && build.getAction(YouTrackSaveProjectShortNamesAction.class) == null) {
+            build.addAction(shortNames);
+        }
+    }
+
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.NONE;
     }
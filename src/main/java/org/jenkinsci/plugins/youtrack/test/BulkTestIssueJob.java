@@ -0,0 +1,241 @@
+package org.jenkinsci.plugins.youtrack.test;
+
+import hudson.tasks.junit.CaseResult;
+import lombok.Getter;
+import org.apache.log4j.Logger;
+import org.jenkinsci.plugins.youtrack.Command;
+import org.jenkinsci.plugins.youtrack.IssueFanOut;
+import org.jenkinsci.plugins.youtrack.YouTrackSite;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Creates or links issues for many failed tests in the background. Tests failing with the same stack trace share one
+ * issue, and at most {@link #CONCURRENCY} issues are created at the same time. The progress is shown on the test
+ * result page while the job runs.
+ */
+public class BulkTestIssueJob implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(BulkTestIssueJob.class.getName());
+
+    /**
+     * Max number of issues created at the same time.
+     */
+    static final int CONCURRENCY = Integer.getInteger(BulkTestIssueJob.class.getName() + ".concurrency", 4);
+
+    /**
+     * Max length of the error in the summary of a shared issue.
+     */
+    private static final int MAX_SUMMARY_ERROR_LENGTH = 200;
+
+    /**
+     * Line numbers in stack trace frames, ignored when grouping.
+     */
+    private static final Pattern LINE_NUMBERS = Pattern.compile(":\\d+\\)");
+
+    /**
+     * The last job of each build, at most the latest 50 builds.
+     */
+    private static final Map<String, BulkTestIssueJob> JOBS = new LinkedHashMap<String, BulkTestIssueJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BulkTestIssueJob> eldest) {
+            return size() > 50;
+        }
+    };
+
+    private final YoutrackTestDataPublisher.Data data;
+    private final YouTrackSite youTrackSite;
+    private final Map<String, List<CaseResult>> groups;
+
+    @Getter private final int totalTests;
+    @Getter private volatile int processedTests;
+    private final AtomicInteger createdIssues = new AtomicInteger();
+    @Getter private volatile int linkedTests;
+    @Getter private volatile int failedTests;
+    @Getter private volatile boolean done;
+    @Getter private volatile String error;
+
+    BulkTestIssueJob(YoutrackTestDataPublisher.Data data, YouTrackSite youTrackSite, List<CaseResult> tests) {
+        this.data = data;
+        this.youTrackSite = youTrackSite;
+        this.totalTests = tests.size();
+        this.groups = new LinkedHashMap<String, List<CaseResult>>();
+        for (CaseResult test : tests) {
+            String key = getGroupKey(test.getClassName(), test.getErrorStackTrace());
+            List<CaseResult> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<CaseResult>();
+                groups.put(key, group);
+            }
+            group.add(test);
+        }
+    }
+
+    public int getCreatedIssues() {
+        return createdIssues.get();
+    }
+
+    public int getTotalGroups() {
+        return groups.size();
+    }
+
+    /**
+     * Gets the last job of a build.
+     *
+     * @param key the key of the build, see {@link #getKey(YoutrackTestDataPublisher.Data)}.
+     * @return the job, null if none was started.
+     */
+    public static BulkTestIssueJob get(String key) {
+        synchronized (JOBS) {
+            return JOBS.get(key);
+        }
+    }
+
+    /**
+     * Starts a job for a build unless one is already running.
+     *
+     * @return the running job.
+     */
+    static BulkTestIssueJob start(String key, BulkTestIssueJob job) {
+        synchronized (JOBS) {
+            BulkTestIssueJob running = JOBS.get(key);
+            if (running != null && !running.isDone()) {
+                return running;
+            }
+            JOBS.put(key, job);
+        }
+        Thread thread = new Thread(job, "YouTrack issues for tests of " + key);
+        thread.setDaemon(true);
+        thread.start();
+        return job;
+    }
+
+    static String getKey(YoutrackTestDataPublisher.Data data) {
+        return data.getBuild().getProject().getFullName() + "#" + data.getBuild().getNumber();
+    }
+
+    /**
+     * Gets the part of a stack trace identifying a failure: the trace up to the first frame in the test class, without
+     * line numbers. Tests of a class failing in the same place share a key.
+     *
+     * @param className  the class of the test.
+     * @param stackTrace the stack trace of the failure.
+     * @return the key.
+     */
+    static String getGroupKey(String className, String stackTrace) {
+        if (stackTrace == null) {
+            return className;
+        }
+        StringBuilder key = new StringBuilder();
+        for (String line : stackTrace.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("at " + className + ".")) {
+                break;
+            }
+            key.append(LINE_NUMBERS.matcher(trimmed).replaceAll(")")).append('\n');
+        }
+        return key.toString();
+    }
+
+    public void run() {
+        try {
+            final YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
+            final User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
+            if (user == null || !user.isLoggedIn()) {
+                error = "Could not log in to YouTrack";
+                return;
+            }
+
+            List<List<CaseResult>> pending = new ArrayList<List<CaseResult>>(groups.values());
+            for (int start = 0; start < pending.size(); start += CONCURRENCY) {
+                final List<List<CaseResult>> batch = pending.subList(start, Math.min(pending.size(), start + CONCURRENCY));
+                List<Callable<String>> tasks = new ArrayList<Callable<String>>(batch.size());
+                for (final List<CaseResult> group : batch) {
+                    tasks.add(new Callable<String>() {
+                        public String call() throws Exception {
+                            return getIssueId(youTrackServer, user, group);
+                        }
+                    });
+                }
+                List<String> issueIds = IssueFanOut.invokeAll(tasks);
+                for (int i = 0; i < batch.size(); i++) {
+                    List<CaseResult> group = batch.get(i);
+                    String issueId = issueIds.get(i);
+                    if (issueId != null) {
+                        for (CaseResult test : group) {
+                            data.link(test.getId(), issueId);
+                        }
+                        linkedTests += group.size();
+                    } else {
+                        failedTests += group.size();
+                    }
+                    processedTests += group.size();
+                }
+            }
+        } catch (InterruptedException e) {
+            error = "Interrupted";
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            LOGGER.error("Could not create issues for tests", e);
+        } finally {
+            try {
+                data.save();
+            } catch (IOException e) {
+                error = "Could not save links: " + e.getMessage();
+                LOGGER.error("Could not save test links", e);
+            }
+            done = true;
+        }
+    }
+
+    /**
+     * Gets the issue for a group of tests, the issue already linked to one of them, or else a new issue.
+     */
+    private String getIssueId(YouTrackServer youTrackServer, User user, List<CaseResult> group) {
+        for (CaseResult test : group) {
+            String linked = data.getIndex().get(test.getId(), data.getBuild().getNumber());
+            if (linked != null && linked.length() > 0) {
+                return linked;
+            }
+        }
+
+        CaseResult first = group.get(0);
+        String summary;
+        StringBuilder description = new StringBuilder();
+        if (group.size() == 1) {
+            summary = "Test case: " + first.getId();
+        } else {
+            String trace = first.getErrorStackTrace();
+            String error = trace == null ? first.getClassName() : trace.split("\r?\n", 2)[0];
+            if (error.length() > MAX_SUMMARY_ERROR_LENGTH) {
+                error = error.substring(0, MAX_SUMMARY_ERROR_LENGTH) + "...";
+            }
+            summary = group.size() + " test cases: " + error;
+            description.append("Failing test cases:\n");
+            for (CaseResult test : group) {
+                description.append(test.getId()).append('\n');
+            }
+            description.append('\n');
+        }
+        if (first.getErrorStackTrace() != null) {
+            description.append(first.getErrorStackTrace());
+        }
+
+        Command issue = youTrackServer.createIssue(youTrackSite.getName(), user, youTrackSite.getProject(), summary, description.toString(), null, null);
+        if (issue.getStatus() != Command.Status.OK || issue.getIssueId() == null) {
+            LOGGER.warn("Could not create issue for " + first.getId() + ": " + issue.getResponse());
+            return null;
+        }
+        createdIssues.incrementAndGet();
+        return issue.getIssueId();
+    }
+}
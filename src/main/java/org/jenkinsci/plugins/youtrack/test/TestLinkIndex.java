@@ -0,0 +1,323 @@
+package org.jenkinsci.plugins.youtrack.test;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.util.AtomicFileWriter;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The YouTrack issues linked to the tests of a job. Links are appended to <code>youtrack-test-links.log</code> in the
+ * job directory, so linking a test does not save the build. A link made in a build applies to that build, and is
+ * carried forward to the following builds with test results as long as the test keeps failing in them, without
+ * looking at the results of previous builds. The file is rewritten with only the current links when it has grown to
+ * several times their number, dropping the links that ended before the oldest build of the job.
+ * <p/>
+ * Each line of the file is either a link, <code>test id, issue id, first build, last build</code> separated by tabs,
+ * replacing an earlier line of the same test and first build, or a tab and the number of a build whose test results
+ * were recorded.
+ */
+public class TestLinkIndex {
+    private static final Logger LOGGER = Logger.getLogger(TestLinkIndex.class.getName());
+
+    static final String FILE_NAME = "youtrack-test-links.log";
+
+    private static final ConcurrentMap<File, TestLinkIndex> INDEXES = new ConcurrentHashMap<File, TestLinkIndex>();
+
+    private final File file;
+    /**
+     * Links by test id, ordered by their first build.
+     */
+    private Map<String, List<Link>> links;
+    private int numLinks;
+    /**
+     * The last build whose test results were recorded.
+     */
+    private int lastRecordedBuild;
+    private int lines;
+    private final List<String> pending = new ArrayList<String>();
+
+    /**
+     * A link of a test to an issue for a range of builds, an empty issue id for a test unlinked in the first build.
+     */
+    private static class Link {
+        private final String issueId;
+        private final int firstBuild;
+        private int lastBuild;
+
+        private Link(String issueId, int firstBuild, int lastBuild) {
+            this.issueId = issueId;
+            this.firstBuild = firstBuild;
+            this.lastBuild = lastBuild;
+        }
+    }
+
+    TestLinkIndex(File file) {
+        this.file = file;
+    }
+
+    public static TestLinkIndex get(AbstractProject<?, ?> project) {
+        return get(new File(project.getRootDir(), FILE_NAME));
+    }
+
+    static TestLinkIndex get(File file) {
+        TestLinkIndex index = INDEXES.get(file);
+        if (index == null) {
+            INDEXES.putIfAbsent(file, new TestLinkIndex(file));
+            index = INDEXES.get(file);
+        }
+        return index;
+    }
+
+    /**
+     * Forgets the indexes of the jobs in a directory, once the job has been deleted or moved.
+     */
+    static void evict(File dir) {
+        String prefix = dir.getPath() + File.separator;
+        for (Iterator<File> i = INDEXES.keySet().iterator(); i.hasNext(); ) {
+            if (i.next().getPath().startsWith(prefix)) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * @param testId      the id of the test.
+     * @param buildNumber the build showing the test.
+     * @return the id of the issue linked in the build, an empty string if the test was unlinked, null if it was not
+     * linked in the build.
+     */
+    public synchronized String get(String testId, int buildNumber) {
+        List<Link> testLinks = getLinks().get(testId);
+        if (testLinks != null) {
+            for (int i = testLinks.size() - 1; i >= 0; i--) {
+                Link link = testLinks.get(i);
+                if (link.firstBuild <= buildNumber) {
+                    return buildNumber <= link.lastBuild ? link.issueId : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Links a test to an issue from a build on, written to the file with the next {@link #flush()}.
+     *
+     * @param testId      the id of the test.
+     * @param issueId     the id of the issue, null to unlink the test.
+     * @param buildNumber the build the test is linked in.
+     */
+    public synchronized void link(String testId, String issueId, int buildNumber) {
+        Link link = new Link(issueId == null ? "" : issueId, buildNumber, buildNumber);
+        getLinks();
+        put(testId, link);
+        pending.add(toLine(testId, link));
+    }
+
+    /**
+     * Records the test results of a build: the links of the failed tests that applied to the last recorded build are
+     * carried forward to this build, the links of the other tests end.
+     *
+     * @param buildNumber   the build.
+     * @param failedTestIds the ids of the tests failing in the build.
+     */
+    public synchronized void recordFailures(int buildNumber, Collection<String> failedTestIds) {
+        Map<String, List<Link>> allLinks = getLinks();
+        for (String testId : failedTestIds) {
+            List<Link> testLinks = allLinks.get(testId);
+            if (testLinks == null) {
+                continue;
+            }
+            Link link = testLinks.get(testLinks.size() - 1);
+            if (link.issueId.length() > 0 && link.lastBuild < buildNumber && link.lastBuild >= lastRecordedBuild) {
+                link.lastBuild = buildNumber;
+                pending.add(toLine(testId, link));
+            }
+        }
+        if (buildNumber > lastRecordedBuild) {
+            lastRecordedBuild = buildNumber;
+            pending.add("\t" + buildNumber);
+        }
+    }
+
+    /**
+     * Appends the links made since the last flush to the file.
+     *
+     * @param oldestBuild the oldest build of the job still kept, links ended before it are dropped when the file is
+     *                    rewritten.
+     * @throws IOException if the file could not be written.
+     */
+    public synchronized void flush(int oldestBuild) throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        getLinks();
+        if (lines + pending.size() > 2 * numLinks + 100) {
+            compact(oldestBuild);
+        } else {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            try {
+                for (String line : pending) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            lines += pending.size();
+        }
+        pending.clear();
+    }
+
+    private void compact(int oldestBuild) throws IOException {
+        dropEnded(oldestBuild);
+        AtomicFileWriter writer = new AtomicFileWriter(file, "UTF-8");
+        try {
+            for (Map.Entry<String, List<Link>> entry : links.entrySet()) {
+                for (Link link : entry.getValue()) {
+                    writer.write(toLine(entry.getKey(), link) + "\n");
+                }
+            }
+            writer.write("\t" + lastRecordedBuild + "\n");
+            writer.commit();
+            writer = null;
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+        lines = numLinks + 1;
+    }
+
+    /**
+     * Drops the links whose builds are all gone and that can no longer be carried forward.
+     */
+    private void dropEnded(int oldestBuild) {
+        for (Iterator<List<Link>> i = links.values().iterator(); i.hasNext(); ) {
+            List<Link> testLinks = i.next();
+            for (Iterator<Link> j = testLinks.iterator(); j.hasNext(); ) {
+                Link link = j.next();
+                if (link.lastBuild < oldestBuild && link.lastBuild < lastRecordedBuild) {
+                    j.remove();
+                    numLinks--;
+                }
+            }
+            if (testLinks.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    private void put(String testId, Link link) {
+        List<Link> testLinks = links.get(testId);
+        if (testLinks == null) {
+            testLinks = new ArrayList<Link>(1);
+            links.put(testId, testLinks);
+        }
+        int i = testLinks.size();
+        while (i > 0 && testLinks.get(i - 1).firstBuild >= link.firstBuild) {
+            i--;
+        }
+        if (i < testLinks.size() && testLinks.get(i).firstBuild == link.firstBuild) {
+            testLinks.set(i, link);
+        } else {
+            testLinks.add(i, link);
+            numLinks++;
+        }
+    }
+
+    private static String toLine(String testId, Link link) {
+        return escape(testId) + "\t" + escape(link.issueId) + "\t" + link.firstBuild + "\t" + link.lastBuild;
+    }
+
+    private Map<String, List<Link>> getLinks() {
+        if (links == null) {
+            links = new HashMap<String, List<Link>>();
+            if (file.exists()) {
+                try {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+                    try {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            lines++;
+                            parse(line);
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Could not load test links from " + file, e);
+                }
+            }
+        }
+        return links;
+    }
+
+    private void parse(String line) {
+        String[] fields = line.split("\t", -1);
+        try {
+            if (fields.length == 2 && fields[0].length() == 0) {
+                lastRecordedBuild = Math.max(lastRecordedBuild, Integer.parseInt(fields[1]));
+            } else if (fields.length == 4 && fields[0].length() > 0) {
+                put(unescape(fields[0]), new Link(unescape(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid test link in " + file + ": " + line);
+        }
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Evicts the index of a job when it is deleted or renamed, so it is not kept for a job that is gone.
+     */
+    @Extension
+    public static class JobListener extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            evict(item.getRootDir());
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            evict(new File(item.getRootDir().getParentFile(), oldName));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.youtrack.test;
+
+import hudson.model.Item;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.TestAction;
+import hudson.tasks.junit.TestResult;
+import org.jenkinsci.plugins.youtrack.YouTrackSite;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Action on the test result page creating or linking issues for many failed tests at once.
+ */
+public class YouTrackBulkTestAction extends TestAction {
+    private final YoutrackTestDataPublisher.Data data;
+    private final TestResult testResult;
+
+    public YouTrackBulkTestAction(YoutrackTestDataPublisher.Data data, TestResult testResult) {
+        this.data = data;
+        this.testResult = testResult;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return "youtrackBulk";
+    }
+
+    /**
+     * @return the last job started for the build, null if none.
+     */
+    public BulkTestIssueJob getJob() {
+        return BulkTestIssueJob.get(BulkTestIssueJob.getKey(data));
+    }
+
+    /**
+     * @return the failed tests not linked to an issue.
+     */
+    public List<CaseResult> getUnlinkedFailures() {
+        List<CaseResult> result = new ArrayList<CaseResult>();
+        for (CaseResult failedTest : testResult.getFailedTests()) {
+            String issueId = data.getIndex().get(failedTest.getId(), data.getBuild().getNumber());
+            if (issueId == null || issueId.length() == 0) {
+                result.add(failedTest);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts creating issues for the selected tests, or for the tests failing for the first time if the parameter
+     * <code>new</code> is set.
+     */
+    public void doCreateIssues(StaplerRequest req, StaplerResponse resp) throws ServletException, IOException {
+        data.getBuild().checkPermission(Item.CONFIGURE);
+        YouTrackSite youTrackSite = YouTrackSite.get(data.getBuild().getProject());
+        if (youTrackSite == null) {
+            resp.sendError(StaplerResponse.SC_BAD_REQUEST, "No YouTrack site configured");
+            return;
+        }
+
+        boolean onlyNew = req.getParameter("new") != null;
+        String[] selected = req.getParameterValues("test");
+        Set<String> selectedIds = new HashSet<String>(selected == null ? new ArrayList<String>() : Arrays.asList(selected));
+        List<CaseResult> tests = new ArrayList<CaseResult>();
+        for (CaseResult failedTest : getUnlinkedFailures()) {
+            if (onlyNew ? failedTest.getAge() == 1 : selectedIds.contains(failedTest.getId())) {
+                tests.add(failedTest);
+            }
+        }
+        if (!tests.isEmpty()) {
+            BulkTestIssueJob.start(BulkTestIssueJob.getKey(data), new BulkTestIssueJob(data, youTrackSite, tests));
+        }
+        resp.forwardToPreviousPage(req);
+    }
+}
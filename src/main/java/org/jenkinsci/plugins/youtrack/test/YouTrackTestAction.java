@@ -70,14 +70,14 @@ public class YouTrackTestAction extends TestAction {
 
         Command issue = youTrackServer.createIssue(youTrackSite.getName(), mainUser, youTrackSite.getProject(), "Test case: " + id, careResult.getErrorStackTrace(), null, null);
         youtrackIssueId = issue.getIssueId();
-        data.addLink(id, this);
+        data.link(id, youtrackIssueId);
         data.save();
         resp.forwardToPreviousPage(req);
     }
 
     public void doUnlinkIssue(StaplerRequest req, StaplerResponse resp) throws ServletException, IOException {
         youtrackIssueId = null;
-        data.addLink(id, null);
+        data.link(id, null);
         data.save();
         resp.forwardToPreviousPage(req);
     }
@@ -85,7 +85,7 @@ public class YouTrackTestAction extends TestAction {
     public void doLinkIssue(StaplerRequest req, StaplerResponse resp) throws IOException, ServletException {
         String youtrackIssueId1 = req.getParameter("youtrackIssueId");
         youtrackIssueId = youtrackIssueId1;
-        data.addLink(id, this);
+        data.link(id, youtrackIssueId);
         data.save();
         resp.forwardToPreviousPage(req);
     }
@@ -10,6 +10,7 @@ import hudson.tasks.junit.*;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -25,26 +26,31 @@ public class YoutrackTestDataPublisher extends TestDataPublisher {
 
     @Override
     public TestResultAction.Data getTestData(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestResult testResult) throws IOException, InterruptedException {
-        Data data = new Data(build);
-
-        List<CaseResult> failedTests = testResult.getFailedTests();
-        for (CaseResult failedTest : failedTests) {
-            CaseResult previousResult = failedTest.getPreviousResult();
-            if (previousResult != null) {
-                YouTrackTestAction previousAction = previousResult.getTestAction(YouTrackTestAction.class);
-                if (previousAction != null && previousAction.getYoutrackIssueId() != null) {
-                    YouTrackTestAction youTrackTestAction = new YouTrackTestAction(data, failedTest, failedTest.getId(), previousAction.getYoutrackIssueId());
-                    data.addLink(testResult.getId(), youTrackTestAction);
-                }
-            }
+        //Links made in previous builds are carried forward in the link index of the job while their tests keep failing
+        List<String> failedTestIds = new ArrayList<String>();
+        for (CaseResult caseResult : testResult.getFailedTests()) {
+            failedTestIds.add(caseResult.getId());
         }
-        return data;
+        TestLinkIndex index = TestLinkIndex.get(build.getProject());
+        index.recordFailures(build.getNumber(), failedTestIds);
+        index.flush(getOldestBuild(build));
+        return new Data(build);
+    }
 
+    /**
+     * @return the number of the oldest build of the job still kept.
+     */
+    static int getOldestBuild(AbstractBuild<?, ?> build) {
+        AbstractBuild<?, ?> first = build.getProject().getFirstBuild();
+        return first != null ? first.getNumber() : build.getNumber();
     }
 
     public static class Data extends TestResultAction.Data implements Saveable {
 
         private final AbstractBuild<?, ?> build;
+        /**
+         * Links saved with the build before they were kept in the {@link TestLinkIndex} of the job.
+         */
         private Map<String, YouTrackTestAction> links = new HashMap<String, YouTrackTestAction>();
 
         public AbstractBuild<?, ?> getBuild() {
@@ -57,9 +63,17 @@ public class YoutrackTestDataPublisher extends TestDataPublisher {
 
         @Override
         public List<TestAction> getTestAction(TestObject testObject) {
+            if (testObject instanceof TestResult) {
+                if (((TestResult) testObject).getFailCount() > 0) {
+                    return Collections.<TestAction>singletonList(new YouTrackBulkTestAction(this, (TestResult) testObject));
+                }
+                return Collections.emptyList();
+            }
+
             String id = testObject.getId();
 
-            YouTrackTestAction result = links.get(id);
+            String issueId = getIndex().get(id, build.getNumber());
+            YouTrackTestAction result = issueId == null && links != null ? links.get(id) : null;
 
             if (result != null) {
                 return Collections.<TestAction>singletonList(result);
@@ -68,19 +82,33 @@ public class YoutrackTestDataPublisher extends TestDataPublisher {
             if (testObject instanceof CaseResult) {
                 CaseResult caseResult = (CaseResult) testObject;
                 if (!caseResult.isPassed() && !caseResult.isSkipped()) {
-                    return Collections.<TestAction>singletonList(new YouTrackTestAction(this, caseResult, id, null));
+                    return Collections.<TestAction>singletonList(new YouTrackTestAction(this, caseResult, id, issueId == null || issueId.length() == 0 ? null : issueId));
                 }
             }
 
             return Collections.emptyList();
         }
 
-        public void addLink(String id, YouTrackTestAction action) {
-            links.put(id, action);
+        /**
+         * Links a test to an issue for this build and the following builds it keeps failing in, saved with the next
+         * {@link #save()}.
+         *
+         * @param id      the id of the test.
+         * @param issueId the id of the issue, null to unlink.
+         */
+        public void link(String id, String issueId) {
+            getIndex().link(id, issueId, build.getNumber());
         }
 
         public void save() throws IOException {
-            build.save();
+            getIndex().flush(getOldestBuild(build));
+        }
+
+        /**
+         * Looked up on each use, so a renamed job gets the index in its new directory.
+         */
+        TestLinkIndex getIndex() {
+            return TestLinkIndex.get(build.getProject());
         }
     }
 
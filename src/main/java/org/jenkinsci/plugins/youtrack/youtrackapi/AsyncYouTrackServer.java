@@ -0,0 +1,206 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.jenkinsci.plugins.youtrack.Command;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking counterpart of {@link YouTrackServer}. Every call is submitted to a small shared pool of I/O threads
+ * and returns immediately with a {@link Future}, so callers can overlap several YouTrack requests instead of
+ * waiting for each of them in turn on the build thread.
+ */
+public class AsyncYouTrackServer {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AsyncYouTrackServer.class.getName());
+    /**
+     * Number of I/O threads in the shared pool, can be tuned with a system property.
+     */
+    private static final int POOL_SIZE = Integer.getInteger(AsyncYouTrackServer.class.getName() + ".poolSize", 8);
+
+    /**
+     * Pool shared by all instances. The threads are daemons and time out when idle.
+     */
+    private static final ExecutorService SHARED_EXECUTOR = createExecutor();
+
+    /**
+     * The blocking server doing the actual requests.
+     */
+    private final YouTrackServer server;
+    /**
+     * The executor to run the requests on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs an async server running on the shared I/O pool.
+     *
+     * @param server the server to delegate to.
+     */
+    public AsyncYouTrackServer(YouTrackServer server) {
+        this(server, SHARED_EXECUTOR);
+    }
+
+    /**
+     * Constructs an async server running on the given executor.
+     *
+     * @param server   the server to delegate to.
+     * @param executor the executor to run requests on.
+     */
+    public AsyncYouTrackServer(YouTrackServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    private static ExecutorService createExecutor() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "YouTrack async I/O #" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Waits for the result of a call. The blocking methods of {@link YouTrackServer} log and swallow their errors, so
+     * this does the same to keep the semantics when a caller switches to the async variant.
+     *
+     * @param future the pending call.
+     * @param <T>    type of the result.
+     * @return the result, null if the call failed or the thread was interrupted.
+     */
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "YouTrack call failed", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * @return the blocking server this delegates to.
+     */
+    public YouTrackServer getServer() {
+        return server;
+    }
+
+    /**
+     * @see YouTrackServer#login(String, String)
+     */
+    public Future<User> login(final String username, final String password) {
+        return executor.submit(new Callable<User>() {
+            public User call() throws Exception {
+                return server.login(username, password);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#getIssue(User, String, String)
+     */
+    public Future<Issue> getIssue(final User user, final String issueId, final String stateField) {
+        return executor.submit(new Callable<Issue>() {
+            public Issue call() throws Exception {
+                return server.getIssue(user, issueId, stateField);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#applyCommand(String, User, Issue, String, String, User, boolean)
+     */
+    public Future<Command> applyCommand(final String siteName, final User user, final Issue issue, final String command, final String comment, final User runAs, final boolean notify) {
+        return executor.submit(new Callable<Command>() {
+            public Command call() throws Exception {
+                return server.applyCommand(siteName, user, issue, command, comment, runAs, notify);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#comment(String, User, Issue, String, String, boolean)
+     */
+    public Future<Command> comment(final String siteName, final User user, final Issue issue, final String comment, final String group, final boolean silent) {
+        return executor.submit(new Callable<Command>() {
+            public Command call() throws Exception {
+                return server.comment(siteName, user, issue, comment, group, silent);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#addBuildToBundle(String, User, String, String)
+     */
+    public Future<Command> addBuildToBundle(final String siteName, final User user, final String bundleName, final String buildName) {
+        return executor.submit(new Callable<Command>() {
+            public Command call() throws Exception {
+                return server.addBuildToBundle(siteName, user, bundleName, buildName);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#createIssue(String, User, String, String, String, String, File)
+     */
+    public Future<Command> createIssue(final String siteName, final User user, final String project, final String title, final String description, final String command, final File attachment) {
+        return executor.submit(new Callable<Command>() {
+            public Command call() throws Exception {
+                return server.createIssue(siteName, user, project, title, description, command, attachment);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#getUserByEmail(User, String)
+     */
+    public Future<User> getUserByEmail(final User user, final String email) {
+        return executor.submit(new Callable<User>() {
+            public User call() throws Exception {
+                return server.getUserByEmail(user, email);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#getProjects(User)
+     */
+    public Future<List<Project>> getProjects(final User user) {
+        return executor.submit(new Callable<List<Project>>() {
+            public List<Project> call() throws Exception {
+                return server.getProjects(user);
+            }
+        });
+    }
+
+    /**
+     * @see YouTrackServer#search(User, String)
+     */
+    public Future<List<Issue>> search(final User user, final String searchQuery) {
+        return executor.submit(new Callable<List<Issue>>() {
+            public List<Issue> call() throws Exception {
+                return server.search(user, searchQuery);
+            }
+        });
+    }
+}
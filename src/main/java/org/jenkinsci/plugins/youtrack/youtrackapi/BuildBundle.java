@@ -17,10 +17,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BuildBundle {
     @Getter private final String name;
+    /**
+     * Names of the builds in the bundle, only filled in when a single bundle is fetched.
+     */
+    @Getter private final List<String> builds = new ArrayList<String>();
 
     public static class Handler extends DefaultHandler {
         @Getter
         private List<BuildBundle> bundles;
+        private StringBuilder build;
 
         @Override
         public void startDocument() throws SAXException {
@@ -35,6 +40,25 @@ public class BuildBundle {
             if("buildBundle".equals(qName))  {
                 String bundleName = attributes.getValue("name");
                 bundles.add(new BuildBundle(bundleName));
+            } else if ("build".equals(qName) && !bundles.isEmpty()) {
+                build = new StringBuilder();
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            super.characters(ch, start, length);
+            if (build != null) {
+                build.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if ("build".equals(qName) && build != null) {
+                bundles.get(bundles.size() - 1).getBuilds().add(build.toString().trim());
+                build = null;
             }
         }
     }
@@ -0,0 +1,355 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Issues of a YouTrack site fetched earlier, so most reads of an issue are served without a request. The issues
+ * updated in YouTrack are found by asking for the issues of each cached project updated after the previous check, at
+ * most every {@link #SYNC_INTERVAL} milliseconds, and are fetched again on their next read. Issues a command is applied
+ * to through {@link YouTrackServer} are removed right away.
+ * <p/>
+ * The check runs on a background thread, so reads never wait for it. It asks for the update time in milliseconds,
+ * which does not depend on the time zone of the user, and starts {@link #SYNC_OVERLAP} milliseconds before the
+ * previous one to allow for clock differences between Jenkins and YouTrack.
+ * <p/>
+ * The issues are kept on the heap, or with the system property <code>offHeapMegabytes</code> set, in direct memory
+ * outside the heap, see {@link OffHeapIssueStore}.
+ */
+public class IssueCache {
+    private static final Logger LOGGER = Logger.getLogger(IssueCache.class.getName());
+
+    /**
+     * Max number of issues kept per site.
+     */
+    static final int CAPACITY = Integer.getInteger(IssueCache.class.getName() + ".capacity", 10000);
+    /**
+     * Min time in milliseconds between searches for updated issues.
+     */
+    static final long SYNC_INTERVAL = Long.getLong(IssueCache.class.getName() + ".syncInterval", 5000L);
+    /**
+     * Time in milliseconds each search for updated issues goes back before the previous one.
+     */
+    static final long SYNC_OVERLAP = Long.getLong(IssueCache.class.getName() + ".syncOverlap", 60 * 1000L);
+    /**
+     * Time in milliseconds after which an issue is fetched again, also when no update was found.
+     */
+    static final long MAX_AGE = Long.getLong(IssueCache.class.getName() + ".maxAge", 10 * 60 * 1000L);
+    /**
+     * Max number of updated issues asked for per project. When there are more, the whole cache is cleared.
+     */
+    static final int SYNC_MAX_ISSUES = Integer.getInteger(IssueCache.class.getName() + ".syncMaxIssues", 500);
+
+    /**
+     * Megabytes of direct memory to keep the issues of each site in instead of the heap, 0 to keep them on the heap.
+     */
+    static final int OFF_HEAP_MEGABYTES = Integer.getInteger(IssueCache.class.getName() + ".offHeapMegabytes", 0);
+    /**
+     * Bytes per issue in direct memory, longer descriptions are truncated.
+     */
+    static final int OFF_HEAP_SLOT_SIZE = Integer.getInteger(IssueCache.class.getName() + ".offHeapSlotSize", 2048);
+
+    private static final ConcurrentMap<String, IssueCache> CACHES = new ConcurrentHashMap<String, IssueCache>();
+
+    /**
+     * Runs the checks for updated issues of all sites.
+     */
+    private static final Executor SYNC_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "YouTrack issue cache sync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static class Entry {
+        final Issue issue;
+        final String stateField;
+        final long fetched;
+
+        Entry(Issue issue, String stateField, long fetched) {
+            this.issue = issue;
+            this.stateField = stateField;
+            this.fetched = fetched;
+        }
+    }
+
+    /**
+     * Where the issues of a cache are kept. Only used while holding the lock of the cache.
+     */
+    interface Store {
+        /**
+         * Gets an entry, counting as a use of it for the eviction.
+         */
+        Entry get(String issueId);
+
+        /**
+         * Puts an entry, evicting others if needed. An entry that does not fit may be dropped.
+         */
+        void put(String issueId, Entry entry);
+
+        void remove(String issueId);
+
+        void clear();
+
+        int size();
+    }
+
+    /**
+     * Store keeping the entries on the heap in a least recently used map.
+     */
+    static class HeapStore implements Store {
+        private final Map<String, Entry> entries;
+
+        HeapStore(final int capacity) {
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        public Entry get(String issueId) {
+            return entries.get(issueId);
+        }
+
+        public void put(String issueId, Entry entry) {
+            entries.put(issueId, entry);
+        }
+
+        public void remove(String issueId) {
+            entries.remove(issueId);
+        }
+
+        public void clear() {
+            entries.clear();
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    private final Store entries;
+    private final long syncInterval;
+    private final Executor syncExecutor;
+    /**
+     * The projects of the cached issues, checked for updates.
+     */
+    private final Set<String> projects = new HashSet<String>();
+    private boolean syncing;
+    /**
+     * Start of the last successful check for updated issues, or when the cache was created.
+     */
+    private long lastSync;
+    private long lastSyncAttempt;
+    private long hits;
+    private long misses;
+
+    IssueCache(Store entries, long syncInterval, Executor syncExecutor) {
+        this.entries = entries;
+        this.syncInterval = syncInterval;
+        this.syncExecutor = syncExecutor;
+        this.lastSync = System.currentTimeMillis();
+    }
+
+    private static Store createStore() {
+        if (OFF_HEAP_MEGABYTES > 0) {
+            return new OffHeapIssueStore((long) OFF_HEAP_MEGABYTES * 1024 * 1024, OFF_HEAP_SLOT_SIZE);
+        }
+        return new HeapStore(CAPACITY);
+    }
+
+    /**
+     * Gets the cache of a site.
+     *
+     * @param serverUrl the url of the site.
+     * @return the cache.
+     */
+    public static IssueCache get(String serverUrl) {
+        IssueCache cache = CACHES.get(serverUrl);
+        if (cache == null) {
+            CACHES.putIfAbsent(serverUrl, new IssueCache(createStore(), SYNC_INTERVAL, SYNC_EXECUTOR));
+            cache = CACHES.get(serverUrl);
+        }
+        return cache;
+    }
+
+    /**
+     * Removes an issue from the cache of a site, called when it has been changed through the plugin.
+     *
+     * @param serverUrl the url of the site.
+     * @param issueId   the id of the issue.
+     */
+    public static void invalidate(String serverUrl, String issueId) {
+        IssueCache cache = CACHES.get(serverUrl);
+        if (cache != null) {
+            cache.remove(issueId);
+        }
+    }
+
+    /**
+     * Removes the caches of all sites.
+     */
+    public static void clearAll() {
+        CACHES.clear();
+    }
+
+    /**
+     * Gets an issue, from the cache if it is there and not updated since it was fetched.
+     *
+     * @param server     the server to fetch the issue with.
+     * @param user       the user to fetch the issue with.
+     * @param issueId    the id of the issue.
+     * @param stateField the name of the state field.
+     * @return a copy of the issue, null if it could not be fetched.
+     */
+    public Issue get(YouTrackServer server, User user, String issueId, String stateField) {
+        scheduleSync(server, user);
+        synchronized (this) {
+            Entry entry = entries.get(issueId);
+            if (entry != null && equal(entry.stateField, stateField) && System.currentTimeMillis() - entry.fetched <= MAX_AGE) {
+                hits++;
+                return copy(entry.issue);
+            }
+            misses++;
+        }
+        long fetched = System.currentTimeMillis();
+        Issue issue = server.fetchIssue(user, issueId, stateField);
+        if (issue != null) {
+            synchronized (this) {
+                // An update found while fetching may not be in the fetched issue.
+                if (fetched >= lastSync) {
+                    entries.put(issueId, new Entry(copy(issue), stateField, fetched));
+                    String project = getProject(issueId);
+                    if (project != null) {
+                        projects.add(project);
+                    }
+                }
+            }
+        }
+        return issue;
+    }
+
+    /**
+     * Starts a check for updated issues on the sync executor, at most every {@link #SYNC_INTERVAL} milliseconds and
+     * only if no check is running.
+     */
+    private void scheduleSync(final YouTrackServer server, final User user) {
+        synchronized (this) {
+            if (syncing || System.currentTimeMillis() - lastSyncAttempt < syncInterval) {
+                return;
+            }
+            syncing = true;
+        }
+        try {
+            syncExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        sync(server, user);
+                    } finally {
+                        synchronized (IssueCache.this) {
+                            syncing = false;
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                syncing = false;
+            }
+        }
+    }
+
+    /**
+     * Asks for the issues of the cached projects updated since the last check and removes them.
+     */
+    void sync(YouTrackServer server, User user) {
+        long now = System.currentTimeMillis();
+        long since;
+        List<String> syncedProjects;
+        synchronized (this) {
+            lastSyncAttempt = now;
+            if (entries.size() == 0) {
+                projects.clear();
+                lastSync = now;
+                return;
+            }
+            since = lastSync;
+            syncedProjects = new ArrayList<String>(projects);
+        }
+
+        List<Issue> updated = new ArrayList<Issue>();
+        boolean complete = true;
+        for (String project : syncedProjects) {
+            List<Issue> issues = server.getIssuesUpdatedAfter(user, project, since - SYNC_OVERLAP, SYNC_MAX_ISSUES);
+            if (issues == null || issues.size() >= SYNC_MAX_ISSUES) {
+                complete = false;
+                break;
+            }
+            updated.addAll(issues);
+        }
+        synchronized (this) {
+            if (!complete) {
+                LOGGER.log(Level.WARNING, "Could not get all updated issues, clearing the issue cache");
+                entries.clear();
+                projects.clear();
+            } else {
+                for (Issue issue : updated) {
+                    entries.remove(issue.getId());
+                }
+            }
+            lastSync = now;
+        }
+    }
+
+    /**
+     * @return the short name of the project of an issue, null if the id has none.
+     */
+    static String getProject(String issueId) {
+        int dash = issueId.lastIndexOf('-');
+        return dash > 0 ? issueId.substring(0, dash) : null;
+    }
+
+    public synchronized void remove(String issueId) {
+        entries.remove(issueId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static Issue copy(Issue issue) {
+        Issue copy = new Issue(issue.getId());
+        copy.setState(issue.getState());
+        copy.setSummary(issue.getSummary());
+        copy.setResolved(issue.getResolved());
+        copy.setDescription(issue.getDescription());
+        return copy;
+    }
+}
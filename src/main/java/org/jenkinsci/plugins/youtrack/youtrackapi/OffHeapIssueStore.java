@@ -0,0 +1,335 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Keeps the issues of an {@link IssueCache} in direct memory, so caching the issues of a very large YouTrack does not
+ * grow the heap. Each issue is encoded into a slot of a fixed size in slabs of direct byte buffers, and the slot of an
+ * issue id is found through an open addressing hash table, also in direct memory. Only the issue read or written is
+ * on the heap. A description that does not fit in the slot is truncated, issues that do not fit without their
+ * description are not stored.
+ * <p/>
+ * When all slots are used, a slot is freed with the clock algorithm: the clock hand moves over the slots, clearing the
+ * referenced flag set when an issue is read, and evicts the first issue not read since the hand last passed it.
+ * <p/>
+ * The memory is allocated up front, and must fit in the direct memory limit of the JVM
+ * (<code>-XX:MaxDirectMemorySize</code>).
+ */
+class OffHeapIssueStore implements IssueCache.Store {
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private static final int FLAGS = 0;
+    private static final int HASH = 1;
+    private static final int LENGTH = 5;
+    private static final int HEADER_SIZE = 7;
+    /**
+     * Offset of the id in a slot, after the header and the time the issue was fetched.
+     */
+    private static final int ID = HEADER_SIZE + 8;
+
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+    private static final byte[] ELLIPSIS = encode("...");
+
+    private final int slotSize;
+    private final int slotCount;
+    private final int slotsPerSlab;
+    private final ByteBuffer[] slabs;
+    /**
+     * The slot of each issue plus one, 0 for an empty position.
+     */
+    private final IntBuffer index;
+    private final int indexMask;
+    private int size;
+    private int hand;
+
+    /**
+     * @param bytes    the memory to use for the issues, the index takes another 16 bytes per slot at most.
+     * @param slotSize the memory per issue, longer descriptions are truncated.
+     */
+    OffHeapIssueStore(long bytes, int slotSize) {
+        if (slotSize < ID + 64 || slotSize > 65535) {
+            throw new IllegalArgumentException("The slot size must be between " + (ID + 64) + " and 65535 bytes");
+        }
+        this.slotSize = slotSize;
+        this.slotCount = (int) Math.max(1, Math.min(bytes / slotSize, MAX_SLOTS));
+        this.slotsPerSlab = Math.max(1, MAX_SLAB_SIZE / slotSize);
+        this.slabs = new ByteBuffer[(slotCount + slotsPerSlab - 1) / slotsPerSlab];
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = ByteBuffer.allocateDirect(Math.min(slotsPerSlab, slotCount - i * slotsPerSlab) * slotSize);
+        }
+        // At least twice the slots, so probes stay short.
+        int indexCapacity = Integer.highestOneBit(slotCount) * 4;
+        this.index = ByteBuffer.allocateDirect(indexCapacity * 4).asIntBuffer();
+        this.indexMask = indexCapacity - 1;
+    }
+
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    public IssueCache.Entry get(String issueId) {
+        int position = find(hash(issueId), encode(issueId));
+        if (position < 0) {
+            return null;
+        }
+        int slot = index.get(position) - 1;
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        slab.put(offset + FLAGS, (byte) (USED | REFERENCED));
+        byte[] record = new byte[slab.getShort(offset + LENGTH) & 0xffff];
+        slab.position(offset + HEADER_SIZE);
+        slab.get(record);
+        return decode(record);
+    }
+
+    public void put(String issueId, IssueCache.Entry entry) {
+        byte[] record = encode(issueId, entry);
+        int hash = hash(issueId);
+        int position = find(hash, encode(issueId));
+        if (HEADER_SIZE + record.length > slotSize) {
+            if (position >= 0) {
+                removeAt(position);
+            }
+            return;
+        }
+
+        int slot;
+        if (position >= 0) {
+            slot = index.get(position) - 1;
+        } else {
+            slot = allocate();
+            insert(hash, slot);
+            size++;
+        }
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        slab.put(offset + FLAGS, USED);
+        slab.putInt(offset + HASH, hash);
+        slab.putShort(offset + LENGTH, (short) record.length);
+        slab.position(offset + HEADER_SIZE);
+        slab.put(record);
+    }
+
+    public void remove(String issueId) {
+        int position = find(hash(issueId), encode(issueId));
+        if (position >= 0) {
+            removeAt(position);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i <= indexMask; i++) {
+            index.put(i, 0);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            slab(slot).put(offset(slot) + FLAGS, (byte) 0);
+        }
+        size = 0;
+        hand = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds a free slot, evicting an issue if there is none.
+     */
+    private int allocate() {
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) % slotCount;
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            byte flags = slab.get(offset + FLAGS);
+            if ((flags & USED) == 0) {
+                return slot;
+            }
+            if ((flags & REFERENCED) != 0) {
+                slab.put(offset + FLAGS, USED);
+            } else {
+                int position = slab.getInt(offset + HASH) & indexMask;
+                while (index.get(position) != slot + 1) {
+                    position = (position + 1) & indexMask;
+                }
+                removeAt(position);
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @return the position of an issue in the index, -1 if it is not there.
+     */
+    private int find(int hash, byte[] id) {
+        int position = hash & indexMask;
+        int value;
+        while ((value = index.get(position)) != 0) {
+            int slot = value - 1;
+            if (slab(slot).getInt(offset(slot) + HASH) == hash && hasId(slot, id)) {
+                return position;
+            }
+            position = (position + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private boolean hasId(int slot, byte[] id) {
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot) + ID;
+        if (slab.getInt(offset) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (slab.get(offset + 4 + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int hash, int slot) {
+        int position = hash & indexMask;
+        while (index.get(position) != 0) {
+            position = (position + 1) & indexMask;
+        }
+        index.put(position, slot + 1);
+    }
+
+    /**
+     * Removes the issue at a position of the index and frees its slot, moving back the issues after it that would no
+     * longer be found.
+     */
+    private void removeAt(int position) {
+        int slot = index.get(position) - 1;
+        slab(slot).put(offset(slot) + FLAGS, (byte) 0);
+        size--;
+
+        int empty = position;
+        int next = position;
+        while (true) {
+            next = (next + 1) & indexMask;
+            int value = index.get(next);
+            if (value == 0) {
+                break;
+            }
+            int home = slab(value - 1).getInt(offset(value - 1) + HASH) & indexMask;
+            boolean stays = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+            if (!stays) {
+                index.put(empty, value);
+                empty = next;
+            }
+        }
+        index.put(empty, 0);
+    }
+
+    private ByteBuffer slab(int slot) {
+        return slabs[slot / slotsPerSlab];
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerSlab) * slotSize;
+    }
+
+    private static int hash(String issueId) {
+        int h = issueId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static byte[] encode(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] encode(String issueId, IssueCache.Entry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(entry.fetched);
+            writeString(out, issueId);
+            writeString(out, entry.stateField);
+            writeString(out, entry.issue.getState());
+            writeString(out, entry.issue.getSummary());
+            writeString(out, entry.issue.getResolved());
+            out.flush();
+            String description = entry.issue.getDescription();
+            if (description == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] descriptionBytes = encode(description);
+                int space = slotSize - HEADER_SIZE - bytes.size() - 4;
+                if (descriptionBytes.length > space) {
+                    descriptionBytes = truncate(descriptionBytes, space);
+                }
+                out.writeInt(descriptionBytes.length);
+                out.write(descriptionBytes);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cuts UTF-8 text to at most the given number of bytes, ending with "...", without splitting a character.
+     */
+    private static byte[] truncate(byte[] text, int maxLength) {
+        int end = Math.max(0, maxLength - ELLIPSIS.length);
+        while (end > 0 && (text[end] & 0xc0) == 0x80) {
+            end--;
+        }
+        byte[] result = new byte[end + ELLIPSIS.length];
+        System.arraycopy(text, 0, result, 0, end);
+        System.arraycopy(ELLIPSIS, 0, result, end, ELLIPSIS.length);
+        return result;
+    }
+
+    private static IssueCache.Entry decode(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            long fetched = in.readLong();
+            Issue issue = new Issue(readString(in));
+            String stateField = readString(in);
+            issue.setState(readString(in));
+            issue.setSummary(readString(in));
+            issue.setResolved(readString(in));
+            issue.setDescription(readString(in));
+            return new IssueCache.Entry(issue, stateField, fetched);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = encode(value);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters, latency histogram and in-flight gauge for one YouTrack endpoint.
+ */
+public class YouTrackEndpointMetrics implements YouTrackEndpointMetricsMBean {
+    private final String name;
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong clientErrorCount = new AtomicLong();
+    private final AtomicLong serverErrorCount = new AtomicLong();
+    private final AtomicLong exceptionCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public YouTrackEndpointMetrics(String name) {
+        this.name = name;
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    void finished(long nanos, int responseCode, boolean failed, long sent, long received) {
+        inFlight.decrementAndGet();
+        callCount.incrementAndGet();
+        latency.record(nanos / 1000);
+        if (failed) {
+            exceptionCount.incrementAndGet();
+        } else if (responseCode >= 500) {
+            serverErrorCount.incrementAndGet();
+        } else if (responseCode >= 400) {
+            clientErrorCount.incrementAndGet();
+        }
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    public long getErrorCount() {
+        return exceptionCount.get() + clientErrorCount.get() + serverErrorCount.get();
+    }
+
+    public long getClientErrorCount() {
+        return clientErrorCount.get();
+    }
+
+    public long getServerErrorCount() {
+        return serverErrorCount.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public double getMeanMillis() {
+        return latency.getMeanMicros() / 1000;
+    }
+
+    public double getP50Millis() {
+        return latency.getValueAtPercentile(50) / 1000.0;
+    }
+
+    public double getP95Millis() {
+        return latency.getValueAtPercentile(95) / 1000.0;
+    }
+
+    public double getP99Millis() {
+        return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    public double getMaxMillis() {
+        return latency.getMaxMicros() / 1000.0;
+    }
+}
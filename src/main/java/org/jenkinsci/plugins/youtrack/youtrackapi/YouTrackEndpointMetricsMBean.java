@@ -0,0 +1,35 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+/**
+ * JMX view of the metrics for one YouTrack endpoint, or one plugin stage like <code>onChangeLogParsed</code>.
+ */
+public interface YouTrackEndpointMetricsMBean {
+    String getName();
+
+    long getCallCount();
+
+    /**
+     * @return calls that failed with an exception or got a 4xx/5xx response.
+     */
+    long getErrorCount();
+
+    long getClientErrorCount();
+
+    long getServerErrorCount();
+
+    int getInFlight();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
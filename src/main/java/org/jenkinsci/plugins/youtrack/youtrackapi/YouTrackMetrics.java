@@ -0,0 +1,331 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics for the calls made to YouTrack, per endpoint and in total, and for the time spent in the plugin stages
+ * running them. They are exposed as MBeans in the <code>org.jenkinsci.plugins.youtrack</code> JMX domain once
+ * {@link #registerMBeans()} has been called.
+ */
+public class YouTrackMetrics {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOGGER = Logger.getLogger(YouTrackMetrics.class.getName());
+    private static final String DOMAIN = "org.jenkinsci.plugins.youtrack";
+    private static final String TYPE_ENDPOINT = "YouTrackServer";
+    private static final String TYPE_STAGE = "Stage";
+    private static final String TOTAL = "total";
+
+    private static final YouTrackMetrics INSTANCE = new YouTrackMetrics();
+
+    private final ConcurrentMap<String, YouTrackEndpointMetrics> endpoints = new ConcurrentHashMap<String, YouTrackEndpointMetrics>();
+    private final ConcurrentMap<String, YouTrackEndpointMetrics> stages = new ConcurrentHashMap<String, YouTrackEndpointMetrics>();
+    private final YouTrackEndpointMetrics total = new YouTrackEndpointMetrics(TOTAL);
+    private volatile boolean registered;
+
+    YouTrackMetrics() {
+    }
+
+    public static YouTrackMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts timing a call to YouTrack.
+     *
+     * @param endpoint the name of the endpoint called.
+     * @return the call, {@link Call#end()} must be called when it is done.
+     */
+    public Call begin(String endpoint) {
+        return begin(endpoint, null);
+    }
+
+    /**
+     * Starts timing a call to YouTrack.
+     *
+     * @param endpoint the name of the endpoint called.
+     * @param listener told when the call ends, null is allowed.
+     * @return the call, {@link Call#end()} must be called when it is done.
+     */
+    public Call begin(String endpoint, CallListener listener) {
+        return new Call(endpoint, getMetrics(endpoints, TYPE_ENDPOINT, endpoint), total, listener);
+    }
+
+    /**
+     * Starts timing a stage of the plugin, like handling the change log of a build.
+     *
+     * @param stage the name of the stage.
+     * @return the call, {@link Call#end()} must be called when it is done.
+     */
+    public Call beginStage(String stage) {
+        return new Call(stage, getMetrics(stages, TYPE_STAGE, stage), null, null);
+    }
+
+    public YouTrackEndpointMetrics getTotal() {
+        return total;
+    }
+
+    public List<YouTrackEndpointMetrics> getEndpoints() {
+        return new ArrayList<YouTrackEndpointMetrics>(endpoints.values());
+    }
+
+    public List<YouTrackEndpointMetrics> getStages() {
+        return new ArrayList<YouTrackEndpointMetrics>(stages.values());
+    }
+
+    private YouTrackEndpointMetrics getMetrics(ConcurrentMap<String, YouTrackEndpointMetrics> map, String type, String name) {
+        YouTrackEndpointMetrics metrics = map.get(name);
+        if (metrics == null) {
+            YouTrackEndpointMetrics newMetrics = new YouTrackEndpointMetrics(name);
+            metrics = map.putIfAbsent(name, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+                if (registered) {
+                    register(type, metrics);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, metrics for endpoints called later are registered when
+     * first used.
+     */
+    public synchronized void registerMBeans() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        register(TYPE_ENDPOINT, total);
+        for (YouTrackEndpointMetrics metrics : endpoints.values()) {
+            register(TYPE_ENDPOINT, metrics);
+        }
+        for (YouTrackEndpointMetrics metrics : stages.values()) {
+            register(TYPE_STAGE, metrics);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        unregister(TYPE_ENDPOINT, total);
+        for (YouTrackEndpointMetrics metrics : endpoints.values()) {
+            unregister(TYPE_ENDPOINT, metrics);
+        }
+        for (YouTrackEndpointMetrics metrics : stages.values()) {
+            unregister(TYPE_STAGE, metrics);
+        }
+    }
+
+    private static ObjectName getObjectName(String type, YouTrackEndpointMetrics metrics) throws Exception {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(metrics.getName()));
+    }
+
+    private static void register(String type, YouTrackEndpointMetrics metrics) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(type, metrics);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(metrics, objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not register YouTrack metrics", e);
+        }
+    }
+
+    private static void unregister(String type, YouTrackEndpointMetrics metrics) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(type, metrics);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not unregister YouTrack metrics", e);
+        }
+    }
+
+    /**
+     * Listener for the calls of one {@link YouTrackServer}.
+     */
+    public interface CallListener {
+        /**
+         * Called when a call has ended.
+         *
+         * @param endpoint the name of the endpoint called.
+         * @param detail   what the call was about, e.g. the issue id, null if not known.
+         * @param nanos    the duration of the call.
+         * @param failed   true if the call failed.
+         */
+        void callEnded(String endpoint, String detail, long nanos, boolean failed);
+    }
+
+    /**
+     * One timed call. It is used by a single thread, and the streams it wraps count the bytes transferred.
+     */
+    public static class Call {
+        private final String name;
+        private final YouTrackEndpointMetrics metrics;
+        private final YouTrackEndpointMetrics total;
+        private final CallListener listener;
+        private final long start;
+        private String detail;
+        private int responseCode = -1;
+        private boolean failed;
+        private long bytesSent;
+        private long bytesReceived;
+        private boolean ended;
+
+        Call(String name, YouTrackEndpointMetrics metrics, YouTrackEndpointMetrics total, CallListener listener) {
+            this.name = name;
+            this.metrics = metrics;
+            this.total = total;
+            this.listener = listener;
+            metrics.started();
+            if (total != null) {
+                total.started();
+            }
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Records the response code.
+         *
+         * @param responseCode the HTTP response code.
+         * @return the response code.
+         */
+        public int response(int responseCode) {
+            this.responseCode = responseCode;
+            return responseCode;
+        }
+
+        /**
+         * Sets what the call is about, e.g. the issue id.
+         */
+        public void detail(String detail) {
+            this.detail = detail;
+        }
+
+        /**
+         * Marks the call as failed with an exception.
+         */
+        public void failed() {
+            failed = true;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        public boolean isFailed() {
+            return failed || responseCode >= 400;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * Wraps a response stream to count the bytes read from it.
+         *
+         * @param inputStream the stream, may be null.
+         * @return the counting stream, null if the stream was null.
+         */
+        public InputStream received(InputStream inputStream) {
+            if (inputStream == null) {
+                return null;
+            }
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        bytesReceived++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        bytesReceived += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Wraps a request stream to count the bytes written to it.
+         *
+         * @param outputStream the stream.
+         * @return the counting stream.
+         */
+        public OutputStream sent(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    bytesSent++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    bytesSent += len;
+                }
+            };
+        }
+
+        /**
+         * Adds bytes sent that did not go through {@link #sent(OutputStream)}.
+         */
+        public void addBytesSent(long bytes) {
+            if (bytes > 0) {
+                bytesSent += bytes;
+            }
+        }
+
+        /**
+         * Ends the call and records it, calling this more than once has no effect.
+         *
+         * @return the duration of the call in nanoseconds.
+         */
+        public long end() {
+            long nanos = System.nanoTime() - start;
+            if (!ended) {
+                ended = true;
+                metrics.finished(nanos, responseCode, failed, bytesSent, bytesReceived);
+                if (total != null) {
+                    total.finished(nanos, responseCode, failed, bytesSent, bytesReceived);
+                }
+                if (listener != null) {
+                    listener.callEnded(name, detail, nanos, isFailed());
+                }
+            }
+            return nanos;
+        }
+    }
+}
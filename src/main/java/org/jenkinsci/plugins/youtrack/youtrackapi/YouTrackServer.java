@@ -26,8 +26,10 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,10 +41,30 @@ public class YouTrackServer {
      * Logger for this class.
      */
     private static final Logger LOGGER = Logger.getLogger(YouTrackServer.class.getName());
+    /**
+     * Metrics every call is recorded in.
+     */
+    private static final YouTrackMetrics METRICS = YouTrackMetrics.getInstance();
+    /**
+     * The call being timed on this thread.
+     */
+    private static final ThreadLocal<YouTrackMetrics.Call> CURRENT_CALL = new ThreadLocal<YouTrackMetrics.Call>();
+    /**
+     * Max number of issues a command is applied to in one request by {@link #applyCommandToIssues}.
+     */
+    static final int BULK_COMMAND_CHUNK_SIZE = Integer.getInteger(YouTrackServer.class.getName() + ".bulkCommandChunkSize", 100);
     /**
      * The url of the YouTrack server.
      */
     private final String serverUrl;
+    /**
+     * Told about every call made through this server, used to time the calls of one build.
+     */
+    private volatile YouTrackMetrics.CallListener callListener;
+    /**
+     * Cache used by {@link #getIssue(User, String, String)}, null to always fetch issues.
+     */
+    private IssueCache issueCache;
 
     private static String getErrorMessage(InputStream errorStream) throws IOException {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(errorStream));
@@ -76,11 +98,92 @@ public class YouTrackServer {
         this.serverUrl = serverUrl;
     }
 
+    public void setCallListener(YouTrackMetrics.CallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    public void setIssueCache(IssueCache issueCache) {
+        this.issueCache = issueCache;
+    }
+
+    /**
+     * A request to YouTrack, timed by {@link #timed(String, String, Request)}.
+     */
+    private interface Request<T> {
+        T run();
+    }
+
+    /**
+     * Runs a request and records it in the metrics. A request made while another one is running on the same thread,
+     * like looking up a state bundle for a field, is counted as part of that one and not as a call of its own.
+     *
+     * @param endpoint the name of the endpoint called.
+     * @param detail   what the call is about, e.g. the issue id, null if not known.
+     */
+    private <T> T timed(String endpoint, String detail, Request<T> request) {
+        if (CURRENT_CALL.get() != null) {
+            return request.run();
+        }
+        YouTrackMetrics.Call call = METRICS.begin(endpoint, callListener);
+        call.detail(detail);
+        CURRENT_CALL.set(call);
+        try {
+            return request.run();
+        } finally {
+            CURRENT_CALL.remove();
+            call.end();
+        }
+    }
+
+    private static int response(int responseCode) {
+        YouTrackMetrics.Call call = CURRENT_CALL.get();
+        return call != null ? call.response(responseCode) : responseCode;
+    }
+
+    private static InputStream received(InputStream inputStream) {
+        YouTrackMetrics.Call call = CURRENT_CALL.get();
+        return call != null ? call.received(inputStream) : inputStream;
+    }
+
+    private static OutputStream sent(OutputStream outputStream) {
+        YouTrackMetrics.Call call = CURRENT_CALL.get();
+        return call != null ? call.sent(outputStream) : outputStream;
+    }
+
+    private static void addBytesSent(long bytes) {
+        YouTrackMetrics.Call call = CURRENT_CALL.get();
+        if (call != null) {
+            call.addBytesSent(bytes);
+        }
+    }
+
+    private static void failed() {
+        YouTrackMetrics.Call call = CURRENT_CALL.get();
+        if (call != null) {
+            call.failed();
+        }
+    }
+
     public Command createIssue(String siteName, User user, String project, String title, String description, String command, File attachment) {
-        return createIssuePOST(siteName, user, project, title, description, command, attachment);
+        return createIssuePOST(siteName, user, project, title, description, command, attachment, attachment != null ? attachment.getName() : null);
+    }
+
+    /**
+     * Creates an issue with an attachment uploaded under the given name.
+     */
+    public Command createIssue(String siteName, User user, String project, String title, String description, String command, File attachment, String attachmentName) {
+        return createIssuePOST(siteName, user, project, title, description, command, attachment, attachmentName);
     }
 
-    private Command createIssuePOST(String siteName, User user, String project, String title, String description, String command, File attachment) {
+    private Command createIssuePOST(final String siteName, final User user, final String project, final String title, final String description, final String command, final File attachment, final String attachmentName) {
+        return timed("createIssue", project, new Request<Command>() {
+            public Command run() {
+                return doCreateIssuePOST(siteName, user, project, title, description, command, attachment, attachmentName);
+            }
+        });
+    }
+
+    private Command doCreateIssuePOST(String siteName, User user, String project, String title, String description, String command, File attachment, String attachmentName) {
         Command cmd = new Command();
         cmd.setCommand("[Create issue]");
         cmd.setDate(new Date());
@@ -107,18 +210,20 @@ public class YouTrackServer {
             parts.add(new StringPart("summary", title, "UTF-8"));
             parts.add(new StringPart("description", description, "UTF-8"));
             if(attachment != null) {
-                parts.add(new FilePart("attachment", attachment));
+                parts.add(new FilePart("attachment", attachmentName, attachment));
             }
             Part[] partsArray = {};
             Part[] array = parts.toArray(partsArray);
             postMethod.setRequestEntity(new MultipartRequestEntity(array, new HttpMethodParams()));
+            addBytesSent(postMethod.getRequestEntity().getContentLength());
 
             HttpClient httpClient = new HttpClient();
-            int responseCode = httpClient.executeMethod(postMethod);
+            int responseCode = response(httpClient.executeMethod(postMethod));
+            cmd.setResponseCode(responseCode);
             // Because we're varying in the POST vs. PUT call, check for a couple possible
             // success responses, though currently I'm only ever seeing 200 returned.
             if (responseCode == HttpURLConnection.HTTP_CREATED || responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(postMethod.getResponseBodyAsStream()));
+                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(received(postMethod.getResponseBodyAsStream())));
                 StringBuilder stringBuilder = new StringBuilder();
                 for (String l = null; (l = bufferedReader.readLine()) != null;) {
                     stringBuilder.append(l).append("\n");
@@ -150,12 +255,14 @@ public class YouTrackServer {
                 return cmd;
             }
 
-            cmd.setResponse(getErrorMessage(postMethod.getResponseBodyAsStream()));
+            cmd.setResponse(getErrorMessage(received(postMethod.getResponseBodyAsStream())));
             LOGGER.log(Level.WARNING, "Did not create issue: " + cmd.getResponse());
         } catch (MalformedURLException e) {
+            failed();
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Did not create issue", e);
         } catch (IOException e) {
+            failed();
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Did not create issue", e);
         }
@@ -163,7 +270,15 @@ public class YouTrackServer {
     }
 
 
-    public List<Group> getGroups(User user) {
+    public List<Group> getGroups(final User user) {
+        return timed("getGroups", null, new Request<List<Group>>() {
+            public List<Group> run() {
+                return doGetGroups(user);
+            }
+        });
+    }
+
+    private List<Group> doGetGroups(User user) {
         List<Group> groups = new ArrayList<Group>();
         try {
             URL url = new URL(serverUrl + "/rest/admin/group");
@@ -177,20 +292,24 @@ public class YouTrackServer {
 
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
             try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (response(urlConnection.getResponseCode()) == HttpURLConnection.HTTP_OK) {
                     SAXParser saxParser = saxParserFactory.newSAXParser();
                     Group.GroupListHandler dh = new Group.GroupListHandler();
-                    saxParser.parse(urlConnection.getInputStream(), dh);
+                    saxParser.parse(received(urlConnection.getInputStream()), dh);
                     return dh.getGroups();
                 }
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         }
         return groups;
@@ -203,7 +322,15 @@ public class YouTrackServer {
      * @param stateBundleName the name of the state bundle.
      * @return the state bundle.
      */
-    public StateBundle getStateBundleWithName(User user, String stateBundleName) {
+    public StateBundle getStateBundleWithName(final User user, final String stateBundleName) {
+        return timed("getStateBundleWithName", null, new Request<StateBundle>() {
+            public StateBundle run() {
+                return doGetStateBundleWithName(user, stateBundleName);
+            }
+        });
+    }
+
+    private StateBundle doGetStateBundleWithName(User user, String stateBundleName) {
         try {
             String stateBundleUrl = serverUrl + "/rest/admin/customfield/stateBundle/" + stateBundleName;
             URL url = new URL(stateBundleUrl);
@@ -217,28 +344,40 @@ public class YouTrackServer {
 
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
             try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (response(urlConnection.getResponseCode()) == HttpURLConnection.HTTP_OK) {
                     SAXParser saxParser = saxParserFactory.newSAXParser();
                     StateBundle stateBundle = new StateBundle(stateBundleName, stateBundleUrl);
                     StateBundle.StateBundleHandler dh = new StateBundle.StateBundleHandler(stateBundle);
-                    saxParser.parse(urlConnection.getInputStream(), dh);
+                    saxParser.parse(received(urlConnection.getInputStream()), dh);
                     return stateBundle;
 
                 }
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         }
         return null;
     }
 
-    public StateBundle getStateBundleForField(User user, String fieldName) {
+    public StateBundle getStateBundleForField(final User user, final String fieldName) {
+        return timed("getStateBundleForField", null, new Request<StateBundle>() {
+            public StateBundle run() {
+                return doGetStateBundleForField(user, fieldName);
+            }
+        });
+    }
+
+    private StateBundle doGetStateBundleForField(User user, String fieldName) {
         try {
             String fieldUrl = serverUrl + "/rest/admin/customfield/field/" + fieldName;
             URL url = new URL(fieldUrl);
@@ -252,10 +391,10 @@ public class YouTrackServer {
 
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
             try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (response(urlConnection.getResponseCode()) == HttpURLConnection.HTTP_OK) {
                     SAXParser saxParser = saxParserFactory.newSAXParser();
                     Field.FieldHandler dh = new Field.FieldHandler(fieldName, fieldUrl);
-                    saxParser.parse(urlConnection.getInputStream(), dh);
+                    saxParser.parse(received(urlConnection.getInputStream()), dh);
                     Field field = dh.getField();
 
                     if (field.getType().equals("state[1]")) {
@@ -265,19 +404,31 @@ public class YouTrackServer {
                     }
                 }
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         }
         return null;
     }
 
-    public List<Field> getFields(User user) {
+    public List<Field> getFields(final User user) {
+        return timed("getFields", null, new Request<List<Field>>() {
+            public List<Field> run() {
+                return doGetFields(user);
+            }
+        });
+    }
+
+    private List<Field> doGetFields(User user) {
         List<Field> fields = new ArrayList<Field>();
         try {
             URL url = new URL(serverUrl + "/rest/admin/customfield/field/");
@@ -291,20 +442,24 @@ public class YouTrackServer {
 
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
             try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (response(urlConnection.getResponseCode()) == HttpURLConnection.HTTP_OK) {
                     SAXParser saxParser = saxParserFactory.newSAXParser();
                     Field.FieldListHandler dh = new Field.FieldListHandler();
-                    saxParser.parse(urlConnection.getInputStream(), dh);
+                    saxParser.parse(received(urlConnection.getInputStream()), dh);
                     return dh.getFields();
                 }
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         }
         return fields;
@@ -317,7 +472,15 @@ public class YouTrackServer {
      * @param user the user to get projects for.
      * @return the list of projects the user can see.
      */
-    public List<Project> getProjects(User user) {
+    public List<Project> getProjects(final User user) {
+        return timed("getProjects", null, new Request<List<Project>>() {
+            public List<Project> run() {
+                return doGetProjects(user);
+            }
+        });
+    }
+
+    private List<Project> doGetProjects(User user) {
         try {
             URL url = new URL(serverUrl + "/rest/project/all");
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -332,20 +495,23 @@ public class YouTrackServer {
             try {
                 SAXParser saxParser = saxParserFactory.newSAXParser();
                 Project.ProjectListHandler dh = new Project.ProjectListHandler();
-                saxParser.parse(urlConnection.getInputStream(), dh);
+                saxParser.parse(received(urlConnection.getInputStream()), dh);
                 return dh.getProjects();
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         }
         return null;
-
     }
 
     /**
@@ -359,7 +525,15 @@ public class YouTrackServer {
      * @param silent   prevents watchers from being notified.
      * @return if comment was added.
      */
-    public Command comment(String siteName, User user, Issue issue, String comment, String group, boolean silent) {
+    public Command comment(final String siteName, final User user, final Issue issue, final String comment, final String group, final boolean silent) {
+        return timed("comment", issue.getId(), new Request<Command>() {
+            public Command run() {
+                return doComment(siteName, user, issue, comment, group, silent);
+            }
+        });
+    }
+
+    private Command doComment(String siteName, User user, Issue issue, String comment, String group, boolean silent) {
         Command command = new Command();
         command.setSiteName(siteName);
         command.setIssueId(issue.getId());
@@ -389,7 +563,7 @@ public class YouTrackServer {
                 }
             }
 
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream());
+            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(sent(urlConnection.getOutputStream()));
             outputStreamWriter.write("comment=" + URLEncoder.encode(comment, "UTF-8"));
             if (group != null && !group.equals("")) {
                 outputStreamWriter.write("&group=" + group);
@@ -399,15 +573,17 @@ public class YouTrackServer {
             }
             outputStreamWriter.flush();
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
+            command.setResponseCode(responseCode);
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 command.setStatus(Command.Status.OK);
                 return command;
             } else {
                 command.setStatus(Command.Status.FAILED);
-                command.setResponse(getErrorMessage(urlConnection.getErrorStream()));
+                command.setResponse(getErrorMessage(received(urlConnection.getErrorStream())));
             }
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not comment", e);
             command.setResponse(e.getMessage());
         }
@@ -424,7 +600,19 @@ public class YouTrackServer {
      * @param runAs   user to apply the command as, null is allowed.
      * @param notify  notifies watchers.
      */
-    public Command applyCommand(String siteName, User user, Issue issue, String command, String comment, User runAs, boolean notify) {
+    public Command applyCommand(final String siteName, final User user, final Issue issue, final String command, final String comment, final User runAs, final boolean notify) {
+        try {
+            return timed("applyCommand", issue.getId(), new Request<Command>() {
+                public Command run() {
+                    return doApplyCommand(siteName, user, issue, command, comment, runAs, notify);
+                }
+            });
+        } finally {
+            IssueCache.invalidate(serverUrl, issue.getId());
+        }
+    }
+
+    private Command doApplyCommand(String siteName, User user, Issue issue, String command, String comment, User runAs, boolean notify) {
         Command cmd = new Command();
         cmd.setCommand(command);
         cmd.setSilent(!notify);
@@ -451,7 +639,7 @@ public class YouTrackServer {
                 urlConnection.setRequestProperty("Cookie", cookie);
             }
 
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream());
+            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(sent(urlConnection.getOutputStream()));
 
 
             String str = "command=" + URLEncoder.encode(command, "UTF-8");
@@ -467,7 +655,8 @@ public class YouTrackServer {
             outputStreamWriter.write(str);
             outputStreamWriter.flush();
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
+            cmd.setResponseCode(responseCode);
 
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 cmd.setStatus(Command.Status.OK);
@@ -475,15 +664,166 @@ public class YouTrackServer {
             }
 
             cmd.setStatus(Command.Status.FAILED);
-            cmd.setResponse(getErrorMessage(urlConnection.getErrorStream()));
+            cmd.setResponse(getErrorMessage(received(urlConnection.getErrorStream())));
             LOGGER.log(Level.WARNING, "Could not apply command: " + cmd.getResponse());
         } catch (IOException e) {
+            failed();
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Could not apply command", e);
         }
         return cmd;
     }
 
+    /**
+     * Apply a command to several issues, with one request per chunk of issues selected by an <code>issue id:</code>
+     * query. The issues of a chunk are searched with the same query first, as YouTrack does not tell which issues a
+     * command was applied to: the command is only sent for the issues found, the others fail without a request. If
+     * the search fails, the command is not sent and all issues of the chunk fail.
+     *
+     * @param user    the user used to apply the command, shall be one with cookies set.
+     * @param issues  the issues to apply the command to.
+     * @param command the command to apply.
+     * @param comment comment with the command, null is allowed.
+     * @param runAs   user to apply the command as, null is allowed.
+     * @param notify  notifies watchers.
+     * @return a command per issue, in the order of the issues.
+     */
+    public List<Command> applyCommandToIssues(String siteName, User user, List<Issue> issues, String command, String comment, User runAs, boolean notify) {
+        List<Command> result = new ArrayList<Command>(issues.size());
+        for (int start = 0; start < issues.size(); start += BULK_COMMAND_CHUNK_SIZE) {
+            List<Issue> chunk = issues.subList(start, Math.min(issues.size(), start + BULK_COMMAND_CHUNK_SIZE));
+            result.addAll(applyCommandToChunk(siteName, user, chunk, command, comment, runAs, notify));
+        }
+        return result;
+    }
+
+    private List<Command> applyCommandToChunk(final String siteName, final User user, final List<Issue> issues, final String command, final String comment, final User runAs, final boolean notify) {
+        try {
+            return timed("applyCommandToIssues", issues.size() + " issues", new Request<List<Command>>() {
+                public List<Command> run() {
+                    return doApplyCommandToChunk(siteName, user, issues, command, comment, runAs, notify);
+                }
+            });
+        } finally {
+            for (Issue issue : issues) {
+                IssueCache.invalidate(serverUrl, issue.getId());
+            }
+        }
+    }
+
+    private List<Command> doApplyCommandToChunk(String siteName, User user, List<Issue> issues, String command, String comment, User runAs, boolean notify) {
+        List<Command> commands = new ArrayList<Command>(issues.size());
+        Date date = new Date();
+        for (Issue issue : issues) {
+            Command cmd = new Command();
+            cmd.setCommand(command);
+            cmd.setSilent(!notify);
+            cmd.setIssueId(issue.getId());
+            cmd.setSiteName(siteName);
+            cmd.setDate(date);
+            cmd.setStatus(Command.Status.FAILED);
+            cmd.setComment(comment);
+            commands.add(cmd);
+        }
+
+        if (user == null || !user.isLoggedIn()) {
+            setStatus(commands, Command.Status.NOT_LOGGED_IN, null);
+            return commands;
+        }
+        for (Command cmd : commands) {
+            cmd.setUsername(user.getUsername());
+        }
+
+        List<Issue> found = search(user, getIssueIdQuery(commands));
+        if (found == null) {
+            setStatus(commands, Command.Status.FAILED, "Could not find the issues to apply the command to");
+            for (Command cmd : commands) {
+                cmd.setUnsent(true);
+            }
+            return commands;
+        }
+        Set<String> foundIds = new HashSet<String>();
+        for (Issue issue : found) {
+            foundIds.add(issue.getId());
+        }
+        List<Command> matched = new ArrayList<Command>(commands.size());
+        for (Command cmd : commands) {
+            if (foundIds.contains(cmd.getIssueId())) {
+                matched.add(cmd);
+            } else {
+                cmd.setResponse("Issue not found.");
+                cmd.setUnsent(true);
+            }
+        }
+        if (matched.isEmpty()) {
+            return commands;
+        }
+        String query = getIssueIdQuery(matched);
+
+        try {
+            URL url = new URL(serverUrl + "/rest/issue/execute");
+            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setDoOutput(true);
+            urlConnection.setDoInput(true);
+
+            for (String cookie : user.getCookies()) {
+                urlConnection.setRequestProperty("Cookie", cookie);
+            }
+
+            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(sent(urlConnection.getOutputStream()));
+
+            String str = "query=" + URLEncoder.encode(query, "UTF-8");
+            str += "&command=" + URLEncoder.encode(command, "UTF-8");
+            if (comment != null) {
+                str += "&comment=" + URLEncoder.encode(comment, "UTF-8");
+            }
+            if (runAs != null) {
+                str += "&runAs=" + runAs.getUsername();
+            }
+            if (!notify) {
+                str += "&disableNotifications=true";
+            }
+            outputStreamWriter.write(str);
+            outputStreamWriter.flush();
+
+            int responseCode = response(urlConnection.getResponseCode());
+            for (Command cmd : matched) {
+                cmd.setResponseCode(responseCode);
+            }
+
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                setStatus(matched, Command.Status.OK, null);
+                return commands;
+            }
+
+            setStatus(matched, Command.Status.FAILED, getErrorMessage(received(urlConnection.getErrorStream())));
+            LOGGER.log(Level.WARNING, "Could not apply command to " + matched.size() + " issues: " + matched.get(0).getResponse());
+        } catch (IOException e) {
+            failed();
+            setStatus(matched, Command.Status.FAILED, e.getMessage());
+            LOGGER.log(Level.WARNING, "Could not apply command to " + matched.size() + " issues", e);
+        }
+        return commands;
+    }
+
+    private static String getIssueIdQuery(List<Command> commands) {
+        StringBuilder query = new StringBuilder("issue id: ");
+        for (int i = 0; i < commands.size(); i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            query.append(commands.get(i).getIssueId());
+        }
+        return query.toString();
+    }
+
+    private static void setStatus(List<Command> commands, Command.Status status, String response) {
+        for (Command command : commands) {
+            command.setStatus(status);
+            command.setResponse(response);
+        }
+    }
+
     /**
      * Get a YouTrack user from the e-mail address.
      *
@@ -491,7 +831,15 @@ public class YouTrackServer {
      * @param email the email to get.
      * @return the user, null if none found.
      */
-    public User getUserByEmail(User user, String email) {
+    public User getUserByEmail(final User user, final String email) {
+        return timed("getUserByEmail", null, new Request<User>() {
+            public User run() {
+                return doGetUserByEmail(user, email);
+            }
+        });
+    }
+
+    private User doGetUserByEmail(User user, String email) {
         try {
             URL url = new URL(serverUrl + "/rest/admin/user?q=" + email);
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -500,19 +848,22 @@ public class YouTrackServer {
                 urlConnection.setRequestProperty("Cookie", cookie);
             }
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
                 SAXParser saxParser = saxParserFactory.newSAXParser();
                 User.UserRefHandler dh = new User.UserRefHandler();
-                saxParser.parse(urlConnection.getInputStream(), dh);
+                saxParser.parse(received(urlConnection.getInputStream()), dh);
                 return dh.getUser();
             }
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get user", e);
         } catch (ParserConfigurationException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get user", e);
         } catch (SAXException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get user", e);
         }
         return null;
@@ -526,8 +877,15 @@ public class YouTrackServer {
      * @param password the password of the user.
      * @return user, null if fails to login
      */
-    public User login(String username, String password) {
+    public User login(final String username, final String password) {
+        return timed("login", null, new Request<User>() {
+            public User run() {
+                return doLogin(username, password);
+            }
+        });
+    }
 
+    private User doLogin(String username, String password) {
         try {
             User user = new User();
             user.setUsername(username);
@@ -536,11 +894,11 @@ public class YouTrackServer {
 
             urlConnection.setDoOutput(true);
             urlConnection.setDoInput(true);
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream());
+            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(sent(urlConnection.getOutputStream()));
             outputStreamWriter.write("login=" + username + "&password=" + password);
             outputStreamWriter.flush();
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
 
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 Map<String, List<String>> headerFields = urlConnection.getHeaderFields();
@@ -556,8 +914,10 @@ public class YouTrackServer {
                 return user;
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not login", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not login", e);
         }
         return null;
@@ -571,7 +931,15 @@ public class YouTrackServer {
      * @param bundleName the name of the bundle to add a build to.
      * @param buildName  the name of the build to add.
      */
-    public Command addBuildToBundle(String siteName, User user, String bundleName, String buildName) {
+    public Command addBuildToBundle(final String siteName, final User user, final String bundleName, final String buildName) {
+        return timed("addBuildToBundle", bundleName + "/" + buildName, new Request<Command>() {
+            public Command run() {
+                return doAddBuildToBundle(siteName, user, bundleName, buildName);
+            }
+        });
+    }
+
+    private Command doAddBuildToBundle(String siteName, User user, String bundleName, String buildName) {
         Command cmd = new Command();
         cmd.setCommand("[Add '" + buildName + "' to " + " '" + bundleName + "']");
         cmd.setDate(new Date());
@@ -596,28 +964,77 @@ public class YouTrackServer {
             }
             urlConnection.setDoOutput(true);
             urlConnection.setDoInput(true);
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream());
+            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(sent(urlConnection.getOutputStream()));
             outputStreamWriter.flush();
 
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
+            cmd.setResponseCode(responseCode);
             if (responseCode == HttpURLConnection.HTTP_CREATED) {
                 cmd.setStatus(Command.Status.OK);
                 return cmd;
             }
 
             cmd.setStatus(Command.Status.FAILED);
-            cmd.setResponse(getErrorMessage(urlConnection.getErrorStream()));
+            cmd.setResponse(getErrorMessage(received(urlConnection.getErrorStream())));
         } catch (MalformedURLException e) {
+            failed();
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Could not add to bundle", e);
         } catch (IOException e) {
+            failed();
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Could not add to bundle", e);
         }
         return cmd;
     }
 
+    /**
+     * Gets a build bundle with the builds in it.
+     *
+     * @param user       the user to get the bundle with.
+     * @param bundleName the name of the bundle.
+     * @return the bundle, null if it does not exist or could not be fetched.
+     */
+    public BuildBundle getBuildBundle(final User user, final String bundleName) {
+        return timed("getBuildBundle", bundleName, new Request<BuildBundle>() {
+            public BuildBundle run() {
+                return doGetBuildBundle(user, bundleName);
+            }
+        });
+    }
+
+    private BuildBundle doGetBuildBundle(User user, String bundleName) {
+        try {
+            String encode = URLEncoder.encode(bundleName, "ISO-8859-1").replace("+", "%20");
+            URL url = new URL(serverUrl + "/rest/admin/customfield/buildBundle/" + encode);
+            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            for (String cookie : user.getCookies()) {
+                urlConnection.setRequestProperty("Cookie", cookie);
+            }
+
+            int responseCode = response(urlConnection.getResponseCode());
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                SAXParserFactory factory = SAXParserFactory.newInstance();
+                SAXParser saxParser = factory.newSAXParser();
+                BuildBundle.Handler bundleHandler = new BuildBundle.Handler();
+                saxParser.parse(received(urlConnection.getInputStream()), bundleHandler);
+                List<BuildBundle> bundles = bundleHandler.getBundles();
+                return bundles.isEmpty() ? null : bundles.get(0);
+            }
+        } catch (ParserConfigurationException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get build bundle", e);
+        } catch (SAXException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get build bundle", e);
+        } catch (IOException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get build bundle", e);
+        }
+        return null;
+    }
+
     /**
      * Gets an issue by issue id.
      * <p/>
@@ -628,6 +1045,26 @@ public class YouTrackServer {
      * @return the issue if any.
      */
     public Issue getIssue(User user, String issueId, String stateField) {
+        if (issueCache != null) {
+            return issueCache.get(this, user, issueId, stateField);
+        }
+        return fetchIssue(user, issueId, stateField);
+    }
+
+    /**
+     * Fetches an issue from the server, also when it is in the cache.
+     *
+     * @see #getIssue(User, String, String)
+     */
+    Issue fetchIssue(final User user, final String issueId, final String stateField) {
+        return timed("getIssue", issueId, new Request<Issue>() {
+            public Issue run() {
+                return doFetchIssue(user, issueId, stateField);
+            }
+        });
+    }
+
+    private Issue doFetchIssue(User user, String issueId, String stateField) {
         try {
             URL url = new URL(serverUrl + "/rest/issue/" + issueId + "?wikifyDescription=true");
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -636,55 +1073,79 @@ public class YouTrackServer {
             }
 
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 try {
                     SAXParserFactory factory = SAXParserFactory.newInstance();
                     SAXParser saxParser = factory.newSAXParser();
                     Issue.IssueHandler issueHandler = new Issue.IssueHandler(stateField);
-                    saxParser.parse(urlConnection.getInputStream(), issueHandler);
+                    saxParser.parse(received(urlConnection.getInputStream()), issueHandler);
                     return issueHandler.getIssue();
                 } catch (ParserConfigurationException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not get issue", e);
                 } catch (SAXException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not get issue", e);
                 }
             }
 
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         }
         return null;
     }
 
     public String[] getVersion() {
+        return timed("getVersion", null, new Request<String[]>() {
+            public String[] run() {
+                return doGetVersion();
+            }
+        });
+    }
+
+    private String[] doGetVersion() {
         try {
             URL url = new URL(serverUrl + "/rest/workflow/version");
             try {
                 HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (response(urlConnection.getResponseCode()) == HttpURLConnection.HTTP_OK) {
                     SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
                     SAXParser saxParser = saxParserFactory.newSAXParser();
                     VersionHandler versionHandler = new VersionHandler();
-                    saxParser.parse(urlConnection.getInputStream(), versionHandler);
+                    saxParser.parse(received(urlConnection.getInputStream()), versionHandler);
                     return versionHandler.version.split(".");
                 }
             } catch (IOException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get version", e);
             } catch (ParserConfigurationException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get version", e);
             } catch (SAXException e) {
+                failed();
                 LOGGER.log(Level.WARNING, "Could not get version", e);
             }
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Wrong url", e);
         }
         return null;
     }
 
-    public List<BuildBundle> getBuildBundles(User user) {
+    public List<BuildBundle> getBuildBundles(final User user) {
+        return timed("getBuildBundles", null, new Request<List<BuildBundle>>() {
+            public List<BuildBundle> run() {
+                return doGetBuildBundles(user);
+            }
+        });
+    }
+
+    private List<BuildBundle> doGetBuildBundles(User user) {
         try {
             URL url = new URL(serverUrl + "/rest/admin/customfield/buildBundle");
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -693,30 +1154,42 @@ public class YouTrackServer {
             }
 
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 try {
                     SAXParserFactory factory = SAXParserFactory.newInstance();
                     SAXParser saxParser = factory.newSAXParser();
                     BuildBundle.Handler issueHandler = new BuildBundle.Handler();
-                    saxParser.parse(urlConnection.getInputStream(), issueHandler);
+                    saxParser.parse(received(urlConnection.getInputStream()), issueHandler);
                     return issueHandler.getBundles();
                 } catch (ParserConfigurationException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not get issue", e);
                 } catch (SAXException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not get issue", e);
                 }
             }
 
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         }
         return null;
     }
 
-    public List<Issue> search(User user, String searchQuery) {
+    public List<Issue> search(final User user, final String searchQuery) {
+        return timed("search", searchQuery, new Request<List<Issue>>() {
+            public List<Issue> run() {
+                return doSearch(user, searchQuery);
+            }
+        });
+    }
+
+    private List<Issue> doSearch(User user, String searchQuery) {
         try {
             URL url = new URL(serverUrl + "/rest/issue?filter=" + URLEncoder.encode(searchQuery, "UTF-8") + "&max=" + Integer.MAX_VALUE);
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -725,30 +1198,88 @@ public class YouTrackServer {
             }
 
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 try {
                     SAXParserFactory factory = SAXParserFactory.newInstance();
                     SAXParser saxParser = factory.newSAXParser();
                     Issue.IssueSearchHandler issueSearchHandler = new Issue.IssueSearchHandler();
-                    saxParser.parse(urlConnection.getInputStream(), issueSearchHandler);
+                    saxParser.parse(received(urlConnection.getInputStream()), issueSearchHandler);
                     return issueSearchHandler.getIssueList();
                 } catch (ParserConfigurationException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not find issues", e);
                 } catch (SAXException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not find issues", e);
                 }
             }
 
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         }
         return null;
     }
 
-    public List<Suggestion> searchSuggestions(User user, String current) {
+    /**
+     * Gets the issues of a project updated after a time, exact to the millisecond whatever the time zone of the user.
+     *
+     * @param user         the user to search with.
+     * @param project      the short name of the project.
+     * @param updatedAfter the time in milliseconds since the epoch.
+     * @param max          the max number of issues returned.
+     * @return the issues, null if the request failed.
+     */
+    public List<Issue> getIssuesUpdatedAfter(final User user, final String project, final long updatedAfter, final int max) {
+        return timed("getUpdatedIssues", project, new Request<List<Issue>>() {
+            public List<Issue> run() {
+                return doGetIssuesUpdatedAfter(user, project, updatedAfter, max);
+            }
+        });
+    }
+
+    private List<Issue> doGetIssuesUpdatedAfter(User user, String project, long updatedAfter, int max) {
+        try {
+            URL url = new URL(serverUrl + "/rest/issue/byproject/" + URLEncoder.encode(project, "UTF-8") + "?updatedAfter=" + updatedAfter + "&max=" + max);
+            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            for (String cookie : user.getCookies()) {
+                urlConnection.setRequestProperty("Cookie", cookie);
+            }
+
+            int responseCode = response(urlConnection.getResponseCode());
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                SAXParserFactory factory = SAXParserFactory.newInstance();
+                SAXParser saxParser = factory.newSAXParser();
+                Issue.IssueSearchHandler issueSearchHandler = new Issue.IssueSearchHandler();
+                saxParser.parse(received(urlConnection.getInputStream()), issueSearchHandler);
+                return issueSearchHandler.getIssueList();
+            }
+        } catch (ParserConfigurationException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get updated issues of " + project, e);
+        } catch (SAXException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get updated issues of " + project, e);
+        } catch (IOException e) {
+            failed();
+            LOGGER.log(Level.WARNING, "Could not get updated issues of " + project, e);
+        }
+        return null;
+    }
+
+    public List<Suggestion> searchSuggestions(final User user, final String current) {
+        return timed("searchSuggestions", null, new Request<List<Suggestion>>() {
+            public List<Suggestion> run() {
+                return doSearchSuggestions(user, current);
+            }
+        });
+    }
+
+    private List<Suggestion> doSearchSuggestions(User user, String current) {
         try {
             URL url = new URL(serverUrl + "/rest/issue/intellisense?filter=" + URLEncoder.encode(current, "UTF-8"));
             HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
@@ -757,24 +1288,28 @@ public class YouTrackServer {
             }
 
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = response(urlConnection.getResponseCode());
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 try {
                     SAXParserFactory factory = SAXParserFactory.newInstance();
                     SAXParser saxParser = factory.newSAXParser();
                     Issue.IssueSearchSuggestionHandler issueSearchHandler = new Issue.IssueSearchSuggestionHandler();
-                    saxParser.parse(urlConnection.getInputStream(), issueSearchHandler);
+                    saxParser.parse(received(urlConnection.getInputStream()), issueSearchHandler);
                     return issueSearchHandler.getSuggestions();
                 } catch (ParserConfigurationException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not find issues", e);
                 } catch (SAXException e) {
+                    failed();
                     LOGGER.log(Level.WARNING, "Could not find issues", e);
                 }
             }
 
         } catch (MalformedURLException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         } catch (IOException e) {
+            failed();
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         }
         return new ArrayList<Suggestion>();
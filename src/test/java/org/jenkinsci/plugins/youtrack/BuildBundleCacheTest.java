@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.BuildBundle;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class BuildBundleCacheTest {
+    private BuildBundleCache cache;
+    private YouTrackServer server;
+    private User user;
+
+    @Before
+    public void setUp() {
+        cache = BuildBundleCache.getInstance();
+        cache.clear();
+        server = mock(YouTrackServer.class);
+        user = new User();
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Test
+    public void testBuildsFetchedOnce() {
+        BuildBundle bundle = new BuildBundle("Builds");
+        bundle.getBuilds().add("1");
+        when(server.getBuildBundle(user, "Builds")).thenReturn(bundle);
+
+        assertThat(cache.hasBuild(server, user, "http://example.com", "Builds", "1"), is(true));
+        assertThat(cache.hasBuild(server, user, "http://example.com", "Builds", "2"), is(false));
+        cache.buildAdded("http://example.com", "Builds", "2");
+        assertThat(cache.hasBuild(server, user, "http://example.com", "Builds", "2"), is(true));
+        verify(server, times(1)).getBuildBundle(user, "Builds");
+
+        cache.invalidate("http://example.com", "Builds");
+        assertThat(cache.hasBuild(server, user, "http://example.com", "Builds", "2"), is(false));
+        verify(server, times(2)).getBuildBundle(user, "Builds");
+    }
+
+    @Test
+    public void testBundleNames() {
+        List<BuildBundle> bundles = new ArrayList<BuildBundle>();
+        bundles.add(new BuildBundle("Builds"));
+        when(server.getBuildBundles(user)).thenReturn(bundles);
+
+        assertThat(cache.hasBundle(server, user, "http://example.com", "Builds"), is(true));
+        assertThat(cache.hasBundle(server, user, "http://example.com", "Builds"), is(true));
+        verify(server, times(1)).getBuildBundles(user);
+        assertThat(cache.hasBundle(server, user, "http://example.com", "Other"), is(false));
+        verify(server, times(2)).getBuildBundles(user);
+
+        assertThat(cache.hasBundle(server, user, "http://other.com", "Builds"), nullValue());
+        assertThat(cache.hasBuild(server, user, "http://other.com", "Builds", "1"), nullValue());
+    }
+
+    @Test
+    public void testBundleCreatedAfterMissIsFound() {
+        List<BuildBundle> bundles = new ArrayList<BuildBundle>();
+        bundles.add(new BuildBundle("Builds"));
+        when(server.getBuildBundles(user)).thenReturn(bundles);
+        assertThat(cache.hasBundle(server, user, "http://example.com", "Release"), is(false));
+
+        List<BuildBundle> created = new ArrayList<BuildBundle>(bundles);
+        created.add(new BuildBundle("Release"));
+        when(server.getBuildBundles(user)).thenReturn(created);
+        assertThat(cache.hasBundle(server, user, "http://example.com", "Release"), is(true));
+    }
+}
@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.PrintWriter;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BuildLogExcerptTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createLog(int lines) throws Exception {
+        File log = folder.newFile("log");
+        PrintWriter writer = new PrintWriter(log, "UTF-8");
+        for (int i = 1; i <= lines; i++) {
+            writer.print(i % 100 == 0 ? "line " + i + " ERROR\n" : "line " + i + "\n");
+        }
+        writer.close();
+        return log;
+    }
+
+    private static String excerpt(BuildLogExcerpt.Mode mode, int size, File log) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BuildLogExcerpt(mode, size, false).write(log, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testTailLines() throws Exception {
+        File log = createLog(100000);
+        assertThat(excerpt(BuildLogExcerpt.Mode.TAIL_LINES, 2, log), is("line 99999\nline 100000 ERROR\n"));
+        assertThat(excerpt(BuildLogExcerpt.Mode.TAIL_LINES, 200000, log).length(), is((int) log.length()));
+    }
+
+    @Test
+    public void testTailMegabytesStartsAtLine() throws Exception {
+        File log = createLog(200000);
+        String excerpt = excerpt(BuildLogExcerpt.Mode.TAIL_MB, 1, log);
+        assertTrue(excerpt.length() <= 1024 * 1024);
+        assertTrue(excerpt.startsWith("line "));
+        assertTrue(excerpt.endsWith("line 200000 ERROR\n"));
+    }
+
+    @Test
+    public void testErrorSections() throws Exception {
+        File log = createLog(300);
+        assertThat(excerpt(BuildLogExcerpt.Mode.ERRORS, 1, log),
+                is("line 99\nline 100 ERROR\nline 101\n...\nline 199\nline 200 ERROR\nline 201\n...\nline 299\nline 300 ERROR\n"));
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        File log = createLog(1000);
+        File target = folder.newFile("log.gz");
+        BuildLogExcerpt excerpt = new BuildLogExcerpt(BuildLogExcerpt.Mode.FULL, 0, true);
+        excerpt.write(log, target);
+        assertThat(excerpt.getFileName("log"), is("log.gz"));
+
+        GZIPInputStream in = new GZIPInputStream(new FileInputStream(target));
+        int length = 0;
+        while (in.read() != -1) {
+            length++;
+        }
+        in.close();
+        assertThat((long) length, is(log.length()));
+    }
+}
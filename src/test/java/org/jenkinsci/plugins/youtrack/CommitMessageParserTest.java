@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CommitMessageParserTest {
+    private final List<Project> projects = Arrays.asList(new Project("TP1"), new Project("TP2"));
+
+    @Test
+    public void testParse() {
+        Map<String, String> prefixCommands = Collections.singletonMap("fixes", "Fixed");
+        CommitMessageParser parser = new CommitMessageParser(projects, Arrays.asList(new Project("TP1")), prefixCommands);
+
+        CommitMessageParser.ParsedCommit parsed = parser.parse("Fixes !#TP1-1 In Progress\nSome comment\n#TP2-3 Fixed, see TP1-2");
+
+        assertThat(parsed.getMentionedIssueIds(), is(Arrays.asList("TP1-1", "TP1-2", "TP2-3")));
+        assertThat(parsed.getCommands().size(), is(1));
+        CommitMessageParser.ParsedCommand command = parsed.getCommands().get(0);
+        assertThat(command.getIssueId(), is("TP1-1"));
+        assertThat(command.getCommand(), is("In Progress"));
+        assertThat(command.getComment(), is("Some comment"));
+        assertThat(command.isSilent(), is(true));
+        assertThat(command.getPrefixCommand(), is("Fixed"));
+    }
+
+    @Test
+    public void testParseCommandLines() {
+        CommitMessageParser parser = new CommitMessageParser(projects, projects, Collections.singletonMap("fixes", "Fixed"));
+
+        List<CommitMessageParser.ParsedCommand> commands = parser.parseCommands("#TP1-1 Fixed\r\n\n Foo\nBar \n FIXES #TP1-2\n#TP3-1 Ignored\nNot a comment\n#TP2-4");
+
+        assertThat(commands.size(), is(3));
+        assertThat(commands.get(0).getIssueId(), is("TP1-1"));
+        assertThat(commands.get(0).getCommand(), is("Fixed"));
+        assertThat(commands.get(0).getComment(), is("Foo\nBar"));
+        assertThat(commands.get(0).getPrefixCommand(), nullValue());
+        assertThat(commands.get(1).getIssueId(), is("TP1-2"));
+        assertThat(commands.get(1).getCommand(), is(""));
+        assertThat(commands.get(1).getComment(), nullValue());
+        assertThat(commands.get(1).getPrefixCommand(), is("Fixed"));
+        assertThat(commands.get(2).getIssueId(), is("TP2-4"));
+        assertThat(commands.get(2).getComment(), nullValue());
+    }
+
+    @Test
+    public void testParseSeveralIssuesOnLine() {
+        CommitMessageParser parser = new CommitMessageParser(projects, projects, null);
+
+        List<CommitMessageParser.ParsedCommand> commands = parser.parseCommands("#TP1-1 #TP1-2 #TP2-7 #TP1-1 Fixed\n#TP1-3 #TP3-1 Fixed\n#TP2-8 #TP2-9");
+
+        assertThat(commands.size(), is(3));
+        assertThat(commands.get(0).getIssueId(), is("TP1-1"));
+        assertThat(commands.get(0).getIssueIds(), is(Arrays.asList("TP1-1", "TP1-2", "TP2-7")));
+        assertThat(commands.get(0).getCommand(), is("Fixed"));
+        assertThat(commands.get(1).getIssueIds(), is(Arrays.asList("TP1-3")));
+        assertThat(commands.get(1).getCommand(), is("#TP3-1 Fixed"));
+        assertThat(commands.get(2).getIssueIds(), is(Arrays.asList("TP2-8", "TP2-9")));
+        assertThat(commands.get(2).getCommand(), is(""));
+    }
+
+    @Test
+    public void testCacheChecksMessageAndSettings() {
+        CommitParseCache cache = new CommitParseCache(2);
+        CommitMessageParser parser = new CommitMessageParser(projects, projects, null);
+        CommitMessageParser.ParsedCommit parsed = parser.parse("#TP1-1 Fixed");
+        cache.put("job", "abc", parsed);
+
+        assertThat(cache.get("job", "abc", "#TP1-1 Fixed", parser.getFingerprint()), sameInstance(parsed));
+        assertThat(cache.get("other", "abc", "#TP1-1 Fixed", parser.getFingerprint()), nullValue());
+        assertThat(cache.get("job", "abc", "#TP1-2 Fixed", parser.getFingerprint()), nullValue());
+        CommitMessageParser otherParser = new CommitMessageParser(projects, Arrays.asList(new Project("TP2")), null);
+        assertThat(cache.get("job", "abc", "#TP1-1 Fixed", otherParser.getFingerprint()), nullValue());
+
+        cache.put("job", "def", parsed);
+        cache.put("job", "ghi", parsed);
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("job", "abc", "#TP1-1 Fixed", parser.getFingerprint()), nullValue());
+    }
+}
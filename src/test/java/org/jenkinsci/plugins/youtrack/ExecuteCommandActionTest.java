@@ -12,7 +12,9 @@ import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -24,6 +26,9 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
 public class ExecuteCommandActionTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void noSite() throws IOException, InterruptedException {
         AbstractBuild build = mock(FreeStyleBuild.class);
@@ -243,4 +248,38 @@ public class ExecuteCommandActionTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testAppliedCommandsSavedWithBuild() throws Exception {
+        AbstractBuild build = mock(FreeStyleBuild.class);
+        Launcher launcher = mock(Launcher.class);
+        BuildListener listener = mock(BuildListener.class);
+        YouTrackServer server = mock(YouTrackServer.class);
+
+        ExecuteCommandAction commandAction = spy(new ExecuteCommandAction("Fixed", "", "YT-1", "This is fixed"));
+
+        YouTrackSite site = new YouTrackSite("test", "test", "test", "test");
+        site.setPluginEnabled(true);
+
+        doReturn(new PrintStream(new ByteArrayOutputStream())).when(listener).getLogger();
+        doReturn(folder.newFolder("build")).when(build).getRootDir();
+        doReturn(site).when(commandAction).getYouTrackSite(build);
+        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(new EnvVars()).when(build).getEnvironment(listener);
+        doReturn(new YouTrackSaveProjectShortNamesAction(Lists.newArrayList(new Project("YT")))).when(build).getAction(YouTrackSaveProjectShortNamesAction.class);
+
+        User user = new User();
+        user.setLoggedIn(true);
+        doReturn(user).when(server).login("test", "test");
+        Command command = new Command();
+        command.setIssueId("YT-1");
+        command.setStatus(Command.Status.OK);
+        doReturn(command).when(server).applyCommand("test", user, new Issue("YT-1"), "Fixed", "This is fixed", null, true);
+
+        commandAction.perform(build, launcher, listener);
+
+        // Jenkins does not notify run actions of the build completing, so the commands must be saved by the step
+        YouTrackCommandAction loaded = new YouTrackCommandAction(build);
+        assertThat(loaded.getCommands().size(), is(1));
+        assertThat(loaded.getCommands().get(0).getIssueId(), is("YT-1"));
+    }
+}
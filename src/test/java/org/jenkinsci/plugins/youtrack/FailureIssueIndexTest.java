@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FailureIssueIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createLog(String name, int buildNumber) throws Exception {
+        File log = folder.newFile(name);
+        PrintWriter writer = new PrintWriter(log, "UTF-8");
+        writer.println("Started build " + buildNumber);
+        writer.println("[ERROR] Test.java:[" + (10 + buildNumber) + "] cannot find symbol");
+        writer.println("Finished: FAILURE");
+        writer.close();
+        return log;
+    }
+
+    @Test
+    public void testSignatureIgnoresNumbers() throws Exception {
+        String signature1 = FailureIssueIndex.getSignature("Build failure in build 41", createLog("log1", 41));
+        String signature2 = FailureIssueIndex.getSignature("Build failure in build 42", createLog("log2", 42));
+        assertThat(signature1, is(signature2));
+        assertThat(signature1, is("build failure in build #\n[error] test.java:[#] cannot find symbol"));
+    }
+
+    @Test
+    public void testWordsOfHexLettersAreKept() {
+        assertThat(FailureIssueIndex.normalize("Defaced file at abc1234def"), is("defaced file at #"));
+        assertThat(FailureIssueIndex.normalize("Effaced file at abc1234def"), is("effaced file at #"));
+    }
+
+    @Test
+    public void testIndexIsSavedAndClearedPerJob() throws Exception {
+        File file = new File(folder.getRoot(), "youtrack-failure-issues.properties");
+        FailureIssueIndex index = new FailureIssueIndex(file);
+        index.put("job", "signature", "TP-1");
+        index.put("other", "signature", "TP-2");
+
+        FailureIssueIndex loaded = new FailureIssueIndex(file);
+        assertThat(loaded.get("job", "signature"), is("TP-1"));
+        assertThat(loaded.get("job", "other signature"), nullValue());
+
+        loaded.clear("job");
+        assertThat(new FailureIssueIndex(file).get("job", "signature"), nullValue());
+        assertThat(new FailureIssueIndex(file).get("other", "signature"), is("TP-2"));
+    }
+}
@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.youtrack;
+
+import com.google.common.collect.Lists;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class IssueFanOutTest {
+    private static Command command(String issueId, Command.Status status, int responseCode) {
+        Command command = new Command();
+        command.setIssueId(issueId);
+        command.setStatus(status);
+        command.setResponseCode(responseCode);
+        return command;
+    }
+
+    @Test
+    public void testOnlyRejectedIssuesAreRetried() throws Exception {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = new User();
+        user.setLoggedIn(true);
+        List<Issue> issues = Lists.newArrayList(new Issue("TP-1"), new Issue("TP-2"), new Issue("TP-3"));
+        Command timedOut = command("TP-2", Command.Status.FAILED, 0);
+        Command serverError = command("TP-3", Command.Status.FAILED, 500);
+        when(server.applyCommandToIssues("site", user, issues, "Fixed", null, null, true)).thenReturn(Lists.newArrayList(command("TP-1", Command.Status.FAILED, 400), timedOut, serverError));
+        when(server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, true)).thenReturn(command("TP-1", Command.Status.OK, 200));
+
+        List<Command> commands = IssueFanOut.applyCommand(server, "site", user, issues, "Fixed", null, null, true);
+
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(commands.get(1), is(timedOut));
+        assertThat(commands.get(2), is(serverError));
+        verify(server, never()).applyCommand("site", user, new Issue("TP-2"), "Fixed", null, null, true);
+        verify(server, never()).applyCommand("site", user, new Issue("TP-3"), "Fixed", null, null, true);
+    }
+
+    @Test
+    public void testAppliedToEachIssueWithoutBulkResult() throws Exception {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = new User();
+        user.setLoggedIn(true);
+        List<Issue> issues = Lists.newArrayList(new Issue("TP-1"), new Issue("TP-2"));
+        when(server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, true)).thenReturn(command("TP-1", Command.Status.OK, 200));
+        when(server.applyCommand("site", user, new Issue("TP-2"), "Fixed", null, null, true)).thenReturn(command("TP-2", Command.Status.OK, 200));
+
+        List<Command> commands = IssueFanOut.applyCommand(server, "site", user, issues, "Fixed", null, null, true);
+
+        assertThat(commands.get(0).getIssueId(), is("TP-1"));
+        assertThat(commands.get(1).getIssueId(), is("TP-2"));
+    }
+
+    @Test
+    public void testUnsentIssuesAreRetried() throws Exception {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = new User();
+        user.setLoggedIn(true);
+        List<Issue> issues = Lists.newArrayList(new Issue("TP-1"));
+        Command unsent = command("TP-1", Command.Status.FAILED, 0);
+        unsent.setUnsent(true);
+        when(server.applyCommandToIssues("site", user, issues, "Fixed", null, null, true)).thenReturn(Lists.newArrayList(unsent));
+        when(server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, true)).thenReturn(command("TP-1", Command.Status.OK, 200));
+
+        List<Command> commands = IssueFanOut.applyCommand(server, "site", user, issues, "Fixed", null, null, true);
+
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+    }
+}
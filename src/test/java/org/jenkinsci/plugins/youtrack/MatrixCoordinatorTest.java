@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class MatrixCoordinatorTest {
+    @Test
+    public void testRunsOncePerParentBuild() throws Exception {
+        AbstractProject project = mock(AbstractProject.class);
+        doReturn("matrix").when(project).getFullName();
+        AbstractBuild root = mock(AbstractBuild.class);
+        doReturn(project).when(root).getProject();
+        doReturn(1).when(root).getNumber();
+        doReturn(root).when(root).getRootBuild();
+        AbstractBuild child1 = mock(AbstractBuild.class);
+        doReturn(root).when(child1).getRootBuild();
+        AbstractBuild child2 = mock(AbstractBuild.class);
+        doReturn(root).when(child2).getRootBuild();
+
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Integer> work = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return calls.incrementAndGet();
+            }
+        };
+
+        assertThat(MatrixCoordinator.runOnce(child1, "step", work), is(1));
+        assertThat(MatrixCoordinator.runOnce(child2, "step", work), is(1));
+        assertThat(MatrixCoordinator.runOnce(child2, "other step", work), is(2));
+        assertThat(calls.get(), is(2));
+
+        new MatrixCoordinator.CleanupListener().onCompleted(root, null);
+        assertThat(MatrixCoordinator.size(), is(0));
+        assertThat(MatrixCoordinator.runOnce(child1, "step", work), is(3));
+        MatrixCoordinator.forget(root);
+    }
+
+    @Test
+    public void testBuildsOutsideMatrixAlwaysRun() throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+        doReturn(build).when(build).getRootBuild();
+
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Integer> work = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return calls.incrementAndGet();
+            }
+        };
+
+        MatrixCoordinator.runOnce(build, "step", work);
+        MatrixCoordinator.runOnce(build, "step", work);
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    public void testCommandsRecordedOnParentBuild() {
+        AbstractProject project = mock(AbstractProject.class);
+        doReturn("matrix").when(project).getFullName();
+        AbstractBuild root = mock(AbstractBuild.class);
+        doReturn(project).when(root).getProject();
+        doReturn(1).when(root).getNumber();
+        doReturn(root).when(root).getRootBuild();
+        doReturn("matrix #1").when(root).getFullDisplayName();
+        AbstractBuild child = mock(AbstractBuild.class);
+        doReturn(root).when(child).getRootBuild();
+
+        YouTrackCommandAction commandAction = MatrixCoordinator.getCommandAction(child);
+        assertThat(commandAction.getBuild(), is(root));
+        verify(root).addAction(commandAction);
+        verify(child, never()).addAction(any(YouTrackCommandAction.class));
+
+        BuildListener listener = mock(BuildListener.class);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        doReturn(new PrintStream(log)).when(listener).getLogger();
+        MatrixCoordinator.ranOnParent(child, listener, "Updating YouTrack issues");
+        assertThat(log.toString(), containsString("Updating YouTrack issues ran once for all configurations on matrix #1"));
+        verify(child).addAction(any(YouTrackParentCommandsAction.class));
+    }
+}
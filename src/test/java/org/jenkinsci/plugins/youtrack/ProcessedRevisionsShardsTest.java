@@ -0,0 +1,129 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+public class ProcessedRevisionsShardsTest {
+    private File directory;
+
+    public static class RemoteConfig {
+        private final String url;
+
+        public RemoteConfig(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    public static class GitLikeScm {
+        private final List<RemoteConfig> remotes;
+
+        public GitLikeScm(RemoteConfig... remotes) {
+            this.remotes = Arrays.asList(remotes);
+        }
+
+        public List<RemoteConfig> getUserRemoteConfigs() {
+            return remotes;
+        }
+    }
+
+    public static class MultiScm {
+        public List<Object> getConfiguredSCMs() {
+            return Arrays.<Object>asList(new GitLikeScm(new RemoteConfig("git://b")), new GitLikeScm(new RemoteConfig("git://a")));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("youtrack-shards", null);
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testShardsAreIndependent() throws Exception {
+        ProcessedRevisionsShards shards = new ProcessedRevisionsShards(new File(directory, "shards"), new File(directory, "youtrack-processed"));
+        shards.addProcessed("site@git repo1", "abc");
+
+        assertThat(shards.isProcessed("site@git repo1", "abc"), is(true));
+        assertThat(shards.isProcessed("site@git repo2", "abc"), is(false));
+        shards.close();
+
+        ProcessedRevisionsShards reloaded = new ProcessedRevisionsShards(new File(directory, "shards"), new File(directory, "youtrack-processed"));
+        assertThat(reloaded.isProcessed("site@git repo1", "abc"), is(true));
+        reloaded.close();
+    }
+
+    @Test
+    public void testShardsShareOneWriterThread() throws Exception {
+        ProcessedRevisionsShards shards = new ProcessedRevisionsShards(new File(directory, "shards"), new File(directory, "youtrack-processed"));
+        for (int i = 0; i < 5; i++) {
+            shards.addProcessed("site@git repo" + i, "abc");
+        }
+        int writers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("YouTrack processed revisions writer")) {
+                writers++;
+            }
+        }
+        shards.close();
+
+        assertThat(writers, is(1));
+        ProcessedRevisionsShards reloaded = new ProcessedRevisionsShards(new File(directory, "shards"), new File(directory, "youtrack-processed"));
+        assertThat(reloaded.isProcessed("site@git repo4", "abc"), is(true));
+        reloaded.close();
+    }
+
+    @Test
+    public void testLegacyIdsAreProcessedInAllShards() throws Exception {
+        File legacyFile = new File(directory, "youtrack-processed");
+        FileUtils.writeStringToFile(legacyFile, "abc\n");
+        ProcessedRevisionsShards shards = new ProcessedRevisionsShards(new File(directory, "shards"), legacyFile);
+
+        assertThat(shards.isProcessed("site@git repo1", "abc"), is(true));
+        assertThat(shards.isProcessed("site@git repo2", "abc"), is(true));
+        assertThat(shards.isProcessed("site@git repo2", "def"), is(false));
+        shards.close();
+    }
+
+    @Test
+    public void testRepositoryUrls() {
+        Set<String> urls = new TreeSet<String>();
+        YoutrackIssueUpdater.addRepositoryUrls(new GitLikeScm(new RemoteConfig("git://repo1"), new RemoteConfig(" ")), urls);
+        assertThat(urls, is((Set<String>) new TreeSet<String>(Arrays.asList("git://repo1"))));
+
+        urls.clear();
+        YoutrackIssueUpdater.addRepositoryUrls(new MultiScm(), urls);
+        assertThat(urls, is((Set<String>) new TreeSet<String>(Arrays.asList("git://a", "git://b"))));
+
+        urls.clear();
+        YoutrackIssueUpdater.addRepositoryUrls(new Object(), urls);
+        assertThat(urls.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFileNamesAreUnique() {
+        assertThat(ProcessedRevisionsShards.getFileName("site@git a/b"), not(ProcessedRevisionsShards.getFileName("site@git a:b")));
+    }
+}
@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RevisionBloomFilterTest {
+    @Test
+    public void testNoFalseNegatives() {
+        RevisionBloomFilter filter = RevisionBloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("rev" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertThat(filter.mightContain("rev" + i), is(true));
+        }
+        assertThat(filter.isOverCapacity(), is(false));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        RevisionBloomFilter filter = RevisionBloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("rev" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File file = File.createTempFile("youtrack-bloom", null);
+        try {
+            RevisionBloomFilter filter = RevisionBloomFilter.create(1000, 0.01);
+            filter.put("abc");
+            filter.writeTo(file, 42);
+
+            RevisionBloomFilter read = RevisionBloomFilter.readFrom(file);
+            assertThat(read.mightContain("abc"), is(true));
+            assertThat(read.getCoveredLength(), is(42L));
+        } finally {
+            file.delete();
+        }
+    }
+}
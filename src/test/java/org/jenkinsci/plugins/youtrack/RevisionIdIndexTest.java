@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RevisionIdIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIdsAreFound() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        Random random = new Random(42);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(Long.toHexString(random.nextLong()) + (i % 3 == 0 ? Long.toHexString(random.nextLong()) : ""));
+        }
+        RevisionIdIndex.write(file, ids, 410000);
+
+        RevisionIdIndex index = RevisionIdIndex.open(file, 500000);
+        assertThat(index.getCoveredLength(), is(410000L));
+        for (String id : ids) {
+            assertTrue(id, index.contains(id));
+        }
+        assertThat(index.contains("unknown"), is(false));
+        assertThat(index.contains(""), is(false));
+        index.close();
+    }
+
+    @Test
+    public void testIndexOfLongerFileIsNotUsed() throws Exception {
+        File file = new File(folder.getRoot(), "index");
+        List<String> ids = new ArrayList<String>();
+        ids.add("abc");
+        RevisionIdIndex.write(file, ids, 4);
+        assertNull(RevisionIdIndex.open(file, 3));
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class YouTrackBatchTest {
+    private static Command command(String issueId, Command.Status status) {
+        Command command = new Command();
+        command.setIssueId(issueId);
+        command.setStatus(status);
+        return command;
+    }
+
+    @Test
+    public void testParse() {
+        List<YouTrackBatch.Operation> operations = YouTrackBatch.Operation.parseAll("# Release\ncommand: TP-1 | Fixed | Done\\nin build\n\ncreate: TP | Summary");
+        assertThat(operations.size(), is(2));
+        assertThat(operations.get(0).getType(), is(YouTrackBatch.Type.COMMAND));
+        assertThat(operations.get(0).getArgument(2), is("Done\nin build"));
+        assertThat(operations.get(1).getArgument(2), is((String) null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMissingArgument() {
+        YouTrackBatch.Operation.parse("comment: TP-1");
+    }
+
+    @Test
+    public void testRunWithOneLogin() throws Exception {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = new User();
+        user.setUsername("user");
+        user.setLoggedIn(true);
+        when(server.login("user", "password")).thenReturn(user);
+        when(server.comment("site", user, new Issue("TP-1"), "Deployed", null, false)).thenReturn(command("TP-1", Command.Status.OK));
+        when(server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, true)).thenReturn(command("TP-1", Command.Status.OK));
+        when(server.applyCommand("site", user, new Issue("TP-2"), "Fixed", null, null, true)).thenReturn(command("TP-2", Command.Status.FAILED));
+
+        YouTrackSite site = new YouTrackSite("site", "user", "password", "http://example.com");
+        YouTrackSession session = new YouTrackSession(server, "user", "password");
+        YouTrackBatch batch = new YouTrackBatch();
+        for (YouTrackBatch.Operation operation : YouTrackBatch.Operation.parseAll("comment: TP-1 | Deployed\ncommand: TP-2 | Fixed\ncommand: TP-1 | Fixed")) {
+            batch.add(operation);
+        }
+        List<Command> results = batch.run(site, session);
+        batch.run(site, session);
+
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(results.get(1).getStatus(), is(Command.Status.FAILED));
+        assertThat(results.get(2).getIssueId(), is("TP-1"));
+        verify(server, times(1)).login("user", "password");
+        InOrder inOrder = inOrder(server);
+        inOrder.verify(server).comment("site", user, new Issue("TP-1"), "Deployed", null, false);
+        inOrder.verify(server).applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, true);
+    }
+
+    @Test
+    public void testRetriedOnceAfterLoggingInAgain() throws Exception {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User expired = new User();
+        expired.setLoggedIn(true);
+        User renewed = new User();
+        renewed.setLoggedIn(true);
+        when(server.login("user", "password")).thenReturn(expired, renewed);
+        Command rejected = command("TP-1", Command.Status.FAILED);
+        rejected.setResponseCode(401);
+        when(server.comment("site", expired, new Issue("TP-1"), "Deployed", null, false)).thenReturn(rejected);
+        when(server.comment("site", expired, new Issue("TP-2"), "Deployed", null, false)).thenReturn(rejected);
+        when(server.comment("site", renewed, new Issue("TP-1"), "Deployed", null, false)).thenReturn(command("TP-1", Command.Status.OK));
+        when(server.comment("site", renewed, new Issue("TP-2"), "Deployed", null, false)).thenReturn(command("TP-2", Command.Status.OK));
+
+        YouTrackSite site = new YouTrackSite("site", "user", "password", "http://example.com");
+        YouTrackSession session = new YouTrackSession(server, "user", "password");
+        YouTrackBatch batch = new YouTrackBatch();
+        for (YouTrackBatch.Operation operation : YouTrackBatch.Operation.parseAll("comment: TP-1 | Deployed\ncomment: TP-2 | Deployed")) {
+            batch.add(operation);
+        }
+        List<Command> results = batch.run(site, session);
+
+        assertThat(results.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(results.get(1).getStatus(), is(Command.Status.OK));
+        verify(server, times(2)).login("user", "password");
+        verify(server, times(1)).comment("site", expired, new Issue("TP-1"), "Deployed", null, false);
+        assertThat(session.getUser(), is(renewed));
+    }
+}
@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.youtrack;
+
+import hudson.model.Action;
+import hudson.model.FreeStyleBuild;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Date;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class YouTrackCommandActionTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCommandsSavedOutsideBuildRecord() throws Exception {
+        File rootDir = folder.newFolder("build");
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        doReturn(rootDir).when(build).getRootDir();
+
+        YouTrackCommandAction action = new YouTrackCommandAction(build);
+        for (int i = 0; i < 3; i++) {
+            Command command = new Command();
+            command.setSiteName(new String("site"));
+            command.setIssueId("TP-" + i);
+            command.setStatus(Command.Status.OK);
+            command.setDate(new Date(1000L * i));
+            action.addCommand(command);
+        }
+        action.onBuildComplete();
+        assertTrue(new File(rootDir, YouTrackCommandAction.FILE_NAME).exists());
+
+        YouTrackCommandAction loaded = new YouTrackCommandAction(build);
+        assertThat(loaded.getCommands().size(), is(3));
+        assertThat(loaded.getCommands().get(2).getIssueId(), is("TP-2"));
+        assertThat(loaded.getCommands().get(2).getTimestamp(), is(2000L));
+        assertTrue(loaded.getCommands().get(0).getSiteName() == "site");
+        assertThat(action.getNumCommands(), is(3));
+    }
+
+    @Test
+    public void testPageStreamedFromFile() throws Exception {
+        File rootDir = folder.newFolder("paged");
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        doReturn(rootDir).when(build).getRootDir();
+
+        YouTrackCommandAction action = new YouTrackCommandAction(build);
+        for (int i = 0; i < 25; i++) {
+            Command command = new Command();
+            command.setIssueId("TP-" + i);
+            command.setCommand(i % 5 == 0 ? null : "Fixed");
+            command.setStatus(i % 2 == 0 ? Command.Status.OK : Command.Status.FAILED);
+            action.addCommand(command);
+        }
+        action.save();
+
+        YouTrackCommandAction loaded = new YouTrackCommandAction(build);
+        CommandQuery.Page page = loaded.getPage(new CommandQuery(Command.Status.OK, null, null, 5, 5));
+        assertThat(page.getTotal(), is(13));
+        assertThat(page.getCommands().size(), is(5));
+        assertThat(page.getCommands().get(0).getIssueId(), is("TP-10"));
+        assertTrue(page.isHasNext());
+        assertThat(page.getNextQuery(), is("?offset=10&limit=5&status=OK"));
+
+        page = loaded.getPage(new CommandQuery(null, "tp-1", Command.Type.COMMENT, 0, 0));
+        assertThat(page.getTotal(), is(2));
+        assertThat(page.getCommands().get(1).getIssueId(), is("TP-15"));
+    }
+
+    @Test
+    public void testStepsShareOneActionPerBuild() throws Exception {
+        File rootDir = folder.newFolder("shared");
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        doReturn(rootDir).when(build).getRootDir();
+        doCallRealMethod().when(build).getActions();
+        doCallRealMethod().when(build).getAction(YouTrackCommandAction.class);
+        doCallRealMethod().when(build).addAction(any(Action.class));
+
+        YouTrackCommandAction first = YouTrackCommandAction.get(build);
+        Command command = new Command();
+        command.setIssueId("TP-1");
+        first.addCommand(command);
+        first.save();
+        YouTrackCommandAction second = YouTrackCommandAction.get(build);
+        command = new Command();
+        command.setIssueId("TP-2");
+        second.addCommand(command);
+        second.save();
+
+        assertTrue(first == second);
+        assertThat(new YouTrackCommandAction(build).getCommands().size(), is(2));
+    }
+
+    @Test
+    public void testLongResponsesAreTruncated() {
+        Command command = new Command();
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < Command.MAX_RESPONSE_LENGTH * 2; i++) {
+            response.append('x');
+        }
+        command.setResponse(response.toString());
+        assertThat(command.getResponse().length(), is(Command.MAX_RESPONSE_LENGTH + 3));
+    }
+}
@@ -429,6 +429,71 @@ public class YouTrackSCMListenerTest {
         assertEquals(2, commands.size());
     }
 
+    @Test
+    public void testExecuteCommandOnSeveralIssues() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        FreeStyleBuild freeStyleBuild = mock(FreeStyleBuild.class);
+        ChangeLogSet changeLogSet = mock(ChangeLogSet.class);
+        BuildListener listener = mock(BuildListener.class);
+        YouTrackServer server = mock(YouTrackServer.class);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", "test", "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+
+        when(freeStyleBuild.getProject()).thenReturn(project);
+        when((FreeStyleBuild) freeStyleBuild.getRootBuild()).thenReturn(freeStyleBuild);
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        when(freeStyleBuild.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(freeStyleBuild.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(freeStyleBuild).addAction(Matchers.<Action>anyObject());
+
+        Command command1 = new Command();
+        command1.setCommand("Fixed");
+        command1.setIssueId("TP1-1");
+        command1.setStatus(Command.Status.OK);
+        Command command2 = new Command();
+        command2.setCommand("Fixed");
+        command2.setIssueId("TP1-2");
+        command2.setStatus(Command.Status.FAILED);
+        command2.setResponseCode(400);
+        Command retriedCommand2 = new Command();
+        retriedCommand2.setCommand("Fixed");
+        retriedCommand2.setIssueId("TP1-2");
+        retriedCommand2.setStatus(Command.Status.OK);
+        List<Issue> issues = Lists.newArrayList(new Issue("TP1-1"), new Issue("TP1-2"));
+        when(server.applyCommandToIssues("testsite", user, issues, "Fixed", null, null, true)).thenReturn(Lists.newArrayList(command1, command2));
+        when(server.applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", null, null, true)).thenReturn(retriedCommand2);
+
+        ArrayList<Project> projects = new ArrayList<Project>();
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        projects.add(project1);
+        when(server.getProjects(user)).thenReturn(projects);
+
+        when(changeLogSet.iterator()).thenReturn(Sets.newHashSet(new MockEntry("#TP1-1 #TP1-2 Fixed")).iterator());
+
+        YouTrackSCMListener youTrackSCMListener = spy(new YouTrackSCMListener());
+        YoutrackIssueUpdater issueUpdater = spy(new YoutrackIssueUpdater());
+        doReturn(user).when(server).login("test", "test");
+        doReturn(issueUpdater).when(youTrackSCMListener).getYoutrackIssueUpdater();
+        doReturn(youTrackSite).when(issueUpdater).getYouTrackSite(freeStyleBuild);
+        doReturn(server).when(issueUpdater).getYouTrackServer(youTrackSite);
+
+        youTrackSCMListener.onChangeLogParsed(freeStyleBuild, listener, changeLogSet);
+
+        verify(server, times(1)).applyCommandToIssues("testsite", user, issues, "Fixed", null, null, true);
+        verify(server, times(0)).applyCommand("testsite", user, new Issue("TP1-1"), "Fixed", null, null, true);
+        List<Command> commands = freeStyleBuild.getAction(YouTrackCommandAction.class).getCommands();
+        assertEquals(2, commands.size());
+        assertThat(commands.get(0).getIssueId(), is("TP1-1"));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.OK));
+    }
+
     @Test
     public void testDoNotRunIfRecorderIsAdded() throws Exception {
         FreeStyleProject project = mock(FreeStyleProject.class);
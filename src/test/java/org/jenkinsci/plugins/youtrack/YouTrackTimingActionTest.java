@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class YouTrackTimingActionTest {
+    @Test
+    public void testCallsAreGroupedByCategory() {
+        YouTrackTimingAction action = new YouTrackTimingAction(null);
+        action.callEnded("login", null, 2000000, false);
+        action.callEnded("applyCommand", "TP-1", 5000000, false);
+        action.callEnded("applyCommand", "TP-2", 3000000, true);
+        action.callEnded("getProjects", null, 1000000, false);
+        action.recordStage("SCM changes", 20000000);
+
+        List<YouTrackTimingAction.Row> rows = action.getRows();
+        assertThat(rows.size(), is(6));
+        assertThat(rows.get(0).getName(), is("Login"));
+        assertThat(rows.get(2).getName(), is("Metadata fetch"));
+        assertThat(rows.get(4).getName(), is("Commands"));
+        assertThat(rows.get(4).getTiming().getCount(), is(2));
+        assertThat(rows.get(4).getTiming().getErrors(), is(1));
+        assertThat(rows.get(4).getPercent(), is(40));
+        assertThat(action.getCallCount(), is(4));
+        assertThat(action.getStageMillis(), is(20L));
+    }
+
+    @Test
+    public void testSlowestCallsAreKept() {
+        YouTrackTimingAction action = new YouTrackTimingAction(null);
+        for (int i = 1; i <= 20; i++) {
+            action.callEnded("getIssue", "TP-" + i, i * 1000000L, false);
+        }
+        List<YouTrackTimingAction.SlowCall> slowestCalls = action.getSlowestCalls();
+        assertThat(slowestCalls.size(), is(10));
+        assertThat(slowestCalls.get(0).getDetail(), is("TP-20"));
+        assertThat(slowestCalls.get(9).getDetail(), is("TP-11"));
+    }
+
+    @Test
+    public void testCacheHitRate() {
+        YouTrackTimingAction action = new YouTrackTimingAction(null);
+        action.recordCacheLookup("Processed commits", true);
+        action.recordCacheLookup("Processed commits", false);
+        action.recordCacheLookup("Processed commits", true);
+        action.recordCacheLookup("Processed commits", true);
+        assertThat(action.getCaches().get("Processed commits").getHitRate(), is(75));
+    }
+}
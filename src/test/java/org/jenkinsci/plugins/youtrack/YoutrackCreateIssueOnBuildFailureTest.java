@@ -3,9 +3,12 @@ package org.jenkinsci.plugins.youtrack;
 import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.model.*;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -23,6 +26,8 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
 public class YoutrackCreateIssueOnBuildFailureTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @Test
     public void testNoSiteSetup() throws IOException, InterruptedException {
@@ -295,4 +300,48 @@ public class YoutrackCreateIssueOnBuildFailureTest {
         String command;
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testResolvedIssueForSameFailureIsNotReused() throws IOException, InterruptedException {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractProject project = mock(AbstractProject.class);
+        Launcher launcher = mock(Launcher.class);
+        BuildListener buildListener = mock(BuildListener.class);
+
+        YoutrackCreateIssueOnBuildFailure youtrackCreateIssueOnBuildFailure =
+                spy(new YoutrackCreateIssueOnBuildFailure("PROJECT", "SUMMARY", "DESCRIPTION", YoutrackCreateIssueOnBuildFailure.FAILURE, null, null, false, null, 0, false, true));
+
+        YouTrackSite youTrackSite = new YouTrackSite("site", "user", "password", "http://example.com");
+        FailureIssueIndex failureIssues = new FailureIssueIndex(new File(folder.getRoot(), "failure-issues.properties"));
+        String signature = FailureIssueIndex.getSignature("SUMMARY", null);
+        failureIssues.put("job", signature, "PROJECT-1");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        when(buildListener.getLogger()).thenReturn(new PrintStream(stream));
+        when(build.getResult()).thenReturn(Result.FAILURE);
+        when(build.getProject()).thenReturn(project);
+        when(project.getFullName()).thenReturn("job");
+        when(build.getEnvironment(buildListener)).thenReturn(new EnvVars());
+
+        YouTrackServer server = mock(YouTrackServer.class);
+        doReturn(youTrackSite).when(youtrackCreateIssueOnBuildFailure).getYouTrackSite(build);
+        doReturn(server).when(youtrackCreateIssueOnBuildFailure).getYouTrackServer(youTrackSite);
+        doReturn(failureIssues).when(youtrackCreateIssueOnBuildFailure).getFailureIssues();
+        doReturn("http://jenkins/job/job/2/").when(youtrackCreateIssueOnBuildFailure).getAbsoluteUrl(build);
+
+        User user = new User();
+        user.setLoggedIn(true);
+        when(server.login("user", "password")).thenReturn(user);
+        Issue resolvedIssue = new Issue("PROJECT-1");
+        resolvedIssue.setResolved("1380000000000");
+        when(server.getIssue(user, "PROJECT-1", null)).thenReturn(resolvedIssue);
+        Command created = new Command();
+        created.setStatus(Command.Status.OK);
+        created.setIssueId("PROJECT-2");
+        doReturn(created).when(server).createIssue(Mockito.anyString(), Mockito.any(User.class), Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Matchers.<File>any());
+
+        youtrackCreateIssueOnBuildFailure.perform(build, launcher, buildListener);
+
+        verify(server, never()).comment(Mockito.anyString(), Mockito.any(User.class), Mockito.any(Issue.class), Mockito.anyString(), Mockito.anyString(), Mockito.anyBoolean());
+        assertThat(failureIssues.get("job", signature), equalTo("PROJECT-2"));
+    }
+}
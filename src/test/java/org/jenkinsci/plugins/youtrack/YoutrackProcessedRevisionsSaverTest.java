@@ -0,0 +1,129 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class YoutrackProcessedRevisionsSaverTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("youtrack-processed", null);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testAddedRevisionsAreWrittenAndReloaded() throws Exception {
+        YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+        saver.addProcessed("abc");
+        saver.addProcessed("def");
+        saver.addProcessed("abc");
+        assertThat(saver.isProcessed("abc"), is(true));
+        assertThat(saver.isProcessed("ghi"), is(false));
+        saver.flush();
+
+        assertThat(FileUtils.readFileToString(file), is("abc\ndef\n"));
+        saver.close();
+
+        YoutrackProcessedRevisionsSaver reloaded = new YoutrackProcessedRevisionsSaver(file);
+        assertThat(reloaded.isProcessed("abc"), is(true));
+        assertThat(reloaded.isProcessed("def"), is(true));
+        assertThat(reloaded.isProcessed("ghi"), is(false));
+        reloaded.close();
+    }
+
+    @Test
+    public void testCloseWritesPendingRevisions() throws Exception {
+        YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+        for (int i = 0; i < 10000; i++) {
+            saver.addProcessed("rev" + i);
+        }
+        saver.close();
+
+        YoutrackProcessedRevisionsSaver reloaded = new YoutrackProcessedRevisionsSaver(file);
+        reloaded.awaitLoaded();
+        assertThat(reloaded.processedIds.size(), is(10000));
+        reloaded.close();
+    }
+
+    @Test
+    public void testLookupsBeforeLoadFinishedReadTheFile() throws Exception {
+        FileUtils.writeStringToFile(file, "abc\ndef\n");
+        YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+        assertThat(saver.isProcessed("def"), is(true));
+        assertThat(saver.isProcessed("ghi"), is(false));
+        saver.awaitLoaded();
+        assertThat(saver.isProcessed("def"), is(true));
+        assertThat(saver.isProcessed("ghi"), is(false));
+        saver.close();
+    }
+
+    @Test
+    public void testIdsAppendedAfterBloomFilterWasSavedAreFound() throws Exception {
+        YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+        saver.addProcessed("abc");
+        saver.close();
+        FileUtils.writeStringToFile(file, "abc\ndef\n");
+
+        YoutrackProcessedRevisionsSaver reloaded = new YoutrackProcessedRevisionsSaver(file);
+        assertThat(reloaded.isProcessed("def"), is(true));
+        assertThat(reloaded.isProcessed("ghi"), is(false));
+        reloaded.close();
+    }
+
+    @Test
+    public void testLookupsBeforeLoadFinishedUseTheIndex() throws Exception {
+        FileUtils.writeStringToFile(file, "abc\ndef\nxyz\n");
+        File indexFile = new File(file.getPath() + ".index");
+        RevisionIdIndex.write(indexFile, Arrays.asList("def", "abc"), 8);
+        try {
+            YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+            assertThat(saver.isProcessed("abc"), is(true));
+            assertThat(saver.isProcessed("xyz"), is(true));
+            assertThat(saver.isProcessed("ghi"), is(false));
+            saver.close();
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testIdsAcceptedWhileClosingAreWritten() throws Exception {
+        final YoutrackProcessedRevisionsSaver saver = new YoutrackProcessedRevisionsSaver(file);
+        final Set<String> accepted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Thread adder = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100000; i++) {
+                    if (!saver.addProcessed("rev" + i)) {
+                        return;
+                    }
+                    accepted.add("rev" + i);
+                }
+            }
+        };
+        adder.start();
+        Thread.sleep(5);
+        saver.close();
+        adder.join();
+
+        accepted.removeAll(FileUtils.readLines(file));
+        assertThat(accepted.size(), is(0));
+    }
+}
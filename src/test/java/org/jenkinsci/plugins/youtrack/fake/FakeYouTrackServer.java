@@ -0,0 +1,487 @@
+package org.jenkinsci.plugins.youtrack.fake;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process fake of the YouTrack REST endpoints used by {@link org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer},
+ * for tests and load tests that must not touch a real YouTrack.
+ * <p/>
+ * Every issue id of a known project exists, in state "Open" until a command naming another state is executed on it.
+ * Latency and errors can be injected, and the calls are counted per endpoint.
+ */
+public class FakeYouTrackServer {
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+    private static final String[] STATES = {"Submitted", "Open", "In Progress", "Fixed", "Verified", "Won't fix"};
+    private static final Pattern ISSUE_ID = Pattern.compile("([A-Za-z][A-Za-z0-9_]*-\\d+)");
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+    private final Set<String> projects = new CopyOnWriteArraySet<String>();
+    private final ConcurrentMap<String, String> issueStates = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, List<String>> comments = new ConcurrentHashMap<String, List<String>>();
+    private final ConcurrentMap<String, Long> updateTimes = new ConcurrentHashMap<String, Long>();
+    private final Set<String> builds = new CopyOnWriteArraySet<String>();
+    private final ConcurrentMap<String, AtomicInteger> callCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final ConcurrentMap<String, Double> errorRates = new ConcurrentHashMap<String, Double>();
+    private final AtomicInteger createdIssues = new AtomicInteger();
+    private final Random random = new Random();
+    private volatile int latencyMillis;
+    private volatile int latencyJitterMillis;
+    private volatile double errorRate;
+
+    public FakeYouTrackServer(String... projectShortNames) {
+        for (String projectShortName : projectShortNames) {
+            projects.add(projectShortName);
+        }
+    }
+
+    /**
+     * Starts the server on a free port.
+     *
+     * @param threads number of threads handling requests.
+     * @throws IOException if the server could not be started.
+     */
+    public void start(int threads) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/rest", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        httpServer.start();
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            executor.shutdownNow();
+            httpServer = null;
+        }
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Sets the latency added to every request.
+     *
+     * @param latencyMillis fixed part.
+     * @param jitterMillis  random part added on top.
+     */
+    public void setLatency(int latencyMillis, int jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = jitterMillis;
+    }
+
+    /**
+     * @param errorRate fraction of requests answered with a 500 error.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param endpoint  the endpoint, as named by {@link #getCallCounts()}.
+     * @param errorRate fraction of requests to the endpoint answered with a 500 error.
+     */
+    public void setErrorRate(String endpoint, double errorRate) {
+        errorRates.put(endpoint, errorRate);
+    }
+
+    public int getCallCount(String endpoint) {
+        AtomicInteger count = callCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getTotalCallCount() {
+        int total = 0;
+        for (AtomicInteger count : callCounts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of calls per endpoint.
+     */
+    public Map<String, Integer> getCallCounts() {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> entry : callCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public void resetCallCounts() {
+        callCounts.clear();
+    }
+
+    public String getState(String issueId) {
+        String state = issueStates.get(issueId);
+        return state == null ? "Open" : state;
+    }
+
+    public List<String> getComments(String issueId) {
+        List<String> issueComments = comments.get(issueId);
+        return issueComments == null ? new ArrayList<String>() : issueComments;
+    }
+
+    public Set<String> getBuilds() {
+        return builds;
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+
+        String endpoint;
+        if (path.equals("/rest/user/login")) {
+            endpoint = "login";
+        } else if (path.equals("/rest/project/all")) {
+            endpoint = "project/all";
+        } else if (path.equals("/rest/issue/intellisense")) {
+            endpoint = "intellisense";
+        } else if (path.equals("/rest/issue") && method.equals("GET")) {
+            endpoint = "search";
+        } else if (path.equals("/rest/issue")) {
+            endpoint = "createIssue";
+        } else if (path.equals("/rest/issue/execute")) {
+            endpoint = "executeQuery";
+        } else if (path.startsWith("/rest/issue/byproject/")) {
+            endpoint = "byproject";
+        } else if (path.startsWith("/rest/issue/") && path.endsWith("/execute")) {
+            endpoint = "execute";
+        } else if (path.startsWith("/rest/issue/")) {
+            endpoint = "issue";
+        } else if (path.startsWith("/rest/admin/customfield/buildBundle")) {
+            endpoint = "buildBundle";
+        } else if (path.startsWith("/rest/admin/customfield/")) {
+            endpoint = "customfield";
+        } else if (path.equals("/rest/admin/user")) {
+            endpoint = "user";
+        } else if (path.equals("/rest/admin/group")) {
+            endpoint = "group";
+        } else if (path.equals("/rest/workflow/version")) {
+            endpoint = "version";
+        } else {
+            endpoint = "unknown";
+        }
+        countCall(endpoint);
+
+        byte[] body = readBody(exchange.getRequestBody());
+        delay();
+        if (shouldFail(endpoint)) {
+            error(exchange, 500, "Injected error");
+            return;
+        }
+
+        if (endpoint.equals("login")) {
+            exchange.getResponseHeaders().add("Set-Cookie", "YTSESSION=" + random.nextInt(Integer.MAX_VALUE) + "; Path=/");
+            respond(exchange, 200, "<login>ok</login>");
+        } else if (!endpoint.equals("version") && !hasCookie(exchange)) {
+            error(exchange, 401, "Unauthorized");
+        } else if (endpoint.equals("project/all")) {
+            StringBuilder xml = new StringBuilder("<projects>");
+            for (String project : projects) {
+                xml.append("<project name=\"").append(project).append("\" shortName=\"").append(project).append("\"/>");
+            }
+            respond(exchange, 200, xml.append("</projects>").toString());
+        } else if (endpoint.equals("intellisense")) {
+            respond(exchange, 200, "<IntelliSense><suggest/></IntelliSense>");
+        } else if (endpoint.equals("search")) {
+            search(exchange, query.get("filter"));
+        } else if (endpoint.equals("byproject")) {
+            updatedIssues(exchange, path.substring("/rest/issue/byproject/".length()), Long.parseLong(query.get("updatedAfter")));
+        } else if (endpoint.equals("createIssue")) {
+            String issueId = (projects.isEmpty() ? "TP" : projects.iterator().next()) + "-" + (100000 + createdIssues.incrementAndGet());
+            respond(exchange, 200, "<issue id=\"" + issueId + "\"/>");
+        } else if (endpoint.equals("execute")) {
+            execute(exchange, path.substring("/rest/issue/".length(), path.length() - "/execute".length()), parseForm(new String(body, "UTF-8")));
+        } else if (endpoint.equals("executeQuery")) {
+            executeQuery(exchange, parseForm(new String(body, "UTF-8")));
+        } else if (endpoint.equals("issue")) {
+            getIssue(exchange, path.substring("/rest/issue/".length()));
+        } else if (endpoint.equals("buildBundle")) {
+            buildBundle(exchange, method, path);
+        } else if (endpoint.equals("customfield")) {
+            customField(exchange, path.substring("/rest/admin/customfield/".length()));
+        } else if (endpoint.equals("user")) {
+            respond(exchange, 200, "<userRefs><user login=\"" + escape(query.get("q")) + "\" url=\"" + getUrl() + "/rest/admin/user/x\"/></userRefs>");
+        } else if (endpoint.equals("group")) {
+            respond(exchange, 200, "<userGroupRefs><userGroup name=\"All Users\" url=\"" + getUrl() + "/rest/admin/group/All%20Users\"/></userGroupRefs>");
+        } else if (endpoint.equals("version")) {
+            respond(exchange, 200, "<version>5.0</version>");
+        } else {
+            error(exchange, 404, "Not found");
+        }
+    }
+
+    private void search(HttpExchange exchange, String filter) throws IOException {
+        StringBuilder xml = new StringBuilder("<issueCompacts>");
+        if (filter != null) {
+            Matcher matcher = ISSUE_ID.matcher(filter);
+            while (matcher.find()) {
+                if (isKnownIssue(matcher.group(1))) {
+                    xml.append(issueXml(matcher.group(1)));
+                }
+            }
+        }
+        respond(exchange, 200, xml.append("</issueCompacts>").toString());
+    }
+
+    private void updatedIssues(HttpExchange exchange, String project, long updatedAfter) throws IOException {
+        StringBuilder xml = new StringBuilder("<issues>");
+        for (Map.Entry<String, Long> entry : updateTimes.entrySet()) {
+            if (entry.getKey().startsWith(project + "-") && entry.getValue() > updatedAfter) {
+                xml.append(issueXml(entry.getKey()));
+            }
+        }
+        respond(exchange, 200, xml.append("</issues>").toString());
+    }
+
+    private void execute(HttpExchange exchange, String issueId, Map<String, String> form) throws IOException {
+        if (!isKnownIssue(issueId)) {
+            error(exchange, 404, "Issue not found.");
+            return;
+        }
+        applyCommand(issueId, form);
+        respond(exchange, 200, "");
+    }
+
+    /**
+     * Executes a command on the issues named in the query, failing without changes if one of them does not exist.
+     */
+    private void executeQuery(HttpExchange exchange, Map<String, String> form) throws IOException {
+        List<String> issueIds = new ArrayList<String>();
+        String query = form.get("query");
+        if (query != null) {
+            Matcher matcher = ISSUE_ID.matcher(query);
+            while (matcher.find()) {
+                if (!isKnownIssue(matcher.group(1))) {
+                    error(exchange, 404, "Issue not found.");
+                    return;
+                }
+                issueIds.add(matcher.group(1));
+            }
+        }
+        for (String issueId : issueIds) {
+            applyCommand(issueId, form);
+        }
+        respond(exchange, 200, "");
+    }
+
+    private void applyCommand(String issueId, Map<String, String> form) {
+        updateTimes.put(issueId, System.currentTimeMillis());
+        String command = form.get("command");
+        if (command != null) {
+            for (String state : STATES) {
+                if (command.trim().equalsIgnoreCase(state)) {
+                    issueStates.put(issueId, state);
+                }
+            }
+        }
+        String comment = form.get("comment");
+        if (comment != null && comment.length() > 0) {
+            List<String> issueComments = comments.get(issueId);
+            if (issueComments == null) {
+                comments.putIfAbsent(issueId, new CopyOnWriteArrayList<String>());
+                issueComments = comments.get(issueId);
+            }
+            issueComments.add(comment);
+        }
+    }
+
+    private void getIssue(HttpExchange exchange, String issueId) throws IOException {
+        if (!isKnownIssue(issueId)) {
+            error(exchange, 404, "Issue not found.");
+            return;
+        }
+        respond(exchange, 200, issueXml(issueId));
+    }
+
+    private void buildBundle(HttpExchange exchange, String method, String path) throws IOException {
+        if (method.equals("PUT")) {
+            String[] parts = path.substring("/rest/admin/customfield/buildBundle/".length()).split("/");
+            String build = URLDecoder.decode(parts[0], "ISO-8859-1") + "/" + URLDecoder.decode(parts[parts.length - 1], "ISO-8859-1");
+            if (!builds.add(build)) {
+                error(exchange, 400, "Build already exists");
+                return;
+            }
+            respond(exchange, 201, "");
+        } else if (path.startsWith("/rest/admin/customfield/buildBundle/")) {
+            String bundle = URLDecoder.decode(path.substring("/rest/admin/customfield/buildBundle/".length()), "ISO-8859-1");
+            if (!bundle.equals("Builds")) {
+                error(exchange, 404, "Bundle not found");
+                return;
+            }
+            StringBuilder xml = new StringBuilder("<buildBundle name=\"").append(escape(bundle)).append("\">");
+            for (String build : builds) {
+                if (build.startsWith(bundle + "/")) {
+                    xml.append("<build>").append(escape(build.substring(bundle.length() + 1))).append("</build>");
+                }
+            }
+            respond(exchange, 200, xml.append("</buildBundle>").toString());
+        } else {
+            respond(exchange, 200, "<buildBundles><buildBundle name=\"Builds\"/></buildBundles>");
+        }
+    }
+
+    private void customField(HttpExchange exchange, String path) throws IOException {
+        if (path.equals("field/") || path.equals("field")) {
+            respond(exchange, 200, "<customFieldPrototypes><customFieldPrototype name=\"State\" url=\"" + getUrl() + "/rest/admin/customfield/field/State\"/></customFieldPrototypes>");
+        } else if (path.startsWith("field/")) {
+            respond(exchange, 200, "<customFieldPrototype name=\"State\" type=\"state[1]\"><defaultParam name=\"defaultBundle\" value=\"States\"/></customFieldPrototype>");
+        } else if (path.startsWith("stateBundle/")) {
+            StringBuilder xml = new StringBuilder("<stateBundle name=\"States\">");
+            for (String state : STATES) {
+                boolean resolved = state.equals("Fixed") || state.equals("Verified") || state.equals("Won't fix");
+                xml.append("<state description=\"\" isResolved=\"").append(resolved).append("\">").append(escape(state)).append("</state>");
+            }
+            respond(exchange, 200, xml.append("</stateBundle>").toString());
+        } else {
+            error(exchange, 404, "Not found");
+        }
+    }
+
+    private boolean isKnownIssue(String issueId) {
+        int dash = issueId.lastIndexOf('-');
+        return dash > 0 && projects.contains(issueId.substring(0, dash));
+    }
+
+    private String issueXml(String issueId) {
+        String state = getState(issueId);
+        boolean resolved = state.equals("Fixed") || state.equals("Verified");
+        return "<issue id=\"" + escape(issueId) + "\">"
+                + "<field name=\"summary\"><value>Issue " + escape(issueId) + "</value></field>"
+                + "<field name=\"description\"><value>Generated by the fake server</value></field>"
+                + "<field name=\"State\"><value>" + escape(state) + "</value></field>"
+                + (resolved ? "<field name=\"resolved\"><value>1367412345000</value></field>" : "")
+                + "</issue>";
+    }
+
+    private void countCall(String endpoint) {
+        AtomicInteger count = callCounts.get(endpoint);
+        if (count == null) {
+            callCounts.putIfAbsent(endpoint, new AtomicInteger());
+            count = callCounts.get(endpoint);
+        }
+        count.incrementAndGet();
+    }
+
+    private boolean shouldFail(String endpoint) {
+        Double rate = errorRates.get(endpoint);
+        double failureRate = rate != null ? rate : errorRate;
+        synchronized (random) {
+            return failureRate > 0 && random.nextDouble() < failureRate;
+        }
+    }
+
+    private void delay() {
+        int millis = latencyMillis;
+        if (latencyJitterMillis > 0) {
+            synchronized (random) {
+                millis += random.nextInt(latencyJitterMillis + 1);
+            }
+        }
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean hasCookie(HttpExchange exchange) {
+        List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+        if (cookies == null) {
+            return false;
+        }
+        for (String cookie : cookies) {
+            if (cookie.contains("YTSESSION=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void error(HttpExchange exchange, int code, String message) throws IOException {
+        respond(exchange, code, "<error>" + escape(message) + "</error>");
+    }
+
+    private static void respond(HttpExchange exchange, int code, String xml) throws IOException {
+        byte[] bytes = xml.length() == 0 ? new byte[0] : (XML_HEADER + xml).getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            OutputStream responseBody = exchange.getResponseBody();
+            responseBody.write(bytes);
+            responseBody.close();
+        }
+    }
+
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> parseForm(String form) throws UnsupportedEncodingException {
+        Map<String, String> values = new HashMap<String, String>();
+        if (form == null || form.length() == 0) {
+            return values;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                values.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return values;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.youtrack.fake;
+
+import org.jenkinsci.plugins.youtrack.Command;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class FakeYouTrackServerTest {
+    private FakeYouTrackServer fakeServer;
+    private YouTrackServer youTrackServer;
+
+    @Before
+    public void setUp() throws Exception {
+        fakeServer = new FakeYouTrackServer("TP", "ABC");
+        fakeServer.start(4);
+        youTrackServer = new YouTrackServer(fakeServer.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        fakeServer.stop();
+    }
+
+    @Test
+    public void testCommandChangesState() {
+        User user = youTrackServer.login("tester", "secret");
+        assertThat(user.isLoggedIn(), is(true));
+
+        List<Project> projects = youTrackServer.getProjects(user);
+        assertThat(projects.size(), is(2));
+
+        assertThat(youTrackServer.getIssue(user, "TP-1", "State").getState(), is("Open"));
+        Command command = youTrackServer.applyCommand("site", user, new Issue("TP-1"), "Fixed", "Done", null, false);
+        assertThat(command.getStatus(), is(Command.Status.OK));
+        assertThat(youTrackServer.getIssue(user, "TP-1", "State").getState(), is("Fixed"));
+        assertThat(fakeServer.getComments("TP-1").get(0), is("Done"));
+
+        assertThat(fakeServer.getCallCount("login"), is(1));
+        assertThat(fakeServer.getCallCount("issue"), is(2));
+        assertThat(fakeServer.getCallCount("execute"), is(1));
+    }
+
+    @Test
+    public void testUnknownProjectFails() {
+        User user = youTrackServer.login("tester", "secret");
+        Command command = youTrackServer.applyCommand("site", user, new Issue("XYZ-1"), "Fixed", null, null, false);
+        assertThat(command.getStatus(), is(Command.Status.FAILED));
+        assertThat(command.getResponse(), is("Issue not found."));
+    }
+
+    @Test
+    public void testInjectedErrors() {
+        User user = youTrackServer.login("tester", "secret");
+        fakeServer.setErrorRate("execute", 1.0);
+        Command command = youTrackServer.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, false);
+        assertThat(command.getStatus(), is(Command.Status.FAILED));
+        assertThat(fakeServer.getState("TP-1"), is("Open"));
+    }
+
+    @Test
+    public void testCommandAppliedToIssuesInChunks() {
+        User user = youTrackServer.login("tester", "secret");
+        List<Issue> issues = new ArrayList<Issue>();
+        for (int i = 1; i <= 250; i++) {
+            issues.add(new Issue("TP-" + i));
+        }
+        List<Command> commands = youTrackServer.applyCommandToIssues("site", user, issues, "Fixed", null, null, false);
+        assertThat(commands.size(), is(250));
+        assertThat(commands.get(249).getIssueId(), is("TP-250"));
+        assertThat(commands.get(249).getStatus(), is(Command.Status.OK));
+        assertThat(fakeServer.getState("TP-250"), is("Fixed"));
+        assertThat(fakeServer.getCallCount("search"), is(3));
+        assertThat(fakeServer.getCallCount("executeQuery"), is(3));
+        assertThat(fakeServer.getCallCount("execute"), is(0));
+    }
+
+    @Test
+    public void testUnknownIssueOnlyFailsItself() {
+        User user = youTrackServer.login("tester", "secret");
+        List<Issue> issues = new ArrayList<Issue>();
+        issues.add(new Issue("TP-1"));
+        issues.add(new Issue("XYZ-1"));
+        List<Command> commands = youTrackServer.applyCommandToIssues("site", user, issues, "Fixed", null, null, false);
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.FAILED));
+        assertThat(commands.get(1).getResponse(), is("Issue not found."));
+        assertThat(commands.get(1).isUnsent(), is(true));
+        assertThat(commands.get(0).isUnsent(), is(false));
+        assertThat(fakeServer.getState("TP-1"), is("Fixed"));
+    }
+
+    @Test
+    public void testChunkNotSentWhenIssuesCannotBeFound() {
+        User user = youTrackServer.login("tester", "secret");
+        fakeServer.setErrorRate("search", 1.0);
+        List<Issue> issues = new ArrayList<Issue>();
+        issues.add(new Issue("TP-1"));
+        issues.add(new Issue("TP-2"));
+        List<Command> commands = youTrackServer.applyCommandToIssues("site", user, issues, "Fixed", null, null, false);
+        assertThat(commands.get(0).getStatus(), is(Command.Status.FAILED));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.FAILED));
+        assertThat(commands.get(1).isUnsent(), is(true));
+        assertThat(fakeServer.getCallCount("executeQuery"), is(0));
+        assertThat(fakeServer.getState("TP-1"), is("Open"));
+    }
+
+    @Test
+    public void testIssuesUpdatedAfterTime() {
+        User user = youTrackServer.login("tester", "secret");
+        long before = System.currentTimeMillis() - 1;
+        youTrackServer.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, false);
+        List<Issue> updated = youTrackServer.getIssuesUpdatedAfter(user, "TP", before, 100);
+        assertThat(updated.size(), is(1));
+        assertThat(updated.get(0).getId(), is("TP-1"));
+        assertThat(youTrackServer.getIssuesUpdatedAfter(user, "TP", System.currentTimeMillis() + 60000, 100).size(), is(0));
+    }
+
+    @Test
+    public void testNestedCallCountedOnce() {
+        User user = youTrackServer.login("tester", "secret");
+        long calls = YouTrackMetrics.getInstance().getTotal().getCallCount();
+        Command command = youTrackServer.createIssue("site", user, "TP", "Title", "Description", "Fixed", null);
+        assertThat(command.getStatus(), is(Command.Status.OK));
+        assertThat(fakeServer.getCallCount("execute"), is(1));
+        assertThat(YouTrackMetrics.getInstance().getTotal().getCallCount(), is(calls + 1));
+    }
+}
@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.youtrack.fake;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import hudson.scm.ChangeLogSet;
+import org.jenkinsci.plugins.youtrack.YouTrackSite;
+import org.jenkinsci.plugins.youtrack.YouTrackSCMListenerTest;
+import org.jenkinsci.plugins.youtrack.YoutrackIssueUpdater;
+import org.jenkinsci.plugins.youtrack.youtrackapi.LatencyHistogram;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackEndpointMetrics;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackMetrics;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays synthetic change logs through {@link YoutrackIssueUpdater#performActions} against a
+ * {@link FakeYouTrackServer}, and reports throughput, latency and calls per build.
+ * <p/>
+ * Settings are system properties: <code>builds</code> (50), <code>commits</code> per build (200),
+ * <code>projects</code> (20), <code>concurrency</code> (4), <code>latency</code> and <code>jitter</code> in ms (5, 5)
+ * and <code>errorRate</code> (0.0).
+ */
+public class LoadDriver {
+    private static final String[] WORDS = {"fix", "refactor", "parser", "build", "null", "update", "tests", "timeout",
+            "listener", "config", "site", "handle", "cleanup", "move"};
+
+    public static void main(String[] args) throws Exception {
+        int builds = Integer.getInteger("builds", 50);
+        int commits = Integer.getInteger("commits", 200);
+        int projectCount = Integer.getInteger("projects", 20);
+        int concurrency = Integer.getInteger("concurrency", 4);
+
+        String[] projects = new String[projectCount];
+        for (int i = 0; i < projectCount; i++) {
+            projects[i] = "PRJ" + i;
+        }
+        final FakeYouTrackServer fakeServer = new FakeYouTrackServer(projects);
+        fakeServer.setLatency(Integer.getInteger("latency", 5), Integer.getInteger("jitter", 5));
+        fakeServer.setErrorRate(Double.parseDouble(System.getProperty("errorRate", "0")));
+        fakeServer.start(Math.max(8, concurrency * 4));
+
+        final YouTrackSite youTrackSite = new YouTrackSite("load", "user", "password", fakeServer.getUrl());
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+
+        Random random = new Random(42);
+        final List<List<ChangeLogSet.Entry>> changeLogs = new ArrayList<List<ChangeLogSet.Entry>>();
+        for (int i = 0; i < builds; i++) {
+            changeLogs.add(changeLog(random, i, commits, projectCount));
+        }
+
+        final LatencyHistogram buildLatency = new LatencyHistogram();
+        YouTrackEndpointMetrics total = YouTrackMetrics.getInstance().getTotal();
+        long callsBefore = total.getCallCount();
+        long errorsBefore = total.getErrorCount();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final List<ChangeLogSet.Entry> changeLog : changeLogs) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        long buildStart = System.nanoTime();
+                        runBuild(youTrackSite, fakeServer.getUrl(), changeLog);
+                        buildLatency.record((System.nanoTime() - buildStart) / 1000);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            fakeServer.stop();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long calls = total.getCallCount() - callsBefore;
+        System.out.println(String.format("Builds: %d, commits per build: %d, projects: %d, concurrency: %d", builds, commits, projectCount, concurrency));
+        System.out.println(String.format("Time: %.2f s, %.1f builds/s, %.0f commits/s", seconds, builds / seconds, builds * commits / seconds));
+        System.out.println(String.format("Build time p50: %.1f ms, p99: %.1f ms, max: %.1f ms",
+                buildLatency.getValueAtPercentile(50) / 1000.0, buildLatency.getValueAtPercentile(99) / 1000.0, buildLatency.getMaxMicros() / 1000.0));
+        System.out.println(String.format("Call latency p50: %.1f ms, p99: %.1f ms, errors: %d", total.getP50Millis(), total.getP99Millis(), total.getErrorCount() - errorsBefore));
+        System.out.println(String.format("Calls: %d, %.1f per build, %.0f calls/s", calls, (double) calls / builds, calls / seconds));
+        for (Map.Entry<String, Integer> entry : fakeServer.getCallCounts().entrySet()) {
+            System.out.println(String.format("  %-14s %8d  %.1f per build", entry.getKey(), entry.getValue(), (double) entry.getValue() / builds));
+        }
+    }
+
+    private static void runBuild(YouTrackSite youTrackSite, String url, List<ChangeLogSet.Entry> changeLog) throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(mock(FreeStyleProject.class));
+        BuildListener listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        YoutrackIssueUpdater updater = new YoutrackIssueUpdater() {
+            @Override
+            protected String getAbsoluteUrlForBuild(AbstractBuild build) {
+                return "http://localhost/job/load/1/";
+            }
+        };
+        YouTrackServer youTrackServer = new YouTrackServer(url);
+        User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword());
+        updater.performActions(build, listener, youTrackSite, changeLog.iterator(), youTrackServer, user);
+    }
+
+    private static List<ChangeLogSet.Entry> changeLog(Random random, int build, int commits, int projectCount) {
+        List<ChangeLogSet.Entry> entries = new ArrayList<ChangeLogSet.Entry>(commits);
+        for (int i = 0; i < commits; i++) {
+            String issueId = "PRJ" + random.nextInt(projectCount) + "-" + (1 + random.nextInt(2000));
+            StringBuilder message = new StringBuilder();
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                message.append(issueId).append(' ');
+            } else if (kind < 8) {
+                message.append('#').append(issueId).append(random.nextBoolean() ? " Fixed" : " In Progress").append('\n');
+            }
+            for (int w = 0; w < 8 + random.nextInt(12); w++) {
+                message.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            entries.add(new YouTrackSCMListenerTest.MockEntry(message.toString().trim(), "b" + build + "c" + i));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.youtrack.test;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+public class BulkTestIssueJobTest {
+    private static String trace(String error, String testMethod, int line) {
+        return error + "\n"
+                + "\tat com.example.Service.call(Service.java:" + line + ")\n"
+                + "\tat com.example.ServiceTest." + testMethod + "(ServiceTest.java:" + (line + 10) + ")\n"
+                + "\tat sun.reflect.NativeMethodAccessorImpl.invoke0(Native Method)\n";
+    }
+
+    @Test
+    public void testSameFailureInDifferentTestsIsGrouped() {
+        String key1 = BulkTestIssueJob.getGroupKey("com.example.ServiceTest", trace("java.lang.NullPointerException", "testOne", 42));
+        String key2 = BulkTestIssueJob.getGroupKey("com.example.ServiceTest", trace("java.lang.NullPointerException", "testTwo", 43));
+        assertThat(key1, is(key2));
+        assertThat(key1, is("java.lang.NullPointerException\nat com.example.Service.call(Service.java)\n"));
+    }
+
+    @Test
+    public void testDifferentErrorsAreNotGrouped() {
+        String key1 = BulkTestIssueJob.getGroupKey("com.example.ServiceTest", trace("java.lang.NullPointerException", "testOne", 42));
+        String key2 = BulkTestIssueJob.getGroupKey("com.example.ServiceTest", trace("java.lang.IllegalStateException", "testOne", 42));
+        assertThat(key1, not(key2));
+        assertThat(BulkTestIssueJob.getGroupKey("com.example.ServiceTest", null), is("com.example.ServiceTest"));
+    }
+}
@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.youtrack.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestLinkIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int countLines(File file) throws Exception {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        int lines = 0;
+        while (reader.readLine() != null) {
+            lines++;
+        }
+        reader.close();
+        return lines;
+    }
+
+    @Test
+    public void testLinksAppendedAndLoaded() throws Exception {
+        File file = new File(folder.getRoot(), TestLinkIndex.FILE_NAME);
+        TestLinkIndex index = new TestLinkIndex(file);
+        index.link("junit/pkg/Test/test\tone", "TP-1", 1);
+        index.link("junit/pkg/Test/testTwo", "TP-2", 1);
+        index.link("junit/pkg/Test/testTwo", null, 1);
+        assertThat(file.exists(), is(false));
+        index.flush(1);
+
+        TestLinkIndex loaded = new TestLinkIndex(file);
+        assertThat(loaded.get("junit/pkg/Test/test\tone", 1), is("TP-1"));
+        assertThat(loaded.get("junit/pkg/Test/testTwo", 1), is(""));
+        assertThat(loaded.get("junit/pkg/Test/testThree", 1), nullValue());
+        assertThat(countLines(file), is(3));
+    }
+
+    @Test
+    public void testFileCompacted() throws Exception {
+        File file = new File(folder.getRoot(), TestLinkIndex.FILE_NAME);
+        TestLinkIndex index = new TestLinkIndex(file);
+        for (int i = 0; i < 500; i++) {
+            index.link("test", "TP-" + i, 1);
+            index.flush(1);
+        }
+        assertThat(countLines(file) <= 103, is(true));
+        assertThat(new TestLinkIndex(file).get("test", 1), is("TP-499"));
+    }
+
+    @Test
+    public void testLinkCarriedForwardWhileTestKeepsFailing() throws Exception {
+        File file = new File(folder.getRoot(), TestLinkIndex.FILE_NAME);
+        TestLinkIndex index = new TestLinkIndex(file);
+        index.recordFailures(1, Arrays.asList("test", "other"));
+        index.recordFailures(2, Arrays.asList("test", "other"));
+        index.link("test", "TP-1", 2);
+        index.link("other", "TP-2", 2);
+        index.recordFailures(3, Arrays.asList("test", "other"));
+        index.recordFailures(4, Arrays.asList("test"));
+        index.recordFailures(5, Arrays.asList("test", "other"));
+        index.flush(1);
+
+        TestLinkIndex loaded = new TestLinkIndex(file);
+        assertThat(loaded.get("test", 1), nullValue());
+        assertThat(loaded.get("test", 2), is("TP-1"));
+        assertThat(loaded.get("test", 5), is("TP-1"));
+        assertThat(loaded.get("other", 3), is("TP-2"));
+        assertThat(loaded.get("other", 4), nullValue());
+        // The test passed in build 4, so it is not linked when it fails again.
+        assertThat(loaded.get("other", 5), nullValue());
+
+        // A link made in an old build is not carried over the builds recorded since.
+        loaded.link("other", "TP-3", 1);
+        loaded.recordFailures(6, Arrays.asList("other"));
+        assertThat(loaded.get("other", 1), is("TP-3"));
+        assertThat(loaded.get("other", 2), is("TP-2"));
+        assertThat(loaded.get("other", 6), nullValue());
+    }
+
+    @Test
+    public void testLinksEndedBeforeOldestBuildDroppedWhenCompacted() throws Exception {
+        File file = new File(folder.getRoot(), TestLinkIndex.FILE_NAME);
+        TestLinkIndex index = new TestLinkIndex(file);
+        index.link("old", "TP-1", 1);
+        index.recordFailures(1, Arrays.asList("old", "current"));
+        index.link("current", "TP-2", 1);
+        for (int i = 2; i < 200; i++) {
+            index.recordFailures(i, Arrays.asList("current"));
+            index.flush(150);
+        }
+
+        TestLinkIndex loaded = new TestLinkIndex(file);
+        assertThat(loaded.get("old", 1), nullValue());
+        assertThat(loaded.get("current", 199), is("TP-2"));
+    }
+
+    @Test
+    public void testIndexEvictedWithJobDirectory() throws Exception {
+        File jobDir = folder.newFolder("job");
+        TestLinkIndex index = TestLinkIndex.get(new File(jobDir, TestLinkIndex.FILE_NAME));
+        File otherFile = new File(folder.newFolder("job2"), TestLinkIndex.FILE_NAME);
+        TestLinkIndex other = TestLinkIndex.get(otherFile);
+        TestLinkIndex.evict(jobDir);
+        assertThat(TestLinkIndex.get(new File(jobDir, TestLinkIndex.FILE_NAME)) == index, is(false));
+        assertThat(TestLinkIndex.get(otherFile) == other, is(true));
+    }
+}
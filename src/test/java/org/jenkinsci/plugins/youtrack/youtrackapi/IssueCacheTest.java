@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class IssueCacheTest {
+    private YouTrackServer server;
+    private User user;
+
+    @Before
+    public void setUp() {
+        server = mock(YouTrackServer.class);
+        user = new User();
+        Issue issue = new Issue("TP-1");
+        issue.setState("Open");
+        issue.setDescription("Description");
+        when(server.fetchIssue(user, "TP-1", "State")).thenReturn(issue);
+        when(server.getIssuesUpdatedAfter(same(user), anyString(), anyLong(), anyInt())).thenReturn(new ArrayList<Issue>());
+    }
+
+    private static IssueCache createCache(long syncInterval) {
+        return new IssueCache(new IssueCache.HeapStore(10), syncInterval, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void testIssueFetchedOnce() {
+        IssueCache cache = createCache(60000);
+        Issue issue = cache.get(server, user, "TP-1", "State");
+        issue.setDescription("Changed by caller");
+        assertThat(cache.get(server, user, "TP-1", "State").getDescription(), is("Description"));
+        verify(server, times(1)).fetchIssue(user, "TP-1", "State");
+        assertThat(cache.getHits(), is(1L));
+
+        cache.get(server, user, "TP-1", "Other state");
+        cache.remove("TP-1");
+        cache.get(server, user, "TP-1", "State");
+        verify(server, times(2)).fetchIssue(user, "TP-1", "State");
+    }
+
+    @Test
+    public void testUpdatedIssuesFetchedAgain() {
+        IssueCache cache = createCache(0);
+        cache.get(server, user, "TP-1", "State");
+        cache.get(server, user, "TP-1", "State");
+        verify(server, times(1)).fetchIssue(user, "TP-1", "State");
+
+        when(server.getIssuesUpdatedAfter(same(user), eq("TP"), anyLong(), anyInt())).thenReturn(Arrays.asList(new Issue("TP-1")));
+        cache.get(server, user, "TP-1", "State");
+        verify(server, times(2)).fetchIssue(user, "TP-1", "State");
+        verify(server, never()).search(same(user), anyString());
+    }
+
+    @Test
+    public void testCacheClearedWhenTooManyIssuesWereUpdated() {
+        IssueCache cache = createCache(0);
+        cache.get(server, user, "TP-1", "State");
+
+        List<Issue> updated = new ArrayList<Issue>();
+        for (int i = 0; i < IssueCache.SYNC_MAX_ISSUES; i++) {
+            updated.add(new Issue("TP-" + (1000 + i)));
+        }
+        when(server.getIssuesUpdatedAfter(same(user), eq("TP"), anyLong(), anyInt())).thenReturn(updated);
+        cache.get(server, user, "TP-1", "State");
+        verify(server, times(2)).fetchIssue(user, "TP-1", "State");
+    }
+}
@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBucketsCoverValues() {
+        for (long value = 0; value < 1000000; value = value * 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMaxMicros(), is(1000000L));
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+    }
+
+    @Test
+    public void testCallIsRecorded() throws Exception {
+        YouTrackMetrics metrics = new YouTrackMetrics();
+        YouTrackMetrics.Call call = metrics.begin("getIssue");
+        assertThat(metrics.getTotal().getInFlight(), is(1));
+        call.sent(new ByteArrayOutputStream()).write(new byte[10], 0, 10);
+        call.response(404);
+        call.end();
+        call.end();
+
+        YouTrackEndpointMetrics endpoint = metrics.getEndpoints().get(0);
+        assertThat(endpoint.getName(), is("getIssue"));
+        assertThat(endpoint.getCallCount(), is(1L));
+        assertThat(endpoint.getClientErrorCount(), is(1L));
+        assertThat(endpoint.getBytesSent(), is(10L));
+        assertThat(metrics.getTotal().getInFlight(), is(0));
+    }
+}
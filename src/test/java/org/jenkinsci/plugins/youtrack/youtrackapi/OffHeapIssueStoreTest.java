@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class OffHeapIssueStoreTest {
+    private static IssueCache.Entry entry(String issueId, String state, String description) {
+        Issue issue = new Issue(issueId);
+        issue.setState(state);
+        issue.setSummary("Summary of " + issueId);
+        issue.setDescription(description);
+        return new IssueCache.Entry(issue, "State", 42);
+    }
+
+    @Test
+    public void testEntriesRoundTrip() {
+        OffHeapIssueStore store = new OffHeapIssueStore(16 * 256, 256);
+        store.put("TP-1", entry("TP-1", "Open", "<p>\u00dcn\u00efcode</p>"));
+        store.put("TP-2", entry("TP-2", "Fixed", null));
+        store.put("TP-1", entry("TP-1", "Fixed", null));
+
+        IssueCache.Entry entry = store.get("TP-1");
+        assertThat(entry.issue.getId(), is("TP-1"));
+        assertThat(entry.issue.getState(), is("Fixed"));
+        assertThat(entry.issue.getSummary(), is("Summary of TP-1"));
+        assertThat(entry.issue.getDescription(), nullValue());
+        assertThat(entry.stateField, is("State"));
+        assertThat(entry.fetched, is(42L));
+        assertThat(store.size(), is(2));
+
+        store.remove("TP-1");
+        assertThat(store.get("TP-1"), nullValue());
+        assertThat(store.get("TP-2").issue.getState(), is("Fixed"));
+    }
+
+    @Test
+    public void testIssuesTooLargeAreNotStored() {
+        OffHeapIssueStore store = new OffHeapIssueStore(16 * 256, 256);
+        store.put("TP-1", entry("TP-1", "Open", null));
+        store.put("TP-1", entry("TP-1", new String(new char[300]).replace('\0', 'x'), null));
+        assertThat(store.get("TP-1"), nullValue());
+        assertThat(store.size(), is(0));
+    }
+
+    @Test
+    public void testLongDescriptionsAreTruncated() throws Exception {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 8000) {
+            description.append("<p>Steps to reproduce: open the \u00e9diteur and press \u2318S, nothing is saved.</p>\n");
+        }
+        OffHeapIssueStore store = new OffHeapIssueStore(16 * 2048, 2048);
+        store.put("TP-1", entry("TP-1", "Open", description.toString()));
+
+        String stored = store.get("TP-1").issue.getDescription();
+        assertThat(stored.endsWith("..."), is(true));
+        assertThat(description.toString().startsWith(stored.substring(0, stored.length() - 3)), is(true));
+        assertThat(stored.getBytes("UTF-8").length > 1800, is(true));
+        assertThat(stored.getBytes("UTF-8").length < 2048, is(true));
+        assertThat(store.get("TP-1").issue.getState(), is("Open"));
+    }
+
+    @Test
+    public void testClockEvictsIssuesNotRead() {
+        OffHeapIssueStore store = new OffHeapIssueStore(8 * 256, 256);
+        for (int i = 0; i < 8; i++) {
+            store.put("TP-" + i, entry("TP-" + i, "Open", null));
+        }
+        store.get("TP-0");
+        store.put("TP-8", entry("TP-8", "Open", null));
+        assertThat(store.size(), is(8));
+        assertThat(store.get("TP-0").issue.getId(), is("TP-0"));
+        assertThat(store.get("TP-1"), nullValue());
+        assertThat(store.get("TP-8").issue.getId(), is("TP-8"));
+    }
+
+    @Test
+    public void testAllStoredEntriesAreFound() {
+        OffHeapIssueStore store = new OffHeapIssueStore(100 * 256, 256);
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String issueId = "TP-" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                store.remove(issueId);
+            } else {
+                store.put(issueId, entry(issueId, "State " + i, null));
+            }
+        }
+        int found = 0;
+        for (int i = 0; i < 500; i++) {
+            IssueCache.Entry entry = store.get("TP-" + i);
+            if (entry != null) {
+                assertThat(entry.issue.getId(), is("TP-" + i));
+                found++;
+            }
+        }
+        assertThat(found, is(store.size()));
+    }
+}